@@ -17,6 +17,22 @@ public interface Client {
 	 */
 	void uploadSync(UploadRequest request);
 	
+	/**
+	 * Resume asynchronous upload interrupted by failure or server restart. Request
+	 * must provide same source items as interrupted transfer. Client must be
+	 * started first.
+	 * 
+	 * @param transferId
+	 *            id of interrupted transfer
+	 * @return Instance of transfer.
+	 */
+	Transfer resumeUpload(UploadRequest request, String transferId);
+
+	/**
+	 * Resume synchronous upload. Client doesn't have to be started first.
+	 */
+	void resumeUploadSync(UploadRequest request, String transferId);
+
 	/**
 	 * Begin asynchronous download. Client must be started first.
 	 * 
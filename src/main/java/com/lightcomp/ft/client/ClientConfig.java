@@ -1,18 +1,25 @@
 package com.lightcomp.ft.client;
 
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.cxf.configuration.security.AuthorizationPolicy;
 
+import com.lightcomp.ft.common.BufferPool;
 import com.lightcomp.ft.common.Checksum.Algorithm;
 import com.lightcomp.ft.common.PathUtils;
+import com.lightcomp.ft.core.recv.RecvConfig;
+import com.lightcomp.ft.core.send.ReadAheadInStream;
 import com.lightcomp.ft.core.send.SendConfig;
+import com.lightcomp.ft.metrics.TransferMetrics;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 
 /**
  * Client configuration.
  */
-public final class ClientConfig implements SendConfig {
+public final class ClientConfig implements SendConfig, RecvConfig {
 
     private final String address;
 
@@ -20,6 +27,26 @@ public final class ClientConfig implements SendConfig {
 
     private int threadPoolSize = 1;
 
+    private boolean virtualThreads;
+
+    private int virtualThreadLimit = 1000;
+
+    private int checksumConcurrency;
+
+    private Semaphore checksumLimiter;
+
+    private int readAheadBuffers;
+
+    private int readAheadThreads = 32;
+
+    private Executor readAheadExecutor;
+
+    private int readAheadTimeout = 60;
+
+    private BufferPool bufferPool = BufferPool.getDefault();
+
+    private TransferMetrics metrics = TransferMetrics.NOOP;
+
     private int requestTimeout = 60;
 
     private int recoveryDelay = 60;
@@ -28,8 +55,20 @@ public final class ClientConfig implements SendConfig {
 
     private int maxFrameBlocks = 10000;
 
+    private long maxPackedFileSize;
+
+    private BlockEncoding blockEncoding = BlockEncoding.XML;
+
+    private int uploadWindowSize = 1;
+
+    private int downloadWindowSize = 1;
+
+    private int maxMemoryFrameSize = 1024 * 1024;
+
     private Algorithm checksumAlg = Algorithm.SHA_512;
 
+    private boolean preallocateFiles;
+
     private boolean soapLogging;
     
     private Authorization authorization;
@@ -81,6 +120,143 @@ public final class ClientConfig implements SendConfig {
         this.threadPoolSize = threadPoolSize;
     }
 
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Virtual threads are used only when supported by runtime (Java 21+), otherwise platform threads
+     * are used. Number of simultaneously running transfers is limited by virtual thread limit instead of
+     * thread pool size.
+     * 
+     * @param virtualThreads
+     *            when true transfers are executed by virtual threads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * @return Maximum of simultaneously running transfers when virtual threads are used.
+     */
+    public int getVirtualThreadLimit() {
+        return virtualThreadLimit;
+    }
+
+    /**
+     * @param virtualThreadLimit
+     *            maximum of simultaneously running transfers when virtual threads are used, greater than
+     *            zero, default is 1000
+     */
+    public void setVirtualThreadLimit(int virtualThreadLimit) {
+        Validate.isTrue(virtualThreadLimit > 0);
+        this.virtualThreadLimit = virtualThreadLimit;
+    }
+
+    public int getChecksumConcurrency() {
+        return checksumConcurrency;
+    }
+
+    /**
+     * Checksum computation is CPU bound, the limit is useful when many transfers are executed by virtual
+     * threads.
+     * 
+     * @param checksumConcurrency
+     *            maximum of simultaneous checksum computations, zero for unlimited
+     */
+    public void setChecksumConcurrency(int checksumConcurrency) {
+        Validate.isTrue(checksumConcurrency >= 0);
+        this.checksumConcurrency = checksumConcurrency;
+        this.checksumLimiter = checksumConcurrency > 0 ? new Semaphore(checksumConcurrency) : null;
+    }
+
+    @Override
+    public Semaphore getChecksumLimiter() {
+        return checksumLimiter;
+    }
+
+    @Override
+    public int getReadAheadBuffers() {
+        return readAheadBuffers;
+    }
+
+    /**
+     * @param readAheadBuffers
+     *            number of 64KB buffers prefetched from source files by separate I/O thread for each sent
+     *            frame, zero or greater, zero means data are read by sending thread (default)
+     */
+    public void setReadAheadBuffers(int readAheadBuffers) {
+        Validate.isTrue(readAheadBuffers >= 0);
+        this.readAheadBuffers = readAheadBuffers;
+    }
+
+    public int getReadAheadThreads() {
+        return readAheadThreads;
+    }
+
+    /**
+     * @param readAheadThreads
+     *            maximum number of I/O threads reading ahead source files, greater than zero, frames
+     *            wait for free thread when all threads are reading
+     */
+    public synchronized void setReadAheadThreads(int readAheadThreads) {
+        Validate.isTrue(readAheadThreads > 0);
+        this.readAheadThreads = readAheadThreads;
+        // idle threads of previous executor are terminated
+        this.readAheadExecutor = null;
+    }
+
+    @Override
+    public synchronized Executor getReadAheadExecutor() {
+        if (readAheadExecutor == null) {
+            readAheadExecutor = ReadAheadInStream.createExecutor(readAheadThreads);
+        }
+        return readAheadExecutor;
+    }
+
+    @Override
+    public int getReadAheadTimeout() {
+        return readAheadTimeout;
+    }
+
+    /**
+     * @param readAheadTimeout
+     *            number of seconds until read-ahead gives up waiting for source data or for sending
+     *            thread, greater than zero
+     */
+    public void setReadAheadTimeout(int readAheadTimeout) {
+        Validate.isTrue(readAheadTimeout > 0);
+        this.readAheadTimeout = readAheadTimeout;
+    }
+
+    @Override
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * @param bufferPool
+     *            pool of heap or direct data buffers, not-null, default is shared heap pool
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = Validate.notNull(bufferPool);
+    }
+
+    /**
+     * @return Metrics of client transfers.
+     */
+    public TransferMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics
+     *            metrics of client transfers, not-null, default ignores all measurements
+     */
+    public void setMetrics(TransferMetrics metrics) {
+        this.metrics = Validate.notNull(metrics);
+    }
+
     /**
      * @return Timeout for server request in seconds.
      */
@@ -141,6 +317,90 @@ public final class ClientConfig implements SendConfig {
         this.maxFrameBlocks = maxFrameBlocks;
     }
 
+    @Override
+    public long getMaxPackedFileSize() {
+        return maxPackedFileSize;
+    }
+
+    /**
+     * Small uploaded files of one directory are packed into single block with one checksum. Files are packed
+     * only when receiver supports it.
+     * 
+     * @param maxPackedFileSize
+     *            maximum size of packed file in bytes, zero disables packing, default is zero
+     */
+    public void setMaxPackedFileSize(long maxPackedFileSize) {
+        Validate.isTrue(maxPackedFileSize >= 0);
+        this.maxPackedFileSize = maxPackedFileSize;
+    }
+
+    /**
+     * @return Preferred encoding of frame blocks.
+     */
+    public BlockEncoding getBlockEncoding() {
+        return blockEncoding;
+    }
+
+    /**
+     * @param blockEncoding
+     *            preferred encoding of frame blocks, not-null, BINARY is used only when server supports
+     *            it, default is XML
+     */
+    public void setBlockEncoding(BlockEncoding blockEncoding) {
+        this.blockEncoding = Validate.notNull(blockEncoding);
+    }
+
+    public int getUploadWindowSize() {
+        return uploadWindowSize;
+    }
+
+    /**
+     * Frames within the window are sent concurrently without waiting for server response of previous
+     * frames. Window is limited by upload window of server.
+     * 
+     * @param uploadWindowSize
+     *            maximum number of unconfirmed upload frames, greater than zero
+     */
+    public void setUploadWindowSize(int uploadWindowSize) {
+        Validate.isTrue(uploadWindowSize > 0);
+        this.uploadWindowSize = uploadWindowSize;
+    }
+
+    public int getDownloadWindowSize() {
+        return downloadWindowSize;
+    }
+
+    /**
+     * Frames within the window are requested ahead and stored in work directory until previous frames
+     * are processed. Window must not be greater than download window of server.
+     * 
+     * @param downloadWindowSize
+     *            maximum number of frames received ahead, greater than zero
+     */
+    public void setDownloadWindowSize(int downloadWindowSize) {
+        Validate.isTrue(downloadWindowSize > 0);
+        this.downloadWindowSize = downloadWindowSize;
+    }
+
+    /**
+     * @return Maximum size of received frame which can be buffered in memory.
+     */
+    public int getMaxMemoryFrameSize() {
+        return maxMemoryFrameSize;
+    }
+
+    /**
+     * Frames received ahead within download window are buffered in memory or stored in work directory
+     * when exceeds this limit.
+     * 
+     * @param maxMemoryFrameSize
+     *            maximum size of frame buffered in memory, zero or greater
+     */
+    public void setMaxMemoryFrameSize(int maxMemoryFrameSize) {
+        Validate.isTrue(maxMemoryFrameSize >= 0);
+        this.maxMemoryFrameSize = maxMemoryFrameSize;
+    }
+
     @Override
     public Algorithm getChecksumAlg() {
         return checksumAlg;
@@ -148,12 +408,25 @@ public final class ClientConfig implements SendConfig {
 
     /**
      * @param checksumAlg
-     *            checksum algorithm, not-null
+     *            checksum algorithm, not-null, server must use same algorithm
      */
     public void setChecksumAlg(Algorithm checksumAlg) {
         this.checksumAlg = Validate.notNull(checksumAlg);
     }
 
+    @Override
+    public boolean isPreallocateFiles() {
+        return preallocateFiles;
+    }
+
+    /**
+     * @param preallocateFiles
+     *            when true received file is extended to its declared size before data are written
+     */
+    public void setPreallocateFiles(boolean preallocateFiles) {
+        this.preallocateFiles = preallocateFiles;
+    }
+
     /**
      * @return When true any soap message will be logged.
      */
@@ -19,8 +19,11 @@ import com.lightcomp.ft.client.internal.operations.OperationResult;
 import com.lightcomp.ft.client.internal.operations.OperationResult.Type;
 import com.lightcomp.ft.exception.TransferExBuilder;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.TransferMetrics;
+import com.lightcomp.ft.metrics.TransferMetrics.Direction;
 import com.lightcomp.ft.wsdl.v1.FileTransferService;
 import com.lightcomp.ft.xsd.v1.AbortRequest;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 import com.lightcomp.ft.xsd.v1.GenericDataType;
 
 public abstract class AbstractTransfer implements Runnable, Transfer, OperationHandler {
@@ -31,18 +34,37 @@ public abstract class AbstractTransfer implements Runnable, Transfer, OperationH
 
     private final TransferRequest request;
 
+    private final Direction direction;
+
     protected final ClientConfig config;
 
     protected final FileTransferService service;
 
     protected String transferId;
 
+    /**
+     * Encoding of frame blocks negotiated with server.
+     */
+    protected BlockEncoding blockEncoding = BlockEncoding.XML;
+
+    /**
+     * True when server receives packs of small files.
+     */
+    protected boolean filePacks;
+
+    /**
+     * Number of upload frames which server receives ahead.
+     */
+    protected int uploadWindowSize = 1;
+
     private boolean cancelRequested;
 
     private Thread runningThread;
 
-    protected AbstractTransfer(TransferRequest request, ClientConfig config, FileTransferService service) {
+    protected AbstractTransfer(TransferRequest request, Direction direction, ClientConfig config,
+            FileTransferService service) {
         this.request = request;
+        this.direction = direction;
         this.config = config;
         this.service = service;
     }
@@ -70,6 +92,11 @@ public abstract class AbstractTransfer implements Runnable, Transfer, OperationH
         return status.copy();
     }
 
+    @Override
+    public TransferMetrics getMetrics() {
+        return config.getMetrics();
+    }
+
     @Override
     public boolean prepareRecovery() {
         // increment recovery count
@@ -145,6 +172,7 @@ public abstract class AbstractTransfer implements Runnable, Transfer, OperationH
     @Override
     public void run() {
         runningThread = Thread.currentThread();
+        config.getMetrics().transferStarted(direction);
         try {
             request.onTransferInitialized(this);
             // execute transfer phases
@@ -162,6 +190,8 @@ public abstract class AbstractTransfer implements Runnable, Transfer, OperationH
             teb.log(logger);
             ExceptionType type = ExceptionType.resolve(t);
             transferFailed(type);
+        } finally {
+            config.getMetrics().transferTerminated(direction);
         }
     }
 
@@ -170,14 +200,16 @@ public abstract class AbstractTransfer implements Runnable, Transfer, OperationH
             return false;
         }
         // send begin to server
-        BeginOperation op = new BeginOperation(service, request.getData());
-        BeginResult result = op.execute();
+        BeginResult result = beginTransfer();
         if (result.getType() != Type.SUCCESS) {
             operationFailed(result);
             return false;
         }
         // set received transfer id
         transferId = result.getTransferId();
+        blockEncoding = result.getBlockEncoding();
+        filePacks = result.isFilePacks();
+        uploadWindowSize = result.getUploadWindowSize();
         // change state to started
         TransferStatus ts;
         synchronized (this) {
@@ -191,6 +223,14 @@ public abstract class AbstractTransfer implements Runnable, Transfer, OperationH
         return true;
     }
 
+    /**
+     * Sends begin request to server, resumed transfer sends resume request instead.
+     */
+    protected BeginResult beginTransfer() {
+        BeginOperation op = new BeginOperation(service, request.getData(), config.getBlockEncoding());
+        return op.execute();
+    }
+
     private boolean transfer() throws TransferException {
         if (cancelIfRequested()) {
             return false;
@@ -221,6 +261,13 @@ public abstract class AbstractTransfer implements Runnable, Transfer, OperationH
         request.onTransferProgress(status);
     }
 
+    /**
+     * Reports sent or received file data to metrics.
+     */
+    protected void onDataTransferred(long size) {
+        config.getMetrics().dataTransferred(direction, size);
+    }
+
     protected void frameProcessed(int seqNum) {
         TransferStatus ts;
         synchronized (this) {
@@ -32,7 +32,8 @@ public class ClientImpl implements Client {
     protected final ClientConfig config;
 
     public ClientImpl(ClientConfig config) {
-        this.executor = new TaskExecutor(config.getThreadPoolSize(), "client");
+        this.executor = new TaskExecutor(config.getThreadPoolSize(), "client", config.isVirtualThreads(),
+                config.getVirtualThreadLimit());
         this.service = createService(config);
         this.config = config;
     }
@@ -52,6 +53,24 @@ public class ClientImpl implements Client {
         transfer.run();
     }
 
+    @Override
+    public synchronized Transfer resumeUpload(UploadRequest request, String transferId) {
+        Validate.isTrue(executor.isRunning());
+        Validate.notEmpty(transferId);
+
+        AbstractTransfer transfer = new UploadTransfer(request, transferId, config, service);
+        executor.addTask(transfer);
+        return transfer;
+    }
+
+    @Override
+    public void resumeUploadSync(UploadRequest request, String transferId) {
+        Validate.notEmpty(transferId);
+
+        AbstractTransfer transfer = new UploadTransfer(request, transferId, config, service);
+        transfer.run();
+    }
+
     @Override
     public synchronized Transfer download(DownloadRequest request) {
         Validate.isTrue(executor.isRunning());
@@ -70,6 +89,7 @@ public class ClientImpl implements Client {
     @Override
     public synchronized void start() {
         executor.start();
+        config.getMetrics().bindExecutor(executor);
     }
 
     @Override
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
-import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,13 +13,14 @@ import com.lightcomp.ft.client.TransferStatus;
 import com.lightcomp.ft.client.internal.operations.OperationResult.Type;
 import com.lightcomp.ft.client.internal.operations.ReceiveOperation;
 import com.lightcomp.ft.client.internal.operations.ReceiveResult;
-import com.lightcomp.ft.common.PathUtils;
 import com.lightcomp.ft.core.recv.RecvContext;
 import com.lightcomp.ft.core.recv.RecvContextImpl;
 import com.lightcomp.ft.core.recv.RecvFrameProcessor;
+import com.lightcomp.ft.common.PathUtils;
 import com.lightcomp.ft.core.recv.RecvProgressInfo;
 import com.lightcomp.ft.exception.TransferExBuilder;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.TransferMetrics.Direction;
 import com.lightcomp.ft.wsdl.v1.FileTransferService;
 
 public class DownloadTransfer extends AbstractTransfer implements RecvProgressInfo {
@@ -29,10 +29,8 @@ public class DownloadTransfer extends AbstractTransfer implements RecvProgressIn
 
     private final Path downloadDir;
 
-    private Path tempDir;
-
     protected DownloadTransfer(DownloadRequest request, ClientConfig config, FileTransferService service) {
-        super(request, config, service);
+        super(request, Direction.DOWNLOAD, config, service);
         this.downloadDir = request.getDownloadDir();
     }
 
@@ -44,43 +42,49 @@ public class DownloadTransfer extends AbstractTransfer implements RecvProgressIn
             // copy status in synch block
             ts = status.copy();
         }
+        onDataTransferred(size);
         // any exception is caught in run() and transfer fails
         onTransferProgress(ts);
     }
 
     @Override
     protected boolean transferFrames() throws TransferException {
+        RecvContextImpl recvCtx = new RecvContextImpl(this, downloadDir, config);
         try {
-            prepareTempDir();
-            return transferFramesInternal();
+            // receive frames concurrently within window
+            int windowSize = config.getDownloadWindowSize();
+            if (windowSize > 1) {
+                return receiveFramesPipelined(recvCtx, windowSize);
+            }
+            return transferFramesInternal(recvCtx);
         } finally {
-            deleteTempDir();
+            // close file left open by failed transfer
+            recvCtx.close();
         }
     }
 
-    private void prepareTempDir() throws TransferException {
-        Validate.isTrue(tempDir == null);
+    private boolean receiveFramesPipelined(RecvContext recvCtx, int windowSize) throws TransferException {
+        Path tempDir;
         try {
             tempDir = Files.createTempDirectory(config.getWorkDir(), transferId);
         } catch (IOException e) {
-            throw new TransferExBuilder("Failed to create temporary download directory", this).setCause(e).build();
+            throw new TransferExBuilder("Failed to create temporary download directory", this)
+                    .addParam("parentPath", config.getWorkDir()).setCause(e).build();
         }
-    }
-
-    private void deleteTempDir() {
-        if (tempDir != null) {
+        try {
+            return new ReceivePipeline(this, service, windowSize, tempDir).receiveFrames(recvCtx);
+        } finally {
             try {
                 PathUtils.deleteWithChildren(tempDir);
             } catch (IOException e) {
-                TransferExBuilder teb = new TransferExBuilder("Failed to delete temporary download directory", this)
+                TransferExBuilder teb = new TransferExBuilder("Failed to delete temporary download files", this)
                         .setCause(e);
                 teb.log(logger);
             }
         }
     }
 
-    private boolean transferFramesInternal() throws TransferException {
-        RecvContext recvCtx = new RecvContextImpl(this, downloadDir, config.getChecksumAlg());
+    private boolean transferFramesInternal(RecvContext recvCtx) throws TransferException {
         int currSeqNum = 0;
         while (true) {
             if (cancelIfRequested()) {
@@ -95,9 +99,8 @@ public class DownloadTransfer extends AbstractTransfer implements RecvProgressIn
                 operationFailed(result);
                 return false;
             }
-            // process frame
+            // process frame directly from response
             RecvFrameProcessor rfp = RecvFrameProcessor.create(recvCtx, result.getFrame());
-            rfp.prepareData(tempDir);
             rfp.process();
             // add processed frame num
             frameProcessed(currSeqNum);
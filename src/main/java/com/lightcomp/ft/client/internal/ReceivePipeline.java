@@ -0,0 +1,311 @@
+package com.lightcomp.ft.client.internal;
+
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.lightcomp.ft.client.internal.operations.OperationHandler;
+import com.lightcomp.ft.client.internal.operations.OperationResult.Type;
+import com.lightcomp.ft.client.internal.operations.ReceiveOperation;
+import com.lightcomp.ft.client.internal.operations.ReceiveResult;
+import com.lightcomp.ft.common.VirtualThreads;
+import com.lightcomp.ft.core.recv.RecvContext;
+import com.lightcomp.ft.core.recv.RecvFrameProcessor;
+import com.lightcomp.ft.exception.TransferExBuilder;
+import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.TransferMetrics;
+import com.lightcomp.ft.wsdl.v1.FileTransferService;
+
+/**
+ * Receives download frames concurrently within window. Frames are requested without waiting for
+ * responses of previous frames until last frame is received, frame data are stored in temporary
+ * directory and processed in order of sequential numbers.
+ */
+class ReceivePipeline {
+
+    private final LinkedList<PipelineFrame> frames = new LinkedList<>();
+
+    private final DownloadTransfer transfer;
+
+    private final FileTransferService service;
+
+    private final int windowSize;
+
+    private final Path tempDir;
+
+    private ExecutorService executor;
+
+    private int lastSeqNum;
+
+    private boolean lastReceived;
+
+    private int lastFrameSeqNum;
+
+    private boolean terminated;
+
+    public ReceivePipeline(DownloadTransfer transfer, FileTransferService service, int windowSize, Path tempDir) {
+        this.transfer = transfer;
+        this.service = service;
+        this.windowSize = windowSize;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Receives and processes all frames.
+     *
+     * @return Returns true when all frames were processed, false when transfer failed or was canceled.
+     */
+    public boolean receiveFrames(RecvContext recvCtx) throws TransferException {
+        executor = VirtualThreads.newExecutor(windowSize, r -> {
+            Thread t = new Thread(r, "FileTransferReceive-" + transfer.getTransferId());
+            t.setDaemon(true);
+            return t;
+        }, transfer.config.isVirtualThreads());
+        try {
+            while (true) {
+                if (transfer.cancelIfRequested()) {
+                    return false;
+                }
+                if (canDispatch()) {
+                    dispatch(recvCtx);
+                    continue;
+                }
+                PipelineFrame frame = waitForFirst();
+                if (frame == null) {
+                    continue; // timeout or frame changed
+                }
+                ReceiveResult result = frame.getResult();
+                if (result.getType() != Type.SUCCESS) {
+                    transfer.operationFailed(result);
+                    return false;
+                }
+                // process stored frame in order
+                RecvFrameProcessor rfp = frame.getProcessor();
+                rfp.process();
+                // add processed frame num
+                transfer.frameProcessed(rfp.getSeqNum());
+                // exit if last
+                if (rfp.isLast()) {
+                    return true;
+                }
+            }
+        } finally {
+            terminate();
+        }
+    }
+
+    private synchronized boolean canDispatch() {
+        if (lastReceived || frames.size() >= windowSize) {
+            return false;
+        }
+        for (PipelineFrame frame : frames) {
+            // stop requesting when any frame failed
+            if (frame.isFailed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void dispatch(RecvContext recvCtx) {
+        PipelineFrame frame;
+        synchronized (this) {
+            lastSeqNum++;
+            frame = new PipelineFrame(recvCtx, lastSeqNum);
+            frames.add(frame);
+        }
+        executor.execute(frame);
+    }
+
+    /**
+     * Waits for stored first frame.
+     *
+     * @return Returns stored first frame or null.
+     */
+    private synchronized PipelineFrame waitForFirst() throws TransferException {
+        PipelineFrame first = frames.getFirst();
+        if (first.isDone()) {
+            first.checkData();
+            return frames.removeFirst();
+        }
+        try {
+            wait(100);
+        } catch (InterruptedException e) {
+            // ignore
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private synchronized void frameChanged() {
+        notifyAll();
+    }
+
+    private void terminate() {
+        synchronized (this) {
+            terminated = true;
+            // running requests are completed, only waiting for recovery is interrupted
+            frames.forEach(PipelineFrame::interruptRecovery);
+        }
+        executor.shutdown();
+        // stored frames are deleted with temporary directory
+        try {
+            while (!executor.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                // wait until all frames are terminated
+            }
+        } catch (InterruptedException e) {
+            // ignore
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class PipelineFrame implements Runnable, OperationHandler {
+
+        private final int seqNum;
+
+        private final ReceiveOperation operation;
+
+        private final RecvContext recvCtx;
+
+        private ReceiveResult result;
+
+        private RecvFrameProcessor processor;
+
+        private TransferException dataFailure;
+
+        private boolean done;
+
+        private Thread recoveringThread;
+
+        public PipelineFrame(RecvContext recvCtx, int seqNum) {
+            this.seqNum = seqNum;
+            this.operation = new ReceiveOperation(this, service, seqNum, windowSize);
+            this.recvCtx = recvCtx;
+        }
+
+        public ReceiveResult getResult() {
+            synchronized (ReceivePipeline.this) {
+                return result;
+            }
+        }
+
+        public RecvFrameProcessor getProcessor() {
+            synchronized (ReceivePipeline.this) {
+                return processor;
+            }
+        }
+
+        public boolean isFailed() {
+            synchronized (ReceivePipeline.this) {
+                return dataFailure != null || (result != null && result.getType() != Type.SUCCESS);
+            }
+        }
+
+        public boolean isDone() {
+            synchronized (ReceivePipeline.this) {
+                return done;
+            }
+        }
+
+        /**
+         * Throws exception when frame data were not stored.
+         */
+        public void checkData() throws TransferException {
+            synchronized (ReceivePipeline.this) {
+                if (dataFailure != null) {
+                    throw dataFailure;
+                }
+            }
+        }
+
+        @Override
+        public String getTransferId() {
+            return transfer.getTransferId();
+        }
+
+        @Override
+        public TransferMetrics getMetrics() {
+            return transfer.getMetrics();
+        }
+
+        @Override
+        public boolean prepareRecovery() {
+            synchronized (ReceivePipeline.this) {
+                if (isRecoveryStopped()) {
+                    return false;
+                }
+                recoveringThread = Thread.currentThread();
+            }
+            boolean recoverable = transfer.prepareRecovery();
+            synchronized (ReceivePipeline.this) {
+                recoveringThread = null;
+                if (isRecoveryStopped()) {
+                    // clear interrupt of terminated pipeline
+                    Thread.interrupted();
+                    return false;
+                }
+            }
+            return recoverable;
+        }
+
+        /**
+         * Interrupts thread waiting for recovery, caller must ensure synchronization.
+         */
+        void interruptRecovery() {
+            if (recoveringThread != null) {
+                recoveringThread.interrupt();
+            }
+        }
+
+        /**
+         * @return True when pipeline was terminated or frame is after last frame, caller must
+         *         ensure synchronization.
+         */
+        private boolean isRecoveryStopped() {
+            return terminated || (lastReceived && seqNum > lastFrameSeqNum);
+        }
+
+        @Override
+        public void run() {
+            synchronized (ReceivePipeline.this) {
+                // frame dispatched before termination is not requested
+                if (terminated) {
+                    done = true;
+                    return;
+                }
+            }
+            ReceiveResult opResult = operation.execute();
+            RecvFrameProcessor rfp = null;
+            if (opResult.getType() == Type.SUCCESS) {
+                rfp = RecvFrameProcessor.create(recvCtx, opResult.getFrame());
+            }
+            synchronized (ReceivePipeline.this) {
+                result = opResult;
+                // frames after last must not be requested
+                if (rfp != null && rfp.isLast()) {
+                    lastReceived = true;
+                    lastFrameSeqNum = rfp.getSeqNum();
+                }
+            }
+            TransferException failure = null;
+            if (rfp != null) {
+                try {
+                    rfp.prepareData(tempDir, transfer.config.getMaxMemoryFrameSize(),
+                            transfer.config.getBufferPool());
+                } catch (TransferException e) {
+                    failure = e;
+                } catch (Throwable t) {
+                    failure = new TransferExBuilder("Failed to store frame data", transfer)
+                            .addParam("seqNum", rfp.getSeqNum()).setCause(t).build();
+                }
+            }
+            synchronized (ReceivePipeline.this) {
+                processor = rfp;
+                dataFailure = failure;
+                done = true;
+            }
+            frameChanged();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.lightcomp.ft.client.internal;
+
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.lightcomp.ft.client.internal.operations.OperationResult;
+import com.lightcomp.ft.client.internal.operations.OperationResult.Type;
+import com.lightcomp.ft.client.internal.operations.SendOperation;
+import com.lightcomp.ft.common.VirtualThreads;
+import com.lightcomp.ft.core.send.FrameBuilder;
+import com.lightcomp.ft.core.send.SendFrameContext;
+import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.wsdl.v1.FileTransferService;
+
+/**
+ * Sends upload frames concurrently within window. Next frame is sent when data of previous frame
+ * were streamed, checksums of split files are generated in sequence. Frames are confirmed in order
+ * of sequential numbers.
+ */
+class SendPipeline {
+
+    private final LinkedList<PipelineOperation> operations = new LinkedList<>();
+
+    private final UploadTransfer transfer;
+
+    private final FileTransferService service;
+
+    private final int windowSize;
+
+    private ExecutorService executor;
+
+    private boolean lastDispatched;
+
+    public SendPipeline(UploadTransfer transfer, FileTransferService service, int windowSize) {
+        this.transfer = transfer;
+        this.service = service;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Sends all frames from builder.
+     *
+     * @return Returns true when all frames were sent, false when transfer failed or was canceled.
+     */
+    public boolean sendFrames(FrameBuilder frameBuilder) throws TransferException {
+        executor = VirtualThreads.newExecutor(windowSize, r -> {
+            Thread t = new Thread(r, "FileTransferSend-" + transfer.getTransferId());
+            t.setDaemon(true);
+            return t;
+        }, transfer.config.isVirtualThreads());
+        try {
+            while (true) {
+                if (transfer.cancelIfRequested()) {
+                    return false;
+                }
+                if (canDispatch()) {
+                    dispatch(frameBuilder.build());
+                    continue;
+                }
+                PipelineOperation op = waitForFirst();
+                if (op == null) {
+                    continue; // timeout or next frame can be dispatched
+                }
+                OperationResult result = op.getResult();
+                if (result.getType() != Type.SUCCESS) {
+                    transfer.operationFailed(result);
+                    return false;
+                }
+                // add processed frame num
+                transfer.frameProcessed(op.getSeqNum());
+                // exit if last
+                if (op.isLast()) {
+                    return true;
+                }
+            }
+        } finally {
+            terminate();
+        }
+    }
+
+    private synchronized boolean canDispatch() {
+        if (lastDispatched || operations.size() >= windowSize) {
+            return false;
+        }
+        if (operations.isEmpty()) {
+            return true;
+        }
+        for (PipelineOperation op : operations) {
+            // stop sending when any frame failed
+            if (op.isFailed()) {
+                return false;
+            }
+        }
+        return operations.getLast().isDataSent();
+    }
+
+    private void dispatch(SendFrameContext frameCtx) {
+        PipelineOperation op = new PipelineOperation(frameCtx);
+        synchronized (this) {
+            operations.add(op);
+            lastDispatched = frameCtx.isLast();
+        }
+        executor.execute(op);
+    }
+
+    /**
+     * Waits for completion of first operation or dispatch of next frame.
+     *
+     * @return Returns completed first operation or null.
+     */
+    private synchronized PipelineOperation waitForFirst() {
+        PipelineOperation first = operations.getFirst();
+        if (first.isDone()) {
+            return operations.removeFirst();
+        }
+        try {
+            wait(100);
+        } catch (InterruptedException e) {
+            // ignore
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private synchronized void operationChanged() {
+        notifyAll();
+    }
+
+    private void terminate() {
+        executor.shutdownNow();
+        // running frames must not read from closed builder
+        try {
+            while (!executor.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                // wait until all frames are terminated
+            }
+        } catch (InterruptedException e) {
+            // ignore
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class PipelineOperation extends SendOperation implements Runnable {
+
+        private OperationResult result;
+
+        private boolean dataSent;
+
+        public PipelineOperation(SendFrameContext frameCtx) {
+            super(transfer, SendPipeline.this.service, frameCtx, windowSize);
+        }
+
+        public OperationResult getResult() {
+            synchronized (SendPipeline.this) {
+                return result;
+            }
+        }
+
+        public boolean isDone() {
+            synchronized (SendPipeline.this) {
+                return result != null;
+            }
+        }
+
+        public boolean isFailed() {
+            synchronized (SendPipeline.this) {
+                return result != null && result.getType() != Type.SUCCESS;
+            }
+        }
+
+        public boolean isDataSent() {
+            synchronized (SendPipeline.this) {
+                return dataSent || result != null;
+            }
+        }
+
+        @Override
+        public void onDataSendFinished() {
+            synchronized (SendPipeline.this) {
+                dataSent = true;
+            }
+            operationChanged();
+        }
+
+        @Override
+        public void run() {
+            OperationResult opResult = execute();
+            synchronized (SendPipeline.this) {
+                result = opResult;
+            }
+            operationChanged();
+        }
+    }
+}
@@ -91,6 +91,14 @@ public class TransferStatusImpl implements TransferStatus {
         updateActivity();
     }
     
+    /**
+     * Frames processed by server before resumed transfer was interrupted are not sent again.
+     */
+    public void resume(int lastFrameSeqNum) {
+        this.lastFrameSeqNum = lastFrameSeqNum;
+        updateActivity();
+    }
+
     public void changeState(TransferState nextState) {
         Validate.notNull(nextState);
         state = nextState;
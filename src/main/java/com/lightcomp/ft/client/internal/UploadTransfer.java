@@ -3,22 +3,44 @@ package com.lightcomp.ft.client.internal;
 import com.lightcomp.ft.client.ClientConfig;
 import com.lightcomp.ft.client.TransferStatus;
 import com.lightcomp.ft.client.UploadRequest;
+import com.lightcomp.ft.client.internal.operations.BeginResult;
 import com.lightcomp.ft.client.internal.operations.OperationResult;
 import com.lightcomp.ft.client.internal.operations.OperationResult.Type;
+import com.lightcomp.ft.client.internal.operations.ResumeOperation;
+import com.lightcomp.ft.client.internal.operations.ResumeResult;
 import com.lightcomp.ft.client.internal.operations.SendOperation;
 import com.lightcomp.ft.core.send.FrameBuilder;
 import com.lightcomp.ft.core.send.SendFrameContext;
 import com.lightcomp.ft.core.send.SendProgressInfo;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.TransferMetrics.Direction;
 import com.lightcomp.ft.wsdl.v1.FileTransferService;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 
 public class UploadTransfer extends AbstractTransfer implements SendProgressInfo {
 
     private final UploadRequest request;
 
+    /**
+     * Id of interrupted transfer, null when transfer is not resumed.
+     */
+    private final String resumedTransferId;
+
+    private int resumedSeqNum;
+
     public UploadTransfer(UploadRequest request, ClientConfig config, FileTransferService service) {
-        super(request, config, service);
+        this(request, null, config, service);
+    }
+
+    /**
+     * @param resumedTransferId
+     *            id of interrupted transfer, null for new transfer
+     */
+    public UploadTransfer(UploadRequest request, String resumedTransferId, ClientConfig config,
+            FileTransferService service) {
+        super(request, Direction.UPLOAD, config, service);
         this.request = request;
+        this.resumedTransferId = resumedTransferId;
     }
 
     @Override
@@ -30,15 +52,49 @@ public class UploadTransfer extends AbstractTransfer implements SendProgressInfo
             // copy status in synch block
             ts = status.copy();
         }
+        onDataTransferred(size);
         request.onTransferProgress(ts);
     }
 
+    @Override
+    protected BeginResult beginTransfer() {
+        if (resumedTransferId == null) {
+            return super.beginTransfer();
+        }
+        ResumeOperation op = new ResumeOperation(service, resumedTransferId);
+        ResumeResult result = op.execute();
+        resumedSeqNum = result.getLastFrameSeqNum();
+        return result;
+    }
+
     @Override
 	protected boolean transferFrames() throws TransferException {
-		FrameBuilder frameBuilder = new FrameBuilder(this, config);
+		// server which resumes upload decodes both encodings and file packs
+		boolean resumed = resumedTransferId != null;
+		BlockEncoding frameEncoding = resumed ? config.getBlockEncoding() : blockEncoding;
+		FrameBuilder frameBuilder = new FrameBuilder(this, config, frameEncoding, resumed || filePacks);
 		frameBuilder.init(request.getRootItemsReader());
 
 		try {
+			// skip frames processed by server before transfer was interrupted
+			if (resumedSeqNum > 0) {
+				boolean last = frameBuilder.skipFrames(resumedSeqNum);
+				TransferStatus ts;
+				synchronized (this) {
+					status.resume(resumedSeqNum);
+					// copy status in synch block
+					ts = status.copy();
+				}
+				request.onTransferProgress(ts);
+				if (last) {
+					return true;
+				}
+			}
+			// send frames concurrently within window
+			int windowSize = Math.min(config.getUploadWindowSize(), uploadWindowSize);
+			if (windowSize > 1) {
+				return new SendPipeline(this, service, windowSize).sendFrames(frameBuilder);
+			}
 			// send all frames
 			while (true) {
 				if (cancelIfRequested()) {
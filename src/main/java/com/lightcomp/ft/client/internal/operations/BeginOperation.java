@@ -6,7 +6,9 @@ import com.lightcomp.ft.client.internal.ExceptionType;
 import com.lightcomp.ft.client.internal.operations.OperationResult.Type;
 import com.lightcomp.ft.wsdl.v1.FileTransferException;
 import com.lightcomp.ft.wsdl.v1.FileTransferService;
+import com.lightcomp.ft.xsd.v1.BeginRequest;
 import com.lightcomp.ft.xsd.v1.BeginResponse;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 import com.lightcomp.ft.xsd.v1.GenericDataType;
 
 public class BeginOperation {
@@ -15,9 +17,16 @@ public class BeginOperation {
 
     private final GenericDataType request;
 
-    public BeginOperation(FileTransferService service, GenericDataType request) {
+    private final BlockEncoding blockEncoding;
+
+    /**
+     * @param blockEncoding
+     *            block encoding preferred by client, offered to server when not XML
+     */
+    public BeginOperation(FileTransferService service, GenericDataType request, BlockEncoding blockEncoding) {
         this.service = service;
         this.request = request;
+        this.blockEncoding = blockEncoding;
     }
 
     public BeginResult execute() {
@@ -29,16 +38,40 @@ public class BeginOperation {
     }
 
     private BeginResult send() throws FileTransferException {
-        BeginResponse br = service.begin(request);
-        return createResult(br.getTransferId());
+        BeginResponse br = service.begin(createRequest());
+        // server without upload window receives frames in sequence
+        int uploadWindowSize = br.getUploadWindow() != null ? br.getUploadWindow() : 1;
+        return createResult(br.getTransferId(), br.getBlockEnc(), Boolean.TRUE.equals(br.isFilePacks()),
+                uploadWindowSize);
+    }
+
+    private BeginRequest createRequest() {
+        BeginRequest br = new BeginRequest();
+        if (request != null) {
+            br.setId(request.getId());
+            br.setType(request.getType());
+            br.setXmlData(request.getXmlData());
+            br.setBinData(request.getBinData());
+        }
+        if (blockEncoding != BlockEncoding.XML) {
+            br.getBlockEncs().add(blockEncoding);
+        }
+        // downloaded packs are always supported
+        br.setFilePacks(Boolean.TRUE);
+        return br;
     }
 
-    private BeginResult createResult(String transferId) {
+    private BeginResult createResult(String transferId, BlockEncoding selectedEncoding, boolean filePacks,
+            int uploadWindowSize) {
         if (StringUtils.isEmpty(transferId)) {
             OperationError err = new OperationError("Server returned empty transfer id");
             return new BeginResult(Type.FAIL, err);
         }
-        return new BeginResult(Type.SUCCESS, transferId);
+        // server without block negotiation does not select any
+        if (selectedEncoding == null) {
+            selectedEncoding = BlockEncoding.XML;
+        }
+        return new BeginResult(Type.SUCCESS, transferId, selectedEncoding, filePacks, uploadWindowSize);
     }
 
     private BeginResult operationFailed(Throwable t) {
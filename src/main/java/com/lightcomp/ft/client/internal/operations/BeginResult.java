@@ -1,20 +1,60 @@
 package com.lightcomp.ft.client.internal.operations;
 
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
+
 public class BeginResult extends OperationResult {
 
     private final String transferId;
 
-    public BeginResult(Type type, String transferId) {
+    private final BlockEncoding blockEncoding;
+
+    private final boolean filePacks;
+
+    private final int uploadWindowSize;
+
+    public BeginResult(Type type, String transferId, int uploadWindowSize) {
+        this(type, transferId, BlockEncoding.XML, false, uploadWindowSize);
+    }
+
+    public BeginResult(Type type, String transferId, BlockEncoding blockEncoding, boolean filePacks,
+            int uploadWindowSize) {
         super(type);
         this.transferId = transferId;
+        this.blockEncoding = blockEncoding;
+        this.filePacks = filePacks;
+        this.uploadWindowSize = uploadWindowSize;
     }
 
     public BeginResult(Type type, OperationError error) {
         super(type, error);
         this.transferId = null;
+        this.blockEncoding = null;
+        this.filePacks = false;
+        this.uploadWindowSize = 0;
     }
 
     public String getTransferId() {
         return transferId;
     }
+
+    /**
+     * @return Block encoding selected by server.
+     */
+    public BlockEncoding getBlockEncoding() {
+        return blockEncoding;
+    }
+
+    /**
+     * @return True when server receives packs of small files.
+     */
+    public boolean isFilePacks() {
+        return filePacks;
+    }
+
+    /**
+     * @return Number of upload frames which server receives ahead.
+     */
+    public int getUploadWindowSize() {
+        return uploadWindowSize;
+    }
 }
@@ -1,9 +1,13 @@
 package com.lightcomp.ft.client.internal.operations;
 
+import com.lightcomp.ft.metrics.TransferMetrics;
+
 public interface OperationHandler {
 
     String getTransferId();
 
+    TransferMetrics getMetrics();
+
     /**
      * @return true when operation can be recovered
      */
@@ -13,11 +13,23 @@ public class ReceiveOperation extends RecoverableOperation {
 
     private final int seqNum;
 
+    private final int windowSize;
+
     private ReceiveResult result;
 
     public ReceiveOperation(OperationHandler handler, FileTransferService service, int seqNum) {
+        this(handler, service, seqNum, 1);
+    }
+
+    /**
+     * @param windowSize
+     *            number of frames which can be received concurrently, server status can be ahead of
+     *            or behind this frame within the window
+     */
+    public ReceiveOperation(OperationHandler handler, FileTransferService service, int seqNum, int windowSize) {
         super(handler, service);
         this.seqNum = seqNum;
+        this.windowSize = windowSize;
     }
 
     @Override
@@ -58,12 +70,12 @@ public class ReceiveOperation extends RecoverableOperation {
             return false;
         }
         int serverSeqNum = status.getLastFrameSeqNum();
-        // test if match with current frame
-        if (seqNum == serverSeqNum) {
+        // test if match with current or already sent frame within window
+        if (seqNum <= serverSeqNum && seqNum > serverSeqNum - windowSize) {
             return true;
         }
-        // test if match with previous frame
-        if (seqNum == serverSeqNum + 1) {
+        // test if match with next frames within window
+        if (seqNum > serverSeqNum && seqNum <= serverSeqNum + windowSize) {
             return true;
         }
         OperationError err = new OperationError("Cannot recover last received frame").addParam("clientSeqNum", seqNum)
@@ -46,6 +46,7 @@ public abstract class RecoverableOperation {
                     recoveryFailed(Type.CANCEL, t, type);
                     return; // fail
                 }
+                handler.getMetrics().operationRetried(type == ExceptionType.BUSY);
                 recovery = true;
             }
         }
@@ -0,0 +1,54 @@
+package com.lightcomp.ft.client.internal.operations;
+
+import com.lightcomp.ft.client.internal.ExceptionType;
+import com.lightcomp.ft.client.internal.operations.OperationResult.Type;
+import com.lightcomp.ft.wsdl.v1.FileTransferException;
+import com.lightcomp.ft.wsdl.v1.FileTransferService;
+import com.lightcomp.ft.xsd.v1.FileTransferState;
+import com.lightcomp.ft.xsd.v1.ResumeRequest;
+import com.lightcomp.ft.xsd.v1.TransferStatus;
+
+public class ResumeOperation {
+
+    private final FileTransferService service;
+
+    private final String transferId;
+
+    public ResumeOperation(FileTransferService service, String transferId) {
+        this.service = service;
+        this.transferId = transferId;
+    }
+
+    public ResumeResult execute() {
+        try {
+            return send();
+        } catch (Throwable t) {
+            return operationFailed(t);
+        }
+    }
+
+    private ResumeResult send() throws FileTransferException {
+        ResumeRequest rr = new ResumeRequest();
+        rr.setTransferId(transferId);
+        TransferStatus ts = service.resume(rr);
+        return createResult(ts);
+    }
+
+    private ResumeResult createResult(TransferStatus ts) {
+        FileTransferState fts = ts.getState();
+        if (fts != FileTransferState.ACTIVE) {
+            OperationError err = new OperationError("Failed to resume transfer, invalid server state")
+                    .addParam("serverState", fts);
+            return new ResumeResult(Type.FAIL, err);
+        }
+        // server without upload window receives frames in sequence
+        int uploadWindowSize = ts.getUploadWindow() != null ? ts.getUploadWindow() : 1;
+        return new ResumeResult(Type.SUCCESS, transferId, ts.getLastFrameSeqNum(), uploadWindowSize);
+    }
+
+    private ResumeResult operationFailed(Throwable t) {
+        ExceptionType type = ExceptionType.resolve(t);
+        OperationError err = new OperationError("Failed to resume transfer").setCause(t).setCauseType(type);
+        return new ResumeResult(Type.FAIL, err);
+    }
+}
@@ -0,0 +1,23 @@
+package com.lightcomp.ft.client.internal.operations;
+
+public class ResumeResult extends BeginResult {
+
+    private final int lastFrameSeqNum;
+
+    public ResumeResult(Type type, String transferId, int lastFrameSeqNum, int uploadWindowSize) {
+        super(type, transferId, uploadWindowSize);
+        this.lastFrameSeqNum = lastFrameSeqNum;
+    }
+
+    public ResumeResult(Type type, OperationError error) {
+        super(type, error);
+        this.lastFrameSeqNum = 0;
+    }
+
+    /**
+     * @return Sequential number of last frame processed by server before transfer was interrupted.
+     */
+    public int getLastFrameSeqNum() {
+        return lastFrameSeqNum;
+    }
+}
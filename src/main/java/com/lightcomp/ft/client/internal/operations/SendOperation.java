@@ -14,13 +14,34 @@ public class SendOperation extends RecoverableOperation implements DataSendFailu
 
     private final SendFrameContext frameCtx;
 
+    private final int windowSize;
+
     private Throwable dataSendFailureCause;
 
     private OperationResult result;
 
     public SendOperation(OperationHandler handler, FileTransferService servce, SendFrameContext frameCtx) {
+        this(handler, servce, frameCtx, 1);
+    }
+
+    /**
+     * @param windowSize
+     *            number of frames which can be sent concurrently, server status can be ahead or behind
+     *            of this frame within the window
+     */
+    public SendOperation(OperationHandler handler, FileTransferService servce, SendFrameContext frameCtx,
+            int windowSize) {
         super(handler, servce);
         this.frameCtx = frameCtx;
+        this.windowSize = windowSize;
+    }
+
+    public int getSeqNum() {
+        return frameCtx.getSeqNum();
+    }
+
+    public boolean isLast() {
+        return frameCtx.isLast();
     }
 
     @Override
@@ -42,7 +63,12 @@ public class SendOperation extends RecoverableOperation implements DataSendFailu
         SendRequest sr = new SendRequest();
         sr.setFrame(frame);
         sr.setTransferId(getTransferId());
-        service.send(sr);
+        try {
+            service.send(sr);
+        } finally {
+            // data stream can be abandoned when request failed
+            frameCtx.releaseData();
+        }
         // check data send failure - MTOM does not fire exception
         if (dataSendFailureCause != null) {
             throw dataSendFailureCause;
@@ -62,13 +88,13 @@ public class SendOperation extends RecoverableOperation implements DataSendFailu
         // check frame seq number
         int seqNum = frameCtx.getSeqNum();
         int serverSeqNum = status.getLastFrameSeqNum();
-        // test if succeeded
-        if (seqNum == serverSeqNum) {
+        // test if succeeded, server can be ahead when frames are sent concurrently
+        if (seqNum <= serverSeqNum && seqNum > serverSeqNum - windowSize) {
             result = new OperationResult(Type.SUCCESS);
             return false;
         }
-        // test if match with previous frame
-        if (seqNum == serverSeqNum + 1) {
+        // test if match with frames expected by server
+        if (seqNum > serverSeqNum && seqNum <= serverSeqNum + windowSize) {
             return true;
         }
         // incorrect frame number
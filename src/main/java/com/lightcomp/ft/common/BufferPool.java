@@ -0,0 +1,150 @@
+package com.lightcomp.ft.common;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Thread safe pool of reusable heap or direct buffers. Buffers are pooled in size classes of power of
+ * two from {@link #MIN_BUFFER_SIZE} to {@link #MAX_BUFFER_SIZE}, larger buffers are allocated on
+ * demand and never pooled. Number of pooled bytes is limited, surplus buffers are left to GC.
+ */
+public class BufferPool {
+
+    public static final int MIN_BUFFER_SIZE = 4096;
+
+    public static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private static final int MIN_SIZE_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+
+    private static final BufferPool DEFAULT = new BufferPool(false, 64 * 1024 * 1024);
+
+    private final Queue<ByteBuffer>[] sizeClasses;
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    private final LongAdder allocatedCount = new LongAdder();
+
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private final LongAdder acquiredCount = new LongAdder();
+
+    private final boolean direct;
+
+    private final long maxPooledBytes;
+
+    /**
+     * @param direct
+     *            when true direct buffers are allocated
+     * @param maxPooledBytes
+     *            maximum size of idle pooled buffers in bytes, zero or greater
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(boolean direct, long maxPooledBytes) {
+        Validate.isTrue(maxPooledBytes >= 0);
+
+        this.direct = direct;
+        this.maxPooledBytes = maxPooledBytes;
+        this.sizeClasses = new Queue[Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - MIN_SIZE_SHIFT + 1];
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * @return Shared pool of heap buffers with 64MB limit.
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Acquires cleared buffer with limit set to requested size, capacity can be greater. Buffer should be
+     * released when is no longer used.
+     */
+    public ByteBuffer acquire(int size) {
+        Validate.isTrue(size >= 0);
+        acquiredCount.increment();
+
+        if (size > MAX_BUFFER_SIZE) {
+            return allocate(size);
+        }
+        int index = getClassIndex(size);
+        ByteBuffer bb = sizeClasses[index].poll();
+        if (bb != null) {
+            pooledBytes.addAndGet(-bb.capacity());
+        } else {
+            bb = allocate(MIN_BUFFER_SIZE << index);
+        }
+        bb.clear().limit(size);
+        return bb;
+    }
+
+    /**
+     * Returns buffer to pool. Buffer must not be used after release. Handed-out buffers are not tracked,
+     * any buffer of matching type with power of two capacity within pooled size classes is accepted,
+     * other buffers are ignored. Caller must not release buffer which is still referenced elsewhere.
+     */
+    public void release(ByteBuffer bb) {
+        int capacity = bb.capacity();
+        if (bb.isDirect() != direct || capacity < MIN_BUFFER_SIZE || capacity > MAX_BUFFER_SIZE
+                || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        sizeClasses[getClassIndex(capacity)].offer(bb);
+    }
+
+    /**
+     * @return Number of buffers allocated by pool since creation.
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.sum();
+    }
+
+    /**
+     * @return Total size of buffers allocated by pool since creation.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * @return Number of acquired buffers since creation, pool hits are acquired minus allocated buffers.
+     */
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    /**
+     * @return Current size of idle pooled buffers.
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        allocatedCount.increment();
+        allocatedBytes.add(capacity);
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static int getClassIndex(int size) {
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        // ceil(log2(size)) - log2(MIN_BUFFER_SIZE)
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+    }
+}
@@ -1,20 +1,51 @@
 package com.lightcomp.ft.common;
 
+import java.nio.ByteBuffer;
+
 public interface Checksum {
 
     public enum Algorithm {
-        SHA_512(64);
+        SHA_512(64),
+        SHA_256(32),
+        /**
+         * Non-cryptographic, detects transmission errors only. Intended for trusted networks.
+         */
+        CRC32C(4),
+        /**
+         * Non-cryptographic XXH64, detects transmission errors only. Intended for trusted networks.
+         */
+        XXH64(8),
+        /**
+         * SHA-512 tree hash, leaves of fixed size are hashed in parallel. Root is SHA-512 of leaf
+         * hashes.
+         */
+        SHA_512_TREE(64, "SHA-512");
 
         private final int byteLen;
 
+        private final String digestName;
+
         private Algorithm(int byteLen) {
             this.byteLen = byteLen;
+            this.digestName = null;
+        }
+
+        private Algorithm(int byteLen, String digestName) {
+            this.byteLen = byteLen;
+            this.digestName = digestName;
         }
 
         public String getRealName() {
             return name().replace('_', '-');
         }
 
+        /**
+         * Name of message digest used by algorithm.
+         */
+        public String getDigestName() {
+            return digestName != null ? digestName : getRealName();
+        }
+
         public int getByteLen() {
             return byteLen;
         }
@@ -37,6 +68,16 @@ public interface Checksum {
      */
     void update(long newPos, byte[] b, int off, int len);
 
+    /**
+     * Updates checksum directly from heap or direct buffer without intermediate copy.
+     * 
+     * @param newPos
+     *            the new position in data - remaining bytes of the buffer included
+     * @param bb
+     *            the buffer to update the checksum with, all remaining bytes are consumed
+     */
+    void update(long newPos, ByteBuffer bb);
+
     /**
      * Generates checksum from current value. After call checksum is no more updatable.
      */
@@ -12,8 +12,6 @@ public class ChecksumByteChannel implements WritableByteChannel {
 
     private long position;
 
-    private byte[] buffer = new byte[256];
-
     public ChecksumByteChannel(WritableByteChannel wbch, Checksum checksum, long position) {
         this.wbch = wbch;
         this.checksum = checksum;
@@ -27,7 +25,6 @@ public class ChecksumByteChannel implements WritableByteChannel {
 
     @Override
     public void close() throws IOException {
-        buffer = null;
         wbch.close();
     }
 
@@ -39,19 +36,9 @@ public class ChecksumByteChannel implements WritableByteChannel {
         int n = wbch.write(src);
         // increment position
         position += n;
-        // update checksum
-        updateChecksum(dsrc, n);
+        // update checksum from written part of buffer
+        dsrc.limit(dsrc.position() + n);
+        checksum.update(position, dsrc);
         return n;
     }
-
-    private void updateChecksum(ByteBuffer bb, int len) {
-        // reallocate buffer if needed
-        if (buffer.length < len) {
-            buffer = new byte[len];
-        }
-        // copy buffer
-        bb.get(buffer, 0, len);
-        // update checksum
-        checksum.update(position, buffer, 0, len);
-    }
 }
@@ -1,24 +1,36 @@
 package com.lightcomp.ft.common;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.lang3.Validate;
 
-public class ChecksumGenerator implements Checksum {
+/**
+ * Checksum computed from sequentially received data, data overlapping already processed position are
+ * skipped. Hash function is implemented by subclass.
+ */
+public abstract class ChecksumGenerator implements Checksum {
 
     private final Algorithm algorithm;
 
-    private final MessageDigest md;
+    // optional limiter of concurrent checksum computations
+    private final Semaphore limiter;
 
     // total number of processed bytes
     private long numProcessed;
 
     private byte[] result;
 
-    private ChecksumGenerator(Algorithm algorithm, MessageDigest md) {
+    protected ChecksumGenerator(Algorithm algorithm, Semaphore limiter) {
         this.algorithm = algorithm;
-        this.md = md;
+        this.limiter = limiter;
     }
 
     @Override
@@ -46,27 +58,159 @@ public class ChecksumGenerator implements Checksum {
             int newLen = (int) (newPos - numProcessed);
             int newOff = off + (len - newLen);
             // update checksum
-            md.update(b, newOff, newLen);
+            updateHash(b, newOff, newLen);
             // increment number of bytes processed
             numProcessed += newLen;
         }
     }
 
+    @Override
+    public synchronized void update(long newPos, ByteBuffer bb) {
+        // when result generated just check boundaries
+        if (result != null) {
+            Validate.isTrue(newPos <= numProcessed);
+            bb.position(bb.limit());
+            return;
+        }
+        // check if more bytes were processed than is current position
+        if (newPos > numProcessed) {
+            // calculate new length and skip already processed bytes
+            int newLen = (int) (newPos - numProcessed);
+            bb.position(bb.limit() - newLen);
+            // update checksum
+            updateHash(bb);
+            // increment number of bytes processed
+            numProcessed += newLen;
+        } else {
+            bb.position(bb.limit());
+        }
+    }
+
     @Override
     public synchronized byte[] generate() {
         if (result == null) {
-            result = md.digest();
+            result = generateHash();
         }
         return result;
     }
 
-    public static ChecksumGenerator create(Algorithm algorithm) {
-        MessageDigest md;
+    /**
+     * Updates hash function with new data, called in synchronized block.
+     */
+    protected abstract void updateHash(byte[] b, int off, int len);
+
+    /**
+     * Updates hash function with all remaining bytes of buffer, called in synchronized block.
+     */
+    protected abstract void updateHash(ByteBuffer bb);
+
+    /**
+     * Completes hash computation, called once in synchronized block.
+     */
+    protected abstract byte[] generateHash();
+
+    protected void acquire() {
+        if (limiter != null) {
+            limiter.acquireUninterruptibly();
+        }
+    }
+
+    /**
+     * Acquires limiter by fork-join pool thread, pool parallelism is compensated while thread is
+     * blocked.
+     */
+    protected void acquireManaged() {
+        if (limiter == null) {
+            return;
+        }
         try {
-            md = MessageDigest.getInstance(algorithm.getRealName());
+            ForkJoinPool.managedBlock(new LimiterBlocker(limiter));
+        } catch (InterruptedException e) {
+            // blocker is not interruptible
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void release() {
+        if (limiter != null) {
+            limiter.release();
+        }
+    }
+
+    static MessageDigest createDigest(Algorithm algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm.getDigestName());
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
-        return new ChecksumGenerator(algorithm, md);
+    }
+
+    public static ChecksumGenerator create(Algorithm algorithm) {
+        return create(algorithm, null);
+    }
+
+    /**
+     * @param limiter
+     *            limiter of concurrent checksum computations shared by generators, can be null
+     */
+    public static ChecksumGenerator create(Algorithm algorithm, Semaphore limiter) {
+        for (ChecksumProvider provider : Providers.LIST) {
+            ChecksumGenerator chg = provider.create(algorithm, limiter);
+            if (chg != null) {
+                return chg;
+            }
+        }
+        switch (algorithm) {
+        case SHA_512_TREE:
+            return new TreeChecksumGenerator(algorithm, limiter);
+        case CRC32C:
+            return new Crc32cGenerator(algorithm, limiter);
+        case XXH64:
+            return new XxHash64Generator(algorithm, limiter);
+        default:
+            return new DigestChecksumGenerator(algorithm, limiter);
+        }
+    }
+
+    /**
+     * Lazy holder of registered providers.
+     */
+    private static class Providers {
+
+        static final List<ChecksumProvider> LIST;
+
+        static {
+            List<ChecksumProvider> list = new ArrayList<>();
+            ServiceLoader.load(ChecksumProvider.class).forEach(list::add);
+            LIST = Collections.unmodifiableList(list);
+        }
+    }
+
+    private static class LimiterBlocker implements ForkJoinPool.ManagedBlocker {
+
+        private final Semaphore limiter;
+
+        private boolean acquired;
+
+        LimiterBlocker(Semaphore limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public boolean block() {
+            if (!acquired) {
+                limiter.acquireUninterruptibly();
+                acquired = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!acquired) {
+                acquired = limiter.tryAcquire();
+            }
+            return acquired;
+        }
     }
 }
@@ -1,5 +1,7 @@
 package com.lightcomp.ft.common;
 
+import java.nio.ByteBuffer;
+
 import org.apache.commons.lang3.Validate;
 
 public class ChecksumHolder implements Checksum {
@@ -24,6 +26,12 @@ public class ChecksumHolder implements Checksum {
         // NOP
     }
 
+    @Override
+    public void update(long newPos, ByteBuffer bb) {
+        // NOP, only consume buffer
+        bb.position(bb.limit());
+    }
+
     @Override
     public byte[] generate() {
         return checksum;
@@ -0,0 +1,17 @@
+package com.lightcomp.ft.common;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Service provider of checksum implementations, registered by {@link java.util.ServiceLoader}. Providers
+ * are asked before built-in implementations, so they can replace them, e.g. by native hashing.
+ */
+public interface ChecksumProvider {
+
+    /**
+     * @param limiter
+     *            limiter of concurrent checksum computations, can be null
+     * @return Returns generator or null when algorithm is not provided.
+     */
+    ChecksumGenerator create(Checksum.Algorithm algorithm, Semaphore limiter);
+}
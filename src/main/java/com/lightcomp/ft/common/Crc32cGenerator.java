@@ -0,0 +1,42 @@
+package com.lightcomp.ft.common;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32C;
+
+/**
+ * CRC32C computed by JDK implementation which uses CPU intrinsics when available.
+ */
+class Crc32cGenerator extends ChecksumGenerator {
+
+    private final CRC32C crc = new CRC32C();
+
+    Crc32cGenerator(Algorithm algorithm, Semaphore limiter) {
+        super(algorithm, limiter);
+    }
+
+    @Override
+    protected void updateHash(byte[] b, int off, int len) {
+        acquire();
+        try {
+            crc.update(b, off, len);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    protected void updateHash(ByteBuffer bb) {
+        acquire();
+        try {
+            crc.update(bb);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    protected byte[] generateHash() {
+        return ByteBuffer.allocate(4).putInt((int) crc.getValue()).array();
+    }
+}
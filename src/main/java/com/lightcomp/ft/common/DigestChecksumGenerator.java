@@ -0,0 +1,43 @@
+package com.lightcomp.ft.common;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sequential checksum computed by single message digest.
+ */
+class DigestChecksumGenerator extends ChecksumGenerator {
+
+    private final MessageDigest md;
+
+    DigestChecksumGenerator(Algorithm algorithm, Semaphore limiter) {
+        super(algorithm, limiter);
+        this.md = createDigest(algorithm);
+    }
+
+    @Override
+    protected void updateHash(byte[] b, int off, int len) {
+        acquire();
+        try {
+            md.update(b, off, len);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    protected void updateHash(ByteBuffer bb) {
+        acquire();
+        try {
+            md.update(bb);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    protected byte[] generateHash() {
+        return md.digest();
+    }
+}
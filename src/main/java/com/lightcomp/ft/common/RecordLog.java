@@ -0,0 +1,326 @@
+package com.lightcomp.ft.common;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of CRC framed records. Log starts with magic number of its owner, each record is
+ * prefixed by data length and CRC32 of data.
+ * <p>
+ * Log is not forced to disk after each append. Incomplete or torn record at the end of log is
+ * truncated when log is opened. Corrupted records within log are skipped and reported, reading resumes
+ * at next valid record when record length is corrupted. Owner must ensure synchronization.
+ */
+public class RecordLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordLog.class);
+
+    private static final int HEADER_SIZE = 4;
+
+    // record frame is length and CRC32 of record data
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    /**
+     * Consumer of records read when log is opened.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+
+        void accept(long position, byte[] data) throws IOException;
+    }
+
+    /**
+     * Writer of records to compacted log.
+     */
+    @FunctionalInterface
+    public interface RecordWriter {
+
+        /**
+         * @return Position of written record in compacted log.
+         */
+        long write(byte[] data) throws IOException;
+    }
+
+    /**
+     * Source of records which are kept by compaction.
+     */
+    @FunctionalInterface
+    public interface RecordSource {
+
+        void writeRecords(RecordWriter writer) throws IOException;
+    }
+
+    private final Path logFile;
+
+    private final int magic;
+
+    private FileChannel channel;
+
+    private int skippedRecords;
+
+    private RecordLog(Path logFile, int magic) {
+        this.logFile = logFile;
+        this.magic = magic;
+    }
+
+    /**
+     * Opens log, file is created when does not exist. Valid records are passed to consumer in order of
+     * appending.
+     *
+     * @param logFile
+     *            log file, not-null
+     * @param magic
+     *            magic number of log owner
+     * @param consumer
+     *            consumer of stored records, not-null
+     */
+    public static RecordLog open(Path logFile, int magic, RecordConsumer consumer) throws IOException {
+        Validate.notNull(logFile);
+        Validate.notNull(consumer);
+
+        RecordLog log = new RecordLog(logFile, magic);
+        log.load(consumer);
+        return log;
+    }
+
+    public Path getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * @return Number of corrupted records skipped when log was opened.
+     */
+    public int getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    /**
+     * Appends record at the end of log.
+     *
+     * @return Position of appended record.
+     */
+    public long append(byte[] data) throws IOException {
+        checkOpen();
+        long position = channel.size();
+        writeRecord(channel, position, data);
+        return position;
+    }
+
+    /**
+     * Reads record data at specified position.
+     */
+    public byte[] read(long position) throws IOException {
+        checkOpen();
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        readFully(channel, position, header);
+        int length = header.getInt(0);
+        int crc = header.getInt(4);
+        if (length < 0 || length > channel.size() - position - FRAME_HEADER_SIZE) {
+            throw new IOException("Invalid log record length, file=" + logFile + ", position=" + position);
+        }
+        ByteBuffer data = ByteBuffer.allocate(length);
+        readFully(channel, position + FRAME_HEADER_SIZE, data);
+        if (computeCrc(data.array()) != crc) {
+            throw new IOException("Corrupted log record, file=" + logFile + ", position=" + position);
+        }
+        return data.array();
+    }
+
+    /**
+     * Rewrites log with records of source. Source can read records of current log, log is replaced
+     * after all records are written and forced to disk.
+     */
+    public void compact(RecordSource source) throws IOException {
+        checkOpen();
+        Path tempFile = logFile.resolveSibling(logFile.getFileName() + ".compact");
+        try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(tempChannel);
+            long[] position = { HEADER_SIZE };
+            source.writeRecords(data -> {
+                long recordPosition = position[0];
+                position[0] += writeRecord(tempChannel, recordPosition, data);
+                return recordPosition;
+            });
+            tempChannel.force(true);
+        }
+        channel.close();
+        Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void checkOpen() {
+        Validate.validState(channel != null, "Record log is closed");
+    }
+
+    private void load(RecordConsumer consumer) throws IOException {
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            loadRecords(consumer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            channel = null;
+            throw e;
+        }
+    }
+
+    private void loadRecords(RecordConsumer consumer) throws IOException {
+        long size = channel.size();
+        // header can be incomplete only when crashed during creation
+        if (size < HEADER_SIZE) {
+            channel.truncate(0);
+            writeHeader(channel);
+            return;
+        }
+        long position = HEADER_SIZE;
+        DataInputStream in = openStream(0);
+        try {
+            if (in.readInt() != magic) {
+                throw new IOException("Invalid log header, file=" + logFile);
+            }
+            while (true) {
+                // incomplete frame header
+                long remaining = size - position;
+                if (remaining < FRAME_HEADER_SIZE) {
+                    break;
+                }
+                int length = in.readInt();
+                int crc = in.readInt();
+                // invalid length is checked before allocation
+                if (length < 0 || length > remaining - FRAME_HEADER_SIZE) {
+                    // torn tail when no valid record follows
+                    long nextPosition = findNextRecord(position + 1, size);
+                    if (nextPosition < 0) {
+                        break;
+                    }
+                    logger.error("Skipping corrupted log data, file={}, position={}, nextPosition={}", logFile,
+                            position, nextPosition);
+                    skippedRecords++;
+                    position = nextPosition;
+                    in.close();
+                    in = openStream(position);
+                    continue;
+                }
+                byte[] data = new byte[length];
+                in.readFully(data);
+                long nextPosition = position + FRAME_HEADER_SIZE + length;
+                if (computeCrc(data) != crc) {
+                    // only last record can be torn by crash
+                    if (nextPosition == size) {
+                        break;
+                    }
+                    logger.error("Skipping corrupted log record, file={}, position={}", logFile, position);
+                    skippedRecords++;
+                    position = nextPosition;
+                    continue;
+                }
+                consumer.accept(position, data);
+                position = nextPosition;
+            }
+        } finally {
+            in.close();
+        }
+        // remove torn record written during crash
+        if (position < size) {
+            logger.warn("Truncating incomplete log record, file={}, position={}", logFile, position);
+            channel.truncate(position);
+        }
+    }
+
+    private DataInputStream openStream(long position) throws IOException {
+        InputStream is = Files.newInputStream(logFile);
+        try {
+            is.skipNBytes(position);
+        } catch (IOException e) {
+            is.close();
+            throw e;
+        }
+        return new DataInputStream(new BufferedInputStream(is));
+    }
+
+    /**
+     * Searches first valid record after corrupted frame header.
+     *
+     * @return Position of valid record or -1 when no valid record follows.
+     */
+    private long findNextRecord(long position, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        for (; position <= size - FRAME_HEADER_SIZE; position++) {
+            header.clear();
+            readFully(channel, position, header);
+            int length = header.getInt(0);
+            // empty record is not accepted, zeroed data would match it
+            if (length <= 0 || length > size - position - FRAME_HEADER_SIZE) {
+                continue;
+            }
+            ByteBuffer data = ByteBuffer.allocate(length);
+            readFully(channel, position + FRAME_HEADER_SIZE, data);
+            if (computeCrc(data.array()) == header.getInt(4)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private void writeHeader(FileChannel fc) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE);
+        bb.putInt(magic).flip();
+        writeFully(fc, 0, bb);
+    }
+
+    /**
+     * @return Returns number of written bytes.
+     */
+    private static int writeRecord(FileChannel fc, long position, byte[] data) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(FRAME_HEADER_SIZE + data.length);
+        bb.putInt(data.length).putInt(computeCrc(data)).put(data).flip();
+        writeFully(fc, position, bb);
+        return bb.limit();
+    }
+
+    private static void writeFully(FileChannel fc, long position, ByteBuffer bb) throws IOException {
+        while (bb.hasRemaining()) {
+            position += fc.write(bb, position);
+        }
+    }
+
+    private void readFully(FileChannel fc, long position, ByteBuffer bb) throws IOException {
+        while (bb.hasRemaining()) {
+            int n = fc.read(bb, position);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of log, file=" + logFile + ", position=" + position);
+            }
+            position += n;
+        }
+    }
+
+    private static int computeCrc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
@@ -1,18 +1,24 @@
 package com.lightcomp.ft.common;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Executes tasks with bounded concurrency. Tasks are submitted directly by caller thread, thread which
+ * finished its task continues with next queued task. Submission does not lock executor, stop acquires
+ * all task permits to wait for running tasks.
+ */
 public class TaskExecutor {
-	
-	public final static String DEFAULT_THREAD_NAME = "FileTransferTask";
+
+    public final static String DEFAULT_THREAD_NAME = "FileTransferTask";
 
     private static final Logger logger = LoggerFactory.getLogger(TaskExecutor.class);
 
@@ -20,31 +26,66 @@ public class TaskExecutor {
         RUNNING, STOPPING, TERMINATED
     }
 
-    private final LinkedList<Runnable> taskQueue = new LinkedList<>();
+    private final Queue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger activeCount = new AtomicInteger();
 
-    private final List<Runnable> processingTasks;
+    private final Semaphore permits;
 
-    private ExecutorService executorService;
+    private final int taskLimit;
 
     private final int threadPoolSize;
 
     private final String threadNamePostfix;
 
-    private State state = State.TERMINATED;
+    private final boolean virtualThreads;
+
+    private volatile ExecutorService executorService;
+
+    private volatile State state = State.TERMINATED;
 
     public TaskExecutor(int threadPoolSize, String threadNamePostfix) {
+        this(threadPoolSize, threadNamePostfix, false, threadPoolSize);
+    }
+
+    /**
+     * @param threadPoolSize
+     *            number of platform threads, maximum number of concurrently executed tasks when
+     *            virtual threads are not used
+     * @param virtualThreads
+     *            when true tasks are executed by virtual threads if supported by runtime
+     * @param virtualTaskLimit
+     *            maximum number of concurrently executed tasks when virtual threads are used
+     */
+    public TaskExecutor(int threadPoolSize, String threadNamePostfix, boolean virtualThreads, int virtualTaskLimit) {
         Validate.isTrue(threadPoolSize > 0);
+        Validate.isTrue(virtualTaskLimit > 0);
 
-        this.processingTasks = new ArrayList<>(threadPoolSize);
-        
+        this.taskLimit = virtualThreads && VirtualThreads.isAvailable() ? virtualTaskLimit : threadPoolSize;
+        this.permits = new Semaphore(taskLimit);
         this.threadPoolSize = threadPoolSize;
         this.threadNamePostfix = threadNamePostfix;
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    /**
+     * @return Number of tasks waiting for execution.
+     */
+    public int getQueueSize() {
+        return taskQueue.size();
+    }
+
+    /**
+     * @return Number of currently executed tasks.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
     }
 
-	public synchronized boolean isRunning() {
-		return state == State.RUNNING;
-	}
-    
     /**
      * Start async queue processing.
      */
@@ -52,113 +93,85 @@ public class TaskExecutor {
         Validate.isTrue(state == State.TERMINATED);
         Validate.isTrue(executorService == null);
 
-        executorService = Executors.newFixedThreadPool(threadPoolSize, (r) -> {
-        	return new Thread(null, r, DEFAULT_THREAD_NAME);
-        });
-
+        executorService = VirtualThreads.newExecutor(threadPoolSize, (r) -> {
+            return new Thread(null, r, DEFAULT_THREAD_NAME + "-" + threadNamePostfix);
+        }, virtualThreads);
         state = State.RUNNING;
-        Thread managerThread = new Thread(this::runManager,
-                "TaskExecutorManager-" + threadNamePostfix + "-" + System.identityHashCode(this));
-        managerThread.start();
     }
 
     /**
      * Caller stop async queue processing. This operation will block caller thread until task executor
-     * does not terminate.
+     * does not terminate. Tasks waiting in queue are not executed.
      */
     public synchronized void stop() {
-        if (state == State.TERMINATED) {
+        if (state != State.RUNNING) {
             return;
         }
         state = State.STOPPING;
-        // notify manager thread about stopping
-        notifyAll();
-        // wait for termination
-        while (state != State.TERMINATED) {
-            try {
-                wait(100);
-            } catch (InterruptedException e) {
-                // ignore
-            	Thread.currentThread().interrupt();
-            }
+        // wait for currently processing tasks, acquired permits prevent new submits
+        permits.acquireUninterruptibly(taskLimit);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Task executor stopped, discardedTasks={}", taskQueue.size());
         }
+        taskQueue.clear();
+        executorService.shutdown();
+        executorService = null;
+        permits.release(taskLimit);
+        state = State.TERMINATED;
     }
 
     /**
      * Adds task to queue for processing.
      */
-    public synchronized void addTask(Runnable task) {
+    public void addTask(Runnable task) {
         Validate.isTrue(state == State.RUNNING);
         Validate.notNull(task);
 
-        taskQueue.addLast(task);
-        // notify manager thread about new task
-        if (processingTasks.size() < threadPoolSize) {
-            notifyAll();
-        }
+        taskQueue.offer(task);
+        scheduleTasks();
     }
 
-    private synchronized void runManager() {
-        while (state == State.RUNNING) {
-            // wait if maximum of processing task reached or taskQueue is empty
-            if (processingTasks.size() >= threadPoolSize || taskQueue.isEmpty()) {
-                try {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("Task executor manager waiting ...");
-                    }
-                    wait();
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("Task executor manager woke up, processingTasks={}, queuedTasks={}, state={}",
-                                processingTasks.size(), taskQueue.size(), state);
-                    }
-                } catch (InterruptedException e) {
-                    // ignore
-                	Thread.currentThread().interrupt();
-                }
+    /**
+     * Submits queued tasks while free thread is available. Executor service cannot be shut down while
+     * permit is held.
+     */
+    private void scheduleTasks() {
+        // queue is checked after each permit acquire, task added concurrently is not lost
+        while (!taskQueue.isEmpty() && state == State.RUNNING && permits.tryAcquire()) {
+            Runnable task = taskQueue.poll();
+            if (task == null) {
+                permits.release();
                 continue;
             }
-            // execute next task from queue
-            Runnable task = taskQueue.removeFirst();
-            processingTasks.add(task);
-            executorService.submit(() -> {
-                try {
-                    task.run();
-                } finally {
-                    taskFinished(task);
-                }
-            });
+            try {
+                executorService.execute(() -> runTasks(task));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                logger.error("Task execution rejected", e);
+                return;
+            }
         }
-        stopManager();
     }
 
-    private void stopManager() {
-        // wait for currently processing tasks
-        while (processingTasks.size() > 0) {
+    /**
+     * Runs task and continues with next queued tasks, permit is held until queue is empty.
+     */
+    private void runTasks(Runnable firstTask) {
+        Runnable task = firstTask;
+        while (task != null) {
+            activeCount.incrementAndGet();
             try {
-            	synchronized(this) {
-            		wait();
-            	}
-            } catch (InterruptedException e) {
-                // ignore
-            	Thread.currentThread().interrupt();
+                task.run();
+            } catch (Throwable t) {
+                logger.error("Task execution failed", t);
+            } finally {
+                activeCount.decrementAndGet();
             }
+            task = state == State.RUNNING ? taskQueue.poll() : null;
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug("Task executor stopped");
-        }
-        
-        executorService.shutdown();
-        executorService = null;
-        state = State.TERMINATED;
-        // notify stopping thread about termination
-        synchronized(this) {
-        	notifyAll();
-        }
-    }
-
-    private synchronized void taskFinished(Runnable task) {
-        processingTasks.remove(task);
-        // notify manager thread about ended task
-        notifyAll();
+        // released permit can be acquired by stopping thread
+        permits.release();
+        // task could be added before permit was released
+        scheduleTasks();
     }
 }
@@ -0,0 +1,120 @@
+package com.lightcomp.ft.common;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Tree checksum, data are split to leaves of fixed size which are hashed in parallel by common
+ * fork-join pool. Root hash is computed from leaf hashes in data order. Leaf and root inputs are
+ * prefixed by different byte to separate hash domains.
+ * <p>
+ * Number of pending leaves is limited by pool parallelism, memory usage of one generator is
+ * parallelism * {@link #LEAF_SIZE}. Leaf buffers are reused from default buffer pool, limiter of
+ * checksum computations is acquired as managed blocker of the pool.
+ */
+class TreeChecksumGenerator extends ChecksumGenerator {
+
+    public static final int LEAF_SIZE = 1024 * 1024;
+
+    private static final byte LEAF_PREFIX = 0;
+
+    private static final byte ROOT_PREFIX = 1;
+
+    private final ArrayDeque<ForkJoinTask<byte[]>> pendingLeaves = new ArrayDeque<>();
+
+    private final int maxPendingLeaves;
+
+    private final MessageDigest rootMd;
+
+    private ByteBuffer leaf;
+
+    private int leafSize;
+
+    TreeChecksumGenerator(Algorithm algorithm, Semaphore limiter) {
+        super(algorithm, limiter);
+        this.maxPendingLeaves = ForkJoinPool.getCommonPoolParallelism();
+        this.rootMd = createDigest(algorithm);
+        this.rootMd.update(ROOT_PREFIX);
+    }
+
+    @Override
+    protected void updateHash(byte[] b, int off, int len) {
+        while (len > 0) {
+            int n = Math.min(len, prepareLeaf());
+            System.arraycopy(b, off, leaf.array(), leafSize, n);
+            leafSize += n;
+            off += n;
+            len -= n;
+            submitFullLeaf();
+        }
+    }
+
+    @Override
+    protected void updateHash(ByteBuffer bb) {
+        while (bb.hasRemaining()) {
+            int n = Math.min(bb.remaining(), prepareLeaf());
+            bb.get(leaf.array(), leafSize, n);
+            leafSize += n;
+            submitFullLeaf();
+        }
+    }
+
+    @Override
+    protected byte[] generateHash() {
+        if (leafSize > 0) {
+            submitLeaf();
+        }
+        while (!pendingLeaves.isEmpty()) {
+            rootMd.update(pendingLeaves.poll().join());
+        }
+        return rootMd.digest();
+    }
+
+    /**
+     * @return Returns free space in current leaf.
+     */
+    private int prepareLeaf() {
+        if (leaf == null) {
+            leaf = BufferPool.getDefault().acquire(LEAF_SIZE);
+        }
+        return LEAF_SIZE - leafSize;
+    }
+
+    private void submitFullLeaf() {
+        if (leafSize == LEAF_SIZE) {
+            submitLeaf();
+        }
+    }
+
+    private void submitLeaf() {
+        // wait for oldest leaf when limit reached
+        if (pendingLeaves.size() >= maxPendingLeaves) {
+            rootMd.update(pendingLeaves.poll().join());
+        }
+        ByteBuffer data = leaf;
+        int size = leafSize;
+        pendingLeaves.add(ForkJoinPool.commonPool().submit(() -> hashLeaf(data, size)));
+        leaf = null;
+        leafSize = 0;
+    }
+
+    private byte[] hashLeaf(ByteBuffer data, int size) {
+        MessageDigest md = createDigest(getAlgorithm());
+        try {
+            acquireManaged();
+            try {
+                md.update(LEAF_PREFIX);
+                md.update(data.array(), 0, size);
+                return md.digest();
+            } finally {
+                release();
+            }
+        } finally {
+            BufferPool.getDefault().release(data);
+        }
+    }
+}
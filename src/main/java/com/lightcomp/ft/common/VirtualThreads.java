@@ -0,0 +1,64 @@
+package com.lightcomp.ft.common;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates executors with virtual threads when supported by runtime (Java 21+). Library is compiled for
+ * Java 17, virtual threads are resolved by reflection and platform threads are used as fallback.
+ */
+public final class VirtualThreads {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return True when runtime supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        return VIRTUAL_EXECUTOR_FACTORY != null;
+    }
+
+    /**
+     * Creates executor service. Virtual executor starts new thread for each task, concurrency must be
+     * limited by caller.
+     * 
+     * @param poolSize
+     *            number of platform threads
+     * @param threadFactory
+     *            factory of platform threads
+     * @param virtual
+     *            when true virtual threads are used if available
+     */
+    public static ExecutorService newExecutor(int poolSize, ThreadFactory threadFactory, boolean virtual) {
+        if (virtual) {
+            if (isAvailable()) {
+                try {
+                    return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    logger.warn("Failed to create virtual thread executor, platform threads are used", e);
+                }
+            } else {
+                logger.warn("Virtual threads are not supported by runtime, platform threads are used");
+            }
+        }
+        return Executors.newFixedThreadPool(poolSize, threadFactory);
+    }
+
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
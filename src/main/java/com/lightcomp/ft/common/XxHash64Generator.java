@@ -0,0 +1,162 @@
+package com.lightcomp.ft.common;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streaming XXH64 with zero seed, result is in canonical (big-endian) form.
+ */
+class XxHash64Generator extends ChecksumGenerator {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_SIZE = 32;
+
+    private final byte[] stripe = new byte[STRIPE_SIZE];
+
+    // copy buffer for direct buffers
+    private byte[] copyBuffer;
+
+    private int stripeSize;
+
+    private long totalLen;
+
+    private long v1 = PRIME1 + PRIME2;
+
+    private long v2 = PRIME2;
+
+    private long v3 = 0;
+
+    private long v4 = -PRIME1;
+
+    XxHash64Generator(Algorithm algorithm, Semaphore limiter) {
+        super(algorithm, limiter);
+    }
+
+    @Override
+    protected void updateHash(byte[] b, int off, int len) {
+        acquire();
+        try {
+            process(b, off, len);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    protected void updateHash(ByteBuffer bb) {
+        if (bb.hasArray()) {
+            updateHash(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+            bb.position(bb.limit());
+            return;
+        }
+        if (copyBuffer == null) {
+            copyBuffer = new byte[8192];
+        }
+        while (bb.hasRemaining()) {
+            int n = Math.min(bb.remaining(), copyBuffer.length);
+            bb.get(copyBuffer, 0, n);
+            updateHash(copyBuffer, 0, n);
+        }
+    }
+
+    @Override
+    protected byte[] generateHash() {
+        long h;
+        if (totalLen >= STRIPE_SIZE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = PRIME5;
+        }
+        h += totalLen;
+
+        int pos = 0;
+        while (pos + 8 <= stripeSize) {
+            h ^= round(0, readLong(stripe, pos));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            pos += 8;
+        }
+        if (pos + 4 <= stripeSize) {
+            h ^= (readInt(stripe, pos) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            pos += 4;
+        }
+        while (pos < stripeSize) {
+            h ^= (stripe[pos] & 0xFF) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+            pos++;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+
+        return ByteBuffer.allocate(8).putLong(h).array();
+    }
+
+    private void process(byte[] b, int off, int len) {
+        totalLen += len;
+        // complete buffered stripe
+        if (stripeSize > 0) {
+            int n = Math.min(len, STRIPE_SIZE - stripeSize);
+            System.arraycopy(b, off, stripe, stripeSize, n);
+            stripeSize += n;
+            off += n;
+            len -= n;
+            if (stripeSize < STRIPE_SIZE) {
+                return;
+            }
+            processStripe(stripe, 0);
+            stripeSize = 0;
+        }
+        while (len >= STRIPE_SIZE) {
+            processStripe(b, off);
+            off += STRIPE_SIZE;
+            len -= STRIPE_SIZE;
+        }
+        if (len > 0) {
+            System.arraycopy(b, off, stripe, 0, len);
+            stripeSize = len;
+        }
+    }
+
+    private void processStripe(byte[] b, int off) {
+        v1 = round(v1, readLong(b, off));
+        v2 = round(v2, readLong(b, off + 8));
+        v3 = round(v3, readLong(b, off + 16));
+        v4 = round(v4, readLong(b, off + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long readLong(byte[] b, int off) {
+        return (readInt(b, off) & 0xFFFFFFFFL) | ((long) readInt(b, off + 4) << 32);
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,114 @@
+package com.lightcomp.ft.core.blocks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.lightcomp.ft.core.recv.RecvContext;
+import com.lightcomp.ft.exception.TransferExBuilder;
+import com.lightcomp.ft.exception.TransferException;
+
+/**
+ * Decodes blocks written by {@link BinaryBlockWriter} and passes them directly to receive context.
+ * <p>
+ * Implementation is not thread safe.
+ */
+public class BinaryBlockReader {
+
+    private final ByteBuffer data;
+
+    /**
+     * @param data
+     *            encoded blocks between position and limit
+     */
+    public BinaryBlockReader(ByteBuffer data) {
+        this.data = data;
+    }
+
+    public boolean hasNext() {
+        return data.hasRemaining();
+    }
+
+    /**
+     * Decodes next block and passes it to receive context.
+     */
+    public void receiveNext(RecvContext ctx) throws TransferException {
+        int type = data.get();
+        switch (type) {
+        case BinaryBlockWriter.DIR_BEGIN:
+            ctx.openDir(readString());
+            break;
+        case BinaryBlockWriter.DIR_END:
+            ctx.closeDir();
+            break;
+        case BinaryBlockWriter.FILE_BEGIN:
+            String name = readString();
+            ctx.openFile(name, readNonNegative());
+            break;
+        case BinaryBlockWriter.FILE_DATA:
+            long offset = readNonNegative();
+            ctx.writeFileData(offset, readNonNegative());
+            break;
+        case BinaryBlockWriter.FILE_END:
+            ctx.closeFile(readZigZag());
+            break;
+        case BinaryBlockWriter.FILE_PACK:
+            receiveFilePack(ctx);
+            break;
+        default:
+            throw new TransferExBuilder("Unknown binary frame block").addParam("type", type)
+                    .addParam("position", data.position() - 1).build();
+        }
+    }
+
+    private void receiveFilePack(RecvContext ctx) throws TransferException {
+        long count = readNonNegative();
+        ctx.openFilePack();
+        for (long i = 0; i < count; i++) {
+            String name = readString();
+            long size = readNonNegative();
+            ctx.writePackedFile(name, size, readZigZag());
+        }
+        ctx.closeFilePack();
+    }
+
+    private String readString() throws TransferException {
+        long length = readNonNegative();
+        if (length > data.remaining()) {
+            throw new TransferExBuilder("Binary block name exceeds encoded blocks").addParam("length", length)
+                    .addParam("remaining", data.remaining()).build();
+        }
+        byte[] bytes = new byte[(int) length];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readZigZag() throws TransferException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads size, offset or count, negative value can be decoded only from malformed blocks.
+     */
+    private long readNonNegative() throws TransferException {
+        int position = data.position();
+        long value = readVarLong();
+        if (value < 0) {
+            throw new TransferExBuilder("Negative binary block number").addParam("value", value)
+                    .addParam("position", position).build();
+        }
+        return value;
+    }
+
+    private long readVarLong() throws TransferException {
+        long value = 0;
+        for (int shift = 0; shift < 64 && data.hasRemaining(); shift += 7) {
+            byte b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new TransferExBuilder("Malformed binary block number").addParam("position", data.position()).build();
+    }
+}
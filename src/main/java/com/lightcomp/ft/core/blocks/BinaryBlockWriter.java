@@ -0,0 +1,119 @@
+package com.lightcomp.ft.core.blocks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.lightcomp.ft.xsd.v1.DirBegin;
+import com.lightcomp.ft.xsd.v1.DirEnd;
+import com.lightcomp.ft.xsd.v1.FileBegin;
+import com.lightcomp.ft.xsd.v1.FileData;
+import com.lightcomp.ft.xsd.v1.FileEnd;
+import com.lightcomp.ft.xsd.v1.FilePack;
+import com.lightcomp.ft.xsd.v1.FrameBlock;
+import com.lightcomp.ft.xsd.v1.PackedFile;
+
+/**
+ * Encodes frame blocks in compact binary form. Each block starts with type byte followed by its
+ * attributes, numbers are encoded as unsigned varints and names as varint length and UTF-8 bytes.
+ * Last modification times can be negative and they are zigzag encoded.
+ * <p>
+ * Implementation is not thread safe.
+ */
+public class BinaryBlockWriter {
+
+    static final int DIR_BEGIN = 1;
+
+    static final int DIR_END = 2;
+
+    static final int FILE_BEGIN = 3;
+
+    static final int FILE_DATA = 4;
+
+    static final int FILE_END = 5;
+
+    static final int FILE_PACK = 6;
+
+    private byte[] buffer;
+
+    private int size;
+
+    public BinaryBlockWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public void write(FrameBlock block) {
+        if (block instanceof DirBegin) {
+            writeByte(DIR_BEGIN);
+            writeString(((DirBegin) block).getN());
+        } else if (block instanceof DirEnd) {
+            writeByte(DIR_END);
+        } else if (block instanceof FileBegin) {
+            FileBegin fb = (FileBegin) block;
+            writeByte(FILE_BEGIN);
+            writeString(fb.getN());
+            writeVarLong(fb.getFs());
+        } else if (block instanceof FileData) {
+            FileData fd = (FileData) block;
+            writeByte(FILE_DATA);
+            writeVarLong(fd.getOff());
+            writeVarLong(fd.getDs());
+        } else if (block instanceof FileEnd) {
+            writeByte(FILE_END);
+            writeZigZag(((FileEnd) block).getLm());
+        } else if (block instanceof FilePack) {
+            FilePack fp = (FilePack) block;
+            writeByte(FILE_PACK);
+            writeVarLong(fp.getFiles().size());
+            for (PackedFile pf : fp.getFiles()) {
+                writeString(pf.getN());
+                writeVarLong(pf.getFs());
+                writeZigZag(pf.getLm());
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown frame block: " + block);
+        }
+    }
+
+    /**
+     * @return Number of written bytes.
+     */
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeZigZag(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+        if (size + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.lightcomp.ft.core.blocks;
+
+import com.lightcomp.ft.core.recv.RecvContext;
+import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.xsd.v1.FilePack;
+import com.lightcomp.ft.xsd.v1.PackedFile;
+
+public class FilePackBlockImpl extends FilePack implements BlockProcessor {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void receive(RecvContext ctx) throws TransferException {
+        ctx.openFilePack();
+        for (PackedFile pf : getFiles()) {
+            ctx.writePackedFile(pf.getN(), pf.getFs(), pf.getLm());
+        }
+        ctx.closeFilePack();
+    }
+}
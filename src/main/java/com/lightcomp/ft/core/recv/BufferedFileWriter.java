@@ -0,0 +1,164 @@
+package com.lightcomp.ft.core.recv;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+
+import com.lightcomp.ft.common.Checksum.Algorithm;
+import com.lightcomp.ft.common.ChecksumGenerator;
+import com.lightcomp.ft.core.recv.ConcurrentFileWriter.FileTask;
+import com.lightcomp.ft.exception.TransferExBuilder;
+import com.lightcomp.ft.exception.TransferException;
+
+/**
+ * Receives data of small file in memory. Complete file is written by concurrent file task, file which
+ * is not completed in its frame is passed to {@link FileWriter}.
+ */
+class BufferedFileWriter {
+
+    /**
+     * Maximum size of file buffered in memory.
+     */
+    static final int MAX_SIZE = 256 * 1024;
+
+    private final Path file;
+
+    private final ByteBuffer data;
+
+    private final boolean overwrite;
+
+    private final boolean sync;
+
+    /**
+     * @param overwrite
+     *            when true existing file is overwritten
+     * @param sync
+     *            when true written file is forced to storage device
+     */
+    public BufferedFileWriter(Path file, int size, boolean overwrite, boolean sync) {
+        this.file = file;
+        this.data = ByteBuffer.allocate(size);
+        this.overwrite = overwrite;
+        this.sync = sync;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void write(ReadableByteChannel rbch, long offset, long length) throws TransferException {
+        if (offset != data.position()) {
+            throw new TransferExBuilder("File must be written in sequence").addParam("path", file)
+                    .addParam("writtenSize", data.position()).addParam("fileOffset", offset).build();
+        }
+        if (length > data.remaining()) {
+            throw new TransferExBuilder("File data overlaps defined size").addParam("path", file)
+                    .addParam("fileSize", data.capacity()).addParam("newSize", offset + length).build();
+        }
+        ByteBuffer bb = data.slice();
+        bb.limit((int) length);
+        try {
+            while (bb.hasRemaining()) {
+                if (rbch.read(bb) < 0) {
+                    throw new EOFException("Frame stream ended prematurely");
+                }
+            }
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to read file data").addParam("path", file).setCause(e).build();
+        }
+        data.position(data.position() + (int) length);
+    }
+
+    /**
+     * @return Received data of file.
+     */
+    public ByteBuffer getData() {
+        return data.duplicate().flip();
+    }
+
+    /**
+     * @return Task which validates checksum, writes the file and updates its last modification.
+     */
+    public FileTask finish(long lastModified, byte[] checksum, Algorithm checksumAlg, Semaphore checksumLimiter)
+            throws TransferException {
+        if (data.hasRemaining()) {
+            throw new TransferExBuilder("Incomplete file cannot be finished").addParam("path", file)
+                    .addParam("fileSize", data.capacity()).addParam("writtenSize", data.position()).build();
+        }
+        return () -> {
+            ChecksumGenerator chksmGenerator = ChecksumGenerator.create(checksumAlg, checksumLimiter);
+            chksmGenerator.update(data.capacity(), getData());
+            if (!Arrays.equals(chksmGenerator.generate(), checksum)) {
+                throw new TransferExBuilder("File checksums does not match").addParam("path", file).build();
+            }
+            writeData();
+            try {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+            } catch (IOException e) {
+                throw new TransferExBuilder("Failed to finish file").addParam("path", file).setCause(e).build();
+            }
+        };
+    }
+
+    /**
+     * Creates file with received data.
+     */
+    public void writeData() throws TransferException {
+        try (FileChannel channel = open()) {
+            ByteBuffer bb = getData();
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to write file").addParam("path", file).setCause(e).build();
+        }
+    }
+
+    /**
+     * Creates file and its writer, buffered data are written by the writer.
+     */
+    public FileWriter toFileWriter(Algorithm checksumAlg, Semaphore checksumLimiter, ByteBuffer copyBuffer,
+            boolean preallocate) throws TransferException {
+        FileChannel channel;
+        try {
+            channel = open();
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to create file").addParam("path", file).setCause(e).build();
+        }
+        FileWriter fw = new FileWriter(file, channel, data.capacity(), checksumAlg, checksumLimiter, copyBuffer);
+        try {
+            if (preallocate) {
+                fw.preallocate();
+            }
+            InputStream is = new ByteArrayInputStream(data.array(), 0, data.position());
+            fw.write(Channels.newChannel(is), 0, data.position());
+        } catch (TransferException e) {
+            fw.close();
+            throw e;
+        }
+        return fw;
+    }
+
+    private FileChannel open() throws IOException {
+        OpenOption[] options = overwrite
+                ? new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE }
+                : new OpenOption[] { StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE };
+        return FileChannel.open(file, options);
+    }
+}
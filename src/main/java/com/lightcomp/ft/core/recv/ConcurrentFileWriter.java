@@ -0,0 +1,111 @@
+package com.lightcomp.ft.core.recv;
+
+import com.lightcomp.ft.common.TaskExecutor;
+import com.lightcomp.ft.exception.TransferExBuilder;
+import com.lightcomp.ft.exception.TransferException;
+
+/**
+ * Writes complete files by bounded executor. Receiving thread submits file tasks in sequence and waits
+ * for them before its position is saved, number of pending tasks is limited to bound memory of
+ * received data. First failure is reported to receiving thread.
+ */
+class ConcurrentFileWriter {
+
+    @FunctionalInterface
+    interface FileTask {
+
+        void write() throws TransferException;
+    }
+
+    private final TaskExecutor executor;
+
+    private final int maxPending;
+
+    private int pending;
+
+    private TransferException failure;
+
+    /**
+     * @param executor
+     *            executor of file tasks, it must not execute tasks waiting for this writer
+     * @param maxPending
+     *            maximum number of submitted tasks which are not finished
+     */
+    public ConcurrentFileWriter(TaskExecutor executor, int maxPending) {
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Submits file task, caller is blocked while maximum of pending tasks is reached.
+     */
+    public void submit(FileTask task) throws TransferException {
+        synchronized (this) {
+            while (pending >= maxPending && failure == null) {
+                waitForTasks();
+            }
+            checkFailure();
+            pending++;
+        }
+        try {
+            executor.addTask(() -> run(task));
+        } catch (Throwable t) {
+            taskFinished(new TransferExBuilder("Failed to submit file task").setCause(t).build());
+            throw t;
+        }
+    }
+
+    /**
+     * Waits until all submitted tasks are finished.
+     * 
+     * @throws TransferException
+     *             when any task failed
+     */
+    public synchronized void await() throws TransferException {
+        while (pending > 0) {
+            waitForTasks();
+        }
+        checkFailure();
+    }
+
+    private void run(FileTask task) {
+        TransferException ex = null;
+        try {
+            task.write();
+        } catch (TransferException e) {
+            ex = e;
+        } catch (Throwable t) {
+            ex = new TransferExBuilder("Failed to write file").setCause(t).build();
+        }
+        taskFinished(ex);
+    }
+
+    private synchronized void taskFinished(TransferException ex) {
+        pending--;
+        if (failure == null) {
+            failure = ex;
+        }
+        notifyAll();
+    }
+
+    private void checkFailure() throws TransferException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Called in synchronized block, queued tasks are discarded when executor stops.
+     */
+    private void waitForTasks() throws TransferException {
+        if (!executor.isRunning()) {
+            throw new TransferException("File write executor is not running");
+        }
+        try {
+            wait(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferExBuilder("Interrupted while waiting for file tasks").setCause(e).build();
+        }
+    }
+}
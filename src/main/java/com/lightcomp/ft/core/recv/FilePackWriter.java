@@ -0,0 +1,169 @@
+package com.lightcomp.ft.core.recv;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import com.lightcomp.ft.common.Checksum.Algorithm;
+import com.lightcomp.ft.common.ChecksumByteChannel;
+import com.lightcomp.ft.common.ChecksumGenerator;
+import com.lightcomp.ft.exception.TransferExBuilder;
+import com.lightcomp.ft.exception.TransferException;
+
+/**
+ * Writes complete small files of one pack. Each file is created and written by single open channel,
+ * checksum is computed from data of all packed files. Last modification of files is deferred until
+ * the checksum is validated, large packs are updated in parallel.
+ */
+class FilePackWriter {
+
+    /**
+     * Minimal number of files which are updated in parallel.
+     */
+    private static final int PARALLEL_UPDATE_MIN = 32;
+
+    private static final OpenOption[] CREATE_OPTIONS = { StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE };
+
+    private static final OpenOption[] OVERWRITE_OPTIONS = { StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE };
+
+    private final List<PackedFileTime> fileTimes = new ArrayList<>();
+
+    private final ChecksumGenerator chksmGenerator;
+
+    private final ByteBuffer copyBuffer;
+
+    private final ConcurrentFileWriter concurrentWriter;
+
+    private final boolean sync;
+
+    private long dataPos;
+
+    /**
+     * @param checksumAlg
+     *            checksum algorithm of pack
+     * @param checksumLimiter
+     *            limiter of concurrent checksum computations, can be null
+     * @param copyBuffer
+     *            buffer for data copy, direct buffer is preferred
+     * @param concurrentWriter
+     *            writer of small files, null when files are written by caller
+     * @param sync
+     *            when true written files are forced to storage device
+     */
+    public FilePackWriter(Algorithm checksumAlg, Semaphore checksumLimiter, ByteBuffer copyBuffer,
+            ConcurrentFileWriter concurrentWriter, boolean sync) {
+        this.chksmGenerator = ChecksumGenerator.create(checksumAlg, checksumLimiter);
+        this.copyBuffer = copyBuffer;
+        this.concurrentWriter = concurrentWriter;
+        this.sync = sync;
+    }
+
+    /**
+     * @param overwrite
+     *            when true existing file is overwritten
+     */
+    public void write(Path file, boolean overwrite, ReadableByteChannel rbch, long size, long lastModified)
+            throws TransferException {
+        if (size < 0) {
+            throw new TransferExBuilder("Invalid packed file size").addParam("path", file).addParam("size", size)
+                    .build();
+        }
+        if (concurrentWriter != null && size <= BufferedFileWriter.MAX_SIZE) {
+            // checksum is updated in data order, file is written concurrently
+            BufferedFileWriter bfw = new BufferedFileWriter(file, (int) size, overwrite, sync);
+            bfw.write(rbch, 0, size);
+            chksmGenerator.update(dataPos + size, bfw.getData());
+            concurrentWriter.submit(bfw::writeData);
+        } else {
+            OpenOption[] options = overwrite ? OVERWRITE_OPTIONS : CREATE_OPTIONS;
+            try (FileChannel channel = FileChannel.open(file, options)) {
+                WritableByteChannel wbch = new ChecksumByteChannel(channel, chksmGenerator, dataPos);
+                copyData(rbch, wbch, size);
+                if (sync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                throw new TransferExBuilder("Failed to write packed file").addParam("path", file).setCause(e)
+                        .build();
+            }
+        }
+        dataPos += size;
+        fileTimes.add(new PackedFileTime(file, lastModified));
+    }
+
+    public void finish(byte[] checksum) throws TransferException {
+        if (!Arrays.equals(chksmGenerator.generate(), checksum)) {
+            Path firstFile = fileTimes.isEmpty() ? null : fileTimes.get(0).file;
+            throw new TransferExBuilder("File pack checksums does not match").addParam("firstPath", firstFile)
+                    .addParam("fileCount", fileTimes.size()).build();
+        }
+        if (concurrentWriter != null) {
+            concurrentWriter.await();
+        }
+        Stream<PackedFileTime> stream = fileTimes.size() < PARALLEL_UPDATE_MIN ? fileTimes.stream()
+                : fileTimes.parallelStream();
+        Optional<PackedFileTime> failed = stream.filter(ft -> !ft.update()).findAny();
+        if (failed.isPresent()) {
+            PackedFileTime ft = failed.get();
+            throw new TransferExBuilder("Failed to finish packed file").addParam("path", ft.file)
+                    .setCause(ft.failure).build();
+        }
+    }
+
+    private void copyData(ReadableByteChannel rbch, WritableByteChannel wbch, long length) throws IOException {
+        ByteBuffer bb = copyBuffer;
+        while (length > 0) {
+            bb.clear();
+            if (length < bb.capacity()) {
+                bb.limit((int) length);
+            }
+            if (rbch.read(bb) < 0) {
+                throw new EOFException("Frame stream ended prematurely");
+            }
+            bb.flip();
+            while (bb.hasRemaining()) {
+                wbch.write(bb);
+            }
+            length -= bb.limit();
+        }
+    }
+
+    private static class PackedFileTime {
+
+        final Path file;
+
+        final long lastModified;
+
+        IOException failure;
+
+        PackedFileTime(Path file, long lastModified) {
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+
+        boolean update() {
+            try {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+                return true;
+            } catch (IOException e) {
+                failure = e;
+                return false;
+            }
+        }
+    }
+}
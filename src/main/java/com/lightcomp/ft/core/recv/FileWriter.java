@@ -1,15 +1,16 @@
 package com.lightcomp.ft.core.recv;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.SeekableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -28,24 +29,103 @@ class FileWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(FileWriter.class);
 
-    private static final int BUFFER_SIZE = 65536;
-
     private final Path file;
 
+    private final FileChannel channel;
+
     private final long size;
 
     private final ChecksumGenerator chksmGenerator;
 
-    public FileWriter(Path file, long size, Algorithm checksumAlg) {
+    private final ByteBuffer copyBuffer;
+
+    /**
+     * @param file
+     *            written file
+     * @param channel
+     *            open channel of written file, writer is responsible for closing it
+     * @param size
+     *            declared file size
+     * @param checksumAlg
+     *            file checksum algorithm
+     * @param checksumLimiter
+     *            limiter of concurrent checksum computations, can be null
+     * @param copyBuffer
+     *            buffer for data copy, direct buffer is preferred
+     */
+    public FileWriter(Path file, FileChannel channel, long size, Algorithm checksumAlg, Semaphore checksumLimiter,
+            ByteBuffer copyBuffer) {
         this.file = file;
+        this.channel = channel;
         this.size = size;
-        this.chksmGenerator = ChecksumGenerator.create(checksumAlg);
+        this.chksmGenerator = ChecksumGenerator.create(checksumAlg, checksumLimiter);
+        this.copyBuffer = copyBuffer;
     }
 
     public Path getFile() {
         return file;
     }
 
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Number of bytes written to file.
+     */
+    public long getWrittenSize() {
+        return chksmGenerator.getNumProcessed();
+    }
+
+    /**
+     * Resumes writing of file written by interrupted transfer. Data after offset are truncated and
+     * checksum is computed again from data already written, file channel must be readable.
+     */
+    public void resume(long offset) throws TransferException {
+        Validate.isTrue(chksmGenerator.getNumProcessed() == 0);
+        try {
+            if (channel.size() < offset) {
+                throw new TransferExBuilder("Resumed file is shorter than written size").addParam("path", file)
+                        .addParam("fileSize", channel.size()).addParam("writtenSize", offset).build();
+            }
+            channel.truncate(offset);
+            ByteBuffer bb = copyBuffer;
+            long pos = 0;
+            while (pos < offset) {
+                bb.clear();
+                if (offset - pos < bb.capacity()) {
+                    bb.limit((int) (offset - pos));
+                }
+                int n = channel.read(bb, pos);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                pos += n;
+                bb.flip();
+                chksmGenerator.update(pos, bb);
+            }
+            channel.position(offset);
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to resume file").addParam("path", file).addParam("writtenSize", offset)
+                    .setCause(e).build();
+        }
+    }
+
+    /**
+     * Extends file to its declared size, data are written from beginning.
+     */
+    public void preallocate() throws TransferException {
+        if (size == 0) {
+            return;
+        }
+        try {
+            channel.write(ByteBuffer.allocate(1), size - 1);
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to preallocate file").addParam("path", file)
+                    .addParam("fileSize", size).setCause(e).build();
+        }
+    }
+
     public void write(ReadableByteChannel rbch, long offset, long length) throws TransferException {
         long writtenSize = chksmGenerator.getNumProcessed();
         if (offset != writtenSize) {
@@ -60,15 +140,24 @@ class FileWriter {
         if (length == 0) {
             return;
         }
-        // open file for write at the end
-        try (SeekableByteChannel sbch = Files.newByteChannel(file, StandardOpenOption.APPEND)) {
-            Validate.isTrue(sbch.position() == offset);
-            // wrap channel for checksum calculating
-            try (WritableByteChannel wbch = new ChecksumByteChannel(sbch, chksmGenerator, offset)) {
-                copyData(rbch, wbch, length);
-            }
+        // write at current position, wrap channel for checksum calculating
+        try {
+            Validate.isTrue(channel.position() == offset);
+            WritableByteChannel wbch = new ChecksumByteChannel(channel, chksmGenerator, offset);
+            copyData(rbch, wbch, length);
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to write file").addParam("path", file).setCause(e).build();
+        }
+    }
+
+    /**
+     * Forces written data to storage device.
+     */
+    public void force() throws TransferException {
+        try {
+            channel.force(false);
         } catch (IOException e) {
-            throw new TransferExBuilder("Failed to open file").addParam("path", file).setCause(e).build();
+            throw new TransferExBuilder("Failed to force file data").addParam("path", file).setCause(e).build();
         }
     }
 
@@ -87,6 +176,12 @@ class FileWriter {
         if (!Arrays.equals(genChecksum, checksum)) {
             throw new TransferExBuilder("File checksums does not match").addParam("path", file).build();
         }
+        // close file before last modification is updated
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to close file").addParam("path", file).setCause(e).build();
+        }
         // update last modification
         FileTime lm = FileTime.fromMillis(lastModified);
         try {
@@ -96,12 +191,28 @@ class FileWriter {
         }
     }
 
+    /**
+     * Closes file without finishing, any error is only logged.
+     */
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            new TransferExBuilder("Failed to close file").addParam("path", file).setCause(e).log(logger);
+        }
+    }
+
+    /**
+     * Copies data through shared buffer. When the buffer is direct neither read from frame file nor
+     * write to destination file needs intermediate heap copy.
+     */
     private void copyData(ReadableByteChannel rbch, WritableByteChannel wbch, long length) throws TransferException {
-        ByteBuffer bb = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer bb = copyBuffer;
+        bb.clear();
 
         while (length > 0) {
             // set buffer limit to remaining length
-            if (length < BUFFER_SIZE) {
+            if (length < bb.capacity()) {
                 bb.limit((int) length);
             }
             try {
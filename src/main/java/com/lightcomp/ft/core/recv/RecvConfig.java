@@ -0,0 +1,29 @@
+package com.lightcomp.ft.core.recv;
+
+import java.util.concurrent.Semaphore;
+
+import com.lightcomp.ft.common.BufferPool;
+import com.lightcomp.ft.common.Checksum.Algorithm;
+
+public interface RecvConfig {
+
+    /**
+     * @return Checksum algorithm.
+     */
+    Algorithm getChecksumAlg();
+
+    /**
+     * @return Limiter of concurrent checksum computations, null when not limited.
+     */
+    Semaphore getChecksumLimiter();
+
+    /**
+     * @return When true received file is extended to its declared size before data are written.
+     */
+    boolean isPreallocateFiles();
+
+    /**
+     * @return Pool of data buffers.
+     */
+    BufferPool getBufferPool();
+}
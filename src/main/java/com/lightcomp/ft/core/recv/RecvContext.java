@@ -22,4 +22,24 @@ public interface RecvContext {
     void writeFileData(long offset, long length) throws TransferException;
 
     void closeFile(long lastModified) throws TransferException;
+
+    /**
+     * Opens pack of complete small files in current directory.
+     */
+    void openFilePack() throws TransferException;
+
+    /**
+     * Writes complete file of open pack, file data are read from input channel.
+     */
+    void writePackedFile(String name, long size, long lastModified) throws TransferException;
+
+    /**
+     * Validates checksum of all packed data and finishes packed files.
+     */
+    void closeFilePack() throws TransferException;
+
+    /**
+     * Completes files written concurrently, called after all blocks of frame were received.
+     */
+    void flushFiles() throws TransferException;
 }
@@ -2,16 +2,21 @@ package com.lightcomp.ft.core.recv;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Semaphore;
 
+import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.lightcomp.ft.common.Checksum.Algorithm;
 import com.lightcomp.ft.common.PathUtils;
+import com.lightcomp.ft.common.TaskExecutor;
 import com.lightcomp.ft.exception.TransferException;
 import com.lightcomp.ft.exception.TransferExBuilder;
 
@@ -19,23 +24,76 @@ public class RecvContextImpl implements RecvContext {
 
     private static final Logger logger = LoggerFactory.getLogger(RecvContextImpl.class);
 
+    private static final int COPY_BUFFER_SIZE = 65536;
+
     private final RecvProgressInfo progressInfo;
 
     private final Path rootDir;
 
     private final Algorithm checksumAlg;
 
+    private final Semaphore checksumLimiter;
+
+    private final boolean preallocateFiles;
+
+    private final ByteBuffer copyBuffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+
+    private final ConcurrentFileWriter concurrentWriter;
+
     private Path relativeDir;
 
     private FileWriter openWritter;
 
+    /**
+     * Small file received in memory, written concurrently when completed.
+     */
+    private BufferedFileWriter bufferedWriter;
+
+    private FilePackWriter openPack;
+
     private ReadableByteChannel inputChannel;
 
-    public RecvContextImpl(RecvProgressInfo progressInfo, Path rootDir, Algorithm checksumAlg) {
+    /**
+     * When true the items written after resumed position can be overwritten.
+     */
+    private boolean resumed;
+
+    /**
+     * When true written files are forced to storage device before they are closed.
+     */
+    private boolean syncFiles;
+
+    public RecvContextImpl(RecvProgressInfo progressInfo, Path rootDir, RecvConfig config) {
+        this(progressInfo, rootDir, config, null, 0);
+    }
+
+    /**
+     * @param fileWriteExecutor
+     *            executor which writes complete small files concurrently, null when files are written
+     *            by receiving thread
+     * @param maxPendingFiles
+     *            maximum number of small files received in memory and not written yet
+     */
+    public RecvContextImpl(RecvProgressInfo progressInfo, Path rootDir, RecvConfig config,
+            TaskExecutor fileWriteExecutor, int maxPendingFiles) {
         this.progressInfo = progressInfo;
         this.rootDir = rootDir;
-        this.checksumAlg = checksumAlg;
+        this.checksumAlg = config.getChecksumAlg();
+        this.checksumLimiter = config.getChecksumLimiter();
+        this.preallocateFiles = config.isPreallocateFiles();
         this.relativeDir = PathUtils.ROOT;
+        this.concurrentWriter = fileWriteExecutor != null
+                ? new ConcurrentFileWriter(fileWriteExecutor, maxPendingFiles)
+                : null;
+    }
+
+    /**
+     * @param syncFiles
+     *            when true written files are forced to storage device, saved position survives system
+     *            crash
+     */
+    public void setSyncFiles(boolean syncFiles) {
+        this.syncFiles = syncFiles;
     }
 
     @Override
@@ -50,6 +108,9 @@ public class RecvContextImpl implements RecvContext {
 
     @Override
     public Path getCurrentFile() {
+        if (bufferedWriter != null) {
+            return bufferedWriter.getFile();
+        }
         return openWritter == null ? null : openWritter.getFile();
     }
 
@@ -67,7 +128,10 @@ public class RecvContextImpl implements RecvContext {
         }
         try {
             Path dstDir = rootDir.resolve(dir);
-            Files.createDirectory(dstDir);
+            // directory could be created before transfer was interrupted
+            if (!resumed || !Files.isDirectory(dstDir)) {
+                Files.createDirectory(dstDir);
+            }
         } catch (Throwable e) {
             throw new TransferExBuilder("Failed to create directory").addParam("path", dir).setCause(e).build();
         }
@@ -85,9 +149,12 @@ public class RecvContextImpl implements RecvContext {
 
     @Override
     public void openFile(String name, long size) throws TransferException {
-        if (openWritter != null) {
+        if (openPack != null) {
+            throw new TransferException("Failed to open file, file pack must be closed first");
+        }
+        if (getCurrentFile() != null) {
             throw new TransferExBuilder("Failed to open file, previous file must be closed first")
-                    .addParam("previousFilePath", openWritter.getFile()).build();
+                    .addParam("previousFilePath", getCurrentFile()).build();
         }
         Path file;
         try {
@@ -97,22 +164,56 @@ public class RecvContextImpl implements RecvContext {
                     .addParam("name", name).setCause(e).build();
         }
         Path dstFile = rootDir.resolve(file);
+        // small file is written concurrently when it is completed in current frame
+        if (concurrentWriter != null && size >= 0 && size <= BufferedFileWriter.MAX_SIZE) {
+            bufferedWriter = new BufferedFileWriter(dstFile, (int) size, resumed, syncFiles);
+            return;
+        }
+        FileChannel channel;
         try {
-            Files.createFile(dstFile);
+            // file could be created before transfer was interrupted
+            if (resumed) {
+                channel = FileChannel.open(dstFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+            } else {
+                channel = FileChannel.open(dstFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            }
         } catch (IOException e) {
             throw new TransferExBuilder("Failed to create file").addParam("path", file).setCause(e).build();
         }
-        openWritter = new FileWriter(dstFile, size, checksumAlg);
+        // channel remains open until the file is closed
+        FileWriter fw = new FileWriter(dstFile, channel, size, checksumAlg, checksumLimiter, copyBuffer);
+        preallocate(fw);
+        openWritter = fw;
+    }
+
+    private void preallocate(FileWriter fw) throws TransferException {
+        if (preallocateFiles) {
+            try {
+                fw.preallocate();
+            } catch (TransferException e) {
+                fw.close();
+                throw e;
+            }
+        }
     }
 
     @Override
     public void writeFileData(long offset, long length) throws TransferException {
-        openWritter.write(inputChannel, offset, length);
+        if (bufferedWriter != null) {
+            bufferedWriter.write(inputChannel, offset, length);
+        } else {
+            openWritter.write(inputChannel, offset, length);
+        }
         progressInfo.onFileDataReceived(length);
     }
 
     @Override
     public void closeFile(long lastModified) throws TransferException {
+        if (bufferedWriter != null) {
+            closeBufferedFile(lastModified);
+            return;
+        }
         if (openWritter == null) {
             throw new TransferExBuilder("Failed to close file, no current file found")
                     .addParam("dirPath", relativeDir).build();
@@ -124,8 +225,167 @@ public class RecvContextImpl implements RecvContext {
             throw new TransferExBuilder("Failed to read file checksum").addParam("path", openWritter.getFile())
                     .setCause(e).build();
         }
-        openWritter.finish(lastModified, checksum);
-        openWritter = null;
+        try {
+            if (syncFiles) {
+                openWritter.force();
+            }
+            openWritter.finish(lastModified, checksum);
+        } finally {
+            // file is closed by finish, close it also after failure
+            openWritter.close();
+            openWritter = null;
+        }
+    }
+
+    private void closeBufferedFile(long lastModified) throws TransferException {
+        BufferedFileWriter bfw = bufferedWriter;
+        bufferedWriter = null;
+        byte[] checksum;
+        try {
+            checksum = readFileChecksum();
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to read file checksum").addParam("path", bfw.getFile())
+                    .setCause(e).build();
+        }
+        concurrentWriter.submit(bfw.finish(lastModified, checksum, checksumAlg, checksumLimiter));
+    }
+
+    @Override
+    public void openFilePack() throws TransferException {
+        if (getCurrentFile() != null) {
+            throw new TransferExBuilder("Failed to open file pack, previous file must be closed first")
+                    .addParam("previousFilePath", getCurrentFile()).build();
+        }
+        if (openPack != null) {
+            throw new TransferException("Failed to open file pack, previous pack must be closed first");
+        }
+        openPack = new FilePackWriter(checksumAlg, checksumLimiter, copyBuffer, concurrentWriter, syncFiles);
+    }
+
+    @Override
+    public void writePackedFile(String name, long size, long lastModified) throws TransferException {
+        if (openPack == null) {
+            throw new TransferExBuilder("Failed to write packed file, no file pack found").addParam("name", name)
+                    .build();
+        }
+        Path file;
+        try {
+            file = relativeDir.resolve(name);
+        } catch (InvalidPathException e) {
+            throw new TransferExBuilder("Invalid file name").addParam("parentPath", relativeDir)
+                    .addParam("name", name).setCause(e).build();
+        }
+        // file could be created before transfer was interrupted
+        openPack.write(rootDir.resolve(file), resumed, inputChannel, size, lastModified);
+        progressInfo.onFileDataReceived(size);
+    }
+
+    @Override
+    public void closeFilePack() throws TransferException {
+        if (openPack == null) {
+            throw new TransferExBuilder("Failed to close file pack, no file pack found")
+                    .addParam("dirPath", relativeDir).build();
+        }
+        byte[] checksum;
+        try {
+            checksum = readFileChecksum();
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to read file pack checksum").addParam("dirPath", relativeDir)
+                    .setCause(e).build();
+        }
+        try {
+            openPack.finish(checksum);
+        } finally {
+            openPack = null;
+        }
+    }
+
+    @Override
+    public void flushFiles() throws TransferException {
+        if (concurrentWriter == null) {
+            return;
+        }
+        // file continues in next frame, received data are written before position is saved
+        if (bufferedWriter != null) {
+            BufferedFileWriter bfw = bufferedWriter;
+            bufferedWriter = null;
+            openWritter = bfw.toFileWriter(checksumAlg, checksumLimiter, copyBuffer, preallocateFiles);
+        }
+        concurrentWriter.await();
+    }
+
+    /**
+     * Forces data of open file to storage device, files closed before are forced when sync is enabled.
+     */
+    public void forceOpenFile() throws TransferException {
+        if (openWritter != null) {
+            openWritter.force();
+        }
+    }
+
+    /**
+     * @return Current position, valid only between processed frames.
+     */
+    public RecvPosition getPosition() {
+        FileWriter fw = openWritter;
+        if (fw == null) {
+            return new RecvPosition(relativeDir, null, 0, 0);
+        }
+        Path file = rootDir.relativize(fw.getFile());
+        return new RecvPosition(relativeDir, file, fw.getSize(), fw.getWrittenSize());
+    }
+
+    /**
+     * Restores position of interrupted transfer. Open file is truncated to written size. Items
+     * created after the position are overwritten until {@link #resumeCompleted()} is called.
+     */
+    public void resume(RecvPosition position) throws TransferException {
+        Validate.isTrue(openWritter == null && bufferedWriter == null);
+
+        relativeDir = position.getDir();
+        resumed = true;
+        Path file = position.getFile();
+        if (file == null) {
+            return;
+        }
+        Path dstFile = rootDir.resolve(file);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dstFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new TransferExBuilder("Failed to open resumed file").addParam("path", file).setCause(e).build();
+        }
+        FileWriter fw = new FileWriter(dstFile, channel, position.getFileSize(), checksumAlg, checksumLimiter,
+                copyBuffer);
+        try {
+            fw.resume(position.getFileOffset());
+        } catch (TransferException e) {
+            fw.close();
+            throw e;
+        }
+        preallocate(fw);
+        openWritter = fw;
+    }
+
+    /**
+     * Called when first frame after resumed position was processed.
+     */
+    public void resumeCompleted() {
+        resumed = false;
+    }
+
+    /**
+     * Closes currently open file, any error is only logged. Method is called when transfer is
+     * terminated.
+     */
+    public void close() {
+        openPack = null;
+        bufferedWriter = null;
+        FileWriter fw = openWritter;
+        if (fw != null) {
+            openWritter = null;
+            fw.close();
+        }
     }
 
     private byte[] readFileChecksum() throws IOException {
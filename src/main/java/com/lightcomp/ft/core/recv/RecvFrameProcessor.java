@@ -2,19 +2,23 @@ package com.lightcomp.ft.core.recv;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.Collection;
-
+import java.util.Collections;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.lightcomp.ft.common.BufferPool;
+import com.lightcomp.ft.core.blocks.BinaryBlockReader;
 import com.lightcomp.ft.exception.TransferException;
 import com.lightcomp.ft.exception.TransferExBuilder;
 import com.lightcomp.ft.xsd.v1.FrameBlock;
@@ -32,22 +36,37 @@ public class RecvFrameProcessor {
 
     private final boolean last;
 
+    /**
+     * XML blocks of frame, null when blocks are binary encoded.
+     */
     private final Collection<FrameBlock> blocks;
 
+    /**
+     * Size of binary encoded blocks which prefix frame data.
+     */
+    private final int blocksSize;
+
     private final DataHandler dataHandler;
 
     private final long dataSize;
 
     private Path dataFile;
 
+    private ByteBuffer dataBuffer;
+
+    private BufferPool bufferPool;
+
+    private long dataLength = -1;
+
     private long dataPos;
 
     private RecvFrameProcessor(RecvContext recvCtx, int seqNum, boolean last, Collection<FrameBlock> blocks,
-            DataHandler dataHandler, long dataSize) {
+            int blocksSize, DataHandler dataHandler, long dataSize) {
         this.recvCtx = recvCtx;
         this.seqNum = seqNum;
         this.last = last;
         this.blocks = blocks;
+        this.blocksSize = blocksSize;
         this.dataHandler = dataHandler;
         this.dataSize = dataSize;
     }
@@ -61,10 +80,87 @@ public class RecvFrameProcessor {
     }
 
     /**
-     * Receives data from request (MTOM data handler) for future processing.
+     * @return Data size declared by frame.
+     */
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * Receives data from request (MTOM data handler) for future processing. Data are stored in
+     * temporary file.
      */
     public void prepareData(Path workDir) throws TransferException {
-        Validate.isTrue(dataFile == null);
+        Validate.isTrue(dataLength < 0);
+        storeData(workDir);
+        dataLength = dataSize;
+    }
+
+    /**
+     * Receives data from request (MTOM data handler) for future processing. Frame data up to the
+     * memory limit are buffered in memory, larger frames are stored in temporary file.
+     * 
+     * @param workDir
+     *            directory for temporary frame data
+     * @param memoryLimit
+     *            maximum size of frame data buffered in memory
+     * @param bufferPool
+     *            pool of memory buffers, not-null, buffer is released after frame is processed
+     */
+    public void prepareData(Path workDir, int memoryLimit, BufferPool bufferPool) throws TransferException {
+        Validate.isTrue(dataLength < 0);
+        Validate.notNull(bufferPool);
+        if (dataSize <= memoryLimit) {
+            bufferData(bufferPool);
+        } else {
+            storeData(workDir);
+        }
+        dataLength = dataSize;
+    }
+
+    private void bufferData(BufferPool bufferPool) throws TransferException {
+        ByteBuffer buffer = bufferPool.acquire((int) dataSize);
+        long length;
+        try (InputStream is = dataHandler.getInputStream()) {
+            length = readFully(is, buffer);
+            if (length == dataSize) {
+                // count rest of the stream, only empty stream is expected
+                length += is.transferTo(OutputStream.nullOutputStream());
+            }
+        } catch (IOException e) {
+            bufferPool.release(buffer);
+            throw new TransferExBuilder("Failed to transfer frame data").addParam("seqNum", seqNum).setCause(e)
+                    .build();
+        }
+        if (length != dataSize) {
+            bufferPool.release(buffer);
+            checkDataLength(length);
+        }
+        buffer.flip();
+        this.dataBuffer = buffer;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Reads stream until buffer is full or end of stream is reached.
+     * 
+     * @return Number of read bytes.
+     */
+    private static int readFully(InputStream is, ByteBuffer bb) throws IOException {
+        int start = bb.position();
+        if (bb.hasArray()) {
+            int n = is.readNBytes(bb.array(), bb.arrayOffset() + start, bb.remaining());
+            bb.position(start + n);
+        } else {
+            ReadableByteChannel ch = Channels.newChannel(is);
+            while (bb.hasRemaining() && ch.read(bb) >= 0) {
+                // read until buffer is full
+            }
+        }
+        return bb.position() - start;
+    }
+
+    private void storeData(Path workDir) throws TransferException {
         // create temporary file
         try {
             String prefix = "FTRecvFrame-" + Integer.toString(seqNum) + "-";
@@ -75,11 +171,9 @@ public class RecvFrameProcessor {
         // copy frame data to file
         try (InputStream is = dataHandler.getInputStream()) {
             long length = Files.copy(is, dataFile, StandardCopyOption.REPLACE_EXISTING);
-            // copied length must match with specified data size
             if (length != dataSize) {
                 deleteData();
-                throw new TransferExBuilder("Frame size does not match data length").addParam("seqNum", seqNum)
-                        .addParam("frameSize", dataSize).addParam("dataLength", length).build();
+                checkDataLength(length);
             }
         } catch (IOException e) {
             deleteData();
@@ -88,15 +182,42 @@ public class RecvFrameProcessor {
         }
     }
 
+    /**
+     * Received data length must match with specified data size.
+     */
+    private void checkDataLength(long length) throws TransferException {
+        if (length != dataSize) {
+            throw new TransferExBuilder("Frame size does not match data length").addParam("seqNum", seqNum)
+                    .addParam("frameSize", dataSize).addParam("dataLength", length).build();
+        }
+    }
+
+    /**
+     * Processes frame blocks. When data were not prepared before, blocks are received directly from
+     * request (MTOM data handler) without any temporary copy.
+     */
     public void process() throws TransferException {
         int blockNum = 1;
         try (ReadableByteChannel dch = openDataChannel()) {
             // set input channel to receive context
-            recvCtx.setInputChannel(dch);
+            ReadableByteChannel cch = createCountingChannel(dch);
+            recvCtx.setInputChannel(cch);
             // process all blocks
-            for (FrameBlock block : blocks) {
-                block.receive(recvCtx);
-                blockNum++;
+            if (blocks != null) {
+                for (FrameBlock block : blocks) {
+                    block.receive(recvCtx);
+                    blockNum++;
+                }
+            } else {
+                BinaryBlockReader reader = new BinaryBlockReader(readEncodedBlocks(cch));
+                while (reader.hasNext()) {
+                    reader.receiveNext(recvCtx);
+                    blockNum++;
+                }
+            }
+            // streamed data length is known after all blocks are processed
+            if (dataLength < 0) {
+                dataLength = dataPos + skipRemaining(dch);
             }
         } catch (Throwable t) {
             throw new TransferExBuilder("Failed to process frame block").addParam("seqNum", seqNum)
@@ -105,17 +226,83 @@ public class RecvFrameProcessor {
             recvCtx.setInputChannel(null);
             deleteData();
         }
+        // files written concurrently are completed before frame is confirmed
+        recvCtx.flushFiles();
         validate();
     }
 
+    /**
+     * Reads binary encoded blocks from the beginning of data stream.
+     */
+    private ByteBuffer readEncodedBlocks(ReadableByteChannel dch) throws IOException, TransferException {
+        if (blocksSize < 0 || blocksSize > dataSize) {
+            throw new TransferExBuilder("Invalid size of encoded blocks").addParam("blocksSize", blocksSize)
+                    .addParam("dataSize", dataSize).build();
+        }
+        ByteBuffer bb = ByteBuffer.allocate(blocksSize);
+        while (bb.hasRemaining()) {
+            if (dch.read(bb) < 0) {
+                throw new TransferExBuilder("Frame data ended before encoded blocks")
+                        .addParam("blocksSize", blocksSize).addParam("readSize", bb.position()).build();
+            }
+        }
+        bb.flip();
+        return bb;
+    }
+
     private ReadableByteChannel openDataChannel() throws TransferException {
-        ReadableByteChannel dch;
+        if (dataBuffer != null) {
+            return createBufferChannel(dataBuffer.duplicate());
+        }
+        if (dataFile != null) {
+            try {
+                return Files.newByteChannel(dataFile, StandardOpenOption.READ); // NOSONAR
+            } catch (IOException e) {
+                throw new TransferExBuilder("Failed to open temporary frame data").addParam("seqNum", seqNum)
+                        .addParam("dataFile", dataFile).setCause(e).build();
+            }
+        }
         try {
-            dch = Files.newByteChannel(dataFile, StandardOpenOption.READ); //NOSONAR
+            return Channels.newChannel(dataHandler.getInputStream());
         } catch (IOException e) {
-            throw new TransferExBuilder("Failed to open temporary frame data").addParam("seqNum", seqNum)
-                    .addParam("dataFile", dataFile).setCause(e).build();
+            throw new TransferExBuilder("Failed to open frame data stream").addParam("seqNum", seqNum).setCause(e)
+                    .build();
         }
+    }
+
+    /**
+     * Creates channel which reads directly from buffered data without any intermediate copy.
+     */
+    private static ReadableByteChannel createBufferChannel(ByteBuffer data) {
+        return new ReadableByteChannel() {
+            private boolean open = true;
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                open = false;
+            }
+
+            @Override
+            public int read(ByteBuffer dst) {
+                if (!data.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(dst.remaining(), data.remaining());
+                ByteBuffer src = data.slice();
+                src.limit(n);
+                dst.put(src);
+                data.position(data.position() + n);
+                return n;
+            }
+        };
+    }
+
+    private ReadableByteChannel createCountingChannel(ReadableByteChannel dch) {
         return new ReadableByteChannel() {
             @Override
             public boolean isOpen() {
@@ -130,13 +317,32 @@ public class RecvFrameProcessor {
             @Override
             public int read(ByteBuffer dst) throws IOException {
                 int n = dch.read(dst);
-                dataPos += n;
+                if (n > 0) {
+                    dataPos += n;
+                }
                 return n;
             }
         };
     }
 
+    /**
+     * Reads rest of the data stream.
+     * 
+     * @return Number of skipped bytes.
+     */
+    private static long skipRemaining(ReadableByteChannel dch) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(8192);
+        long skipped = 0;
+        int n;
+        while ((n = dch.read(bb)) >= 0) {
+            skipped += n;
+            bb.clear();
+        }
+        return skipped;
+    }
+
     private void validate() throws TransferException {
+        checkDataLength(dataLength);
         if (dataSize != dataPos) {
             throw new TransferExBuilder("Not all data from frame stream processed").addParam("seqNum", seqNum)
                     .addParam("dataSize", dataSize).addParam("dataPosition", dataPos).build();
@@ -157,6 +363,13 @@ public class RecvFrameProcessor {
     }
 
     private void deleteData() {
+        if (dataBuffer != null) {
+            bufferPool.release(dataBuffer);
+            dataBuffer = null;
+        }
+        if (dataFile == null) {
+            return;
+        }
         try {
             Files.delete(dataFile);
         } catch (Throwable t) {
@@ -167,7 +380,14 @@ public class RecvFrameProcessor {
 
     public static RecvFrameProcessor create(RecvContext recvCtx, Frame frame) {
         boolean last = Boolean.TRUE.equals(frame.isLast());
-        Collection<FrameBlock> blocks = frame.getBlocks().getDbsAndDesAndFbs();
-        return new RecvFrameProcessor(recvCtx, frame.getSeqNum(), last, blocks, frame.getData(), frame.getDataSize());
+        // binary encoded blocks are decoded during processing
+        if (frame.getBlocksSize() != null) {
+            return new RecvFrameProcessor(recvCtx, frame.getSeqNum(), last, null, frame.getBlocksSize(),
+                    frame.getData(), frame.getDataSize());
+        }
+        Collection<FrameBlock> blocks = frame.getBlocks() != null ? frame.getBlocks().getDbsAndDesAndFbs()
+                : Collections.emptyList();
+        return new RecvFrameProcessor(recvCtx, frame.getSeqNum(), last, blocks, 0, frame.getData(),
+                frame.getDataSize());
     }
 }
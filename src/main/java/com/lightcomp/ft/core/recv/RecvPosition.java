@@ -0,0 +1,58 @@
+package com.lightcomp.ft.core.recv;
+
+import java.nio.file.Path;
+
+import com.lightcomp.ft.common.PathUtils;
+
+/**
+ * Position of receive context between frames, used for resuming interrupted transfer.
+ */
+public class RecvPosition {
+
+    private final Path dir;
+
+    private final Path file;
+
+    private final long fileSize;
+
+    private final long fileOffset;
+
+    /**
+     * @param dir
+     *            current directory relative to root, not-null
+     * @param file
+     *            open file relative to root, null when no file is open
+     * @param fileSize
+     *            declared size of open file
+     * @param fileOffset
+     *            number of bytes written to open file
+     */
+    public RecvPosition(Path dir, Path file, long fileSize, long fileOffset) {
+        this.dir = dir;
+        this.file = file;
+        this.fileSize = fileSize;
+        this.fileOffset = fileOffset;
+    }
+
+    /**
+     * @return Current directory relative to root, {@link PathUtils#ROOT} for root directory.
+     */
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * @return Open file relative to root or null.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getFileOffset() {
+        return fileOffset;
+    }
+}
@@ -1,8 +1,17 @@
 package com.lightcomp.ft.core.send;
 
+import java.io.IOException;
+
 public interface BlockStreamProvider {
 
     long getStreamSize();
     
     BlockStream create();
+
+    /**
+     * Prepares block data before the block is sent, e.g. precomputes checksum of source data. Method can
+     * run concurrently with created streams.
+     */
+    default void prepare() throws IOException {
+    }
 }
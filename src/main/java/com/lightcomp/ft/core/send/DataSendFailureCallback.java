@@ -2,7 +2,8 @@ package com.lightcomp.ft.core.send;
 
 /**
  * This callback is used when outgoing MTOM data stream throws exception. Default behavior of MTOM
- * impl. only closes the stream and does not fire exception.
+ * impl. only closes the stream and does not fire exception. Callback is also notified when all data
+ * of the stream were read.
  */
 public interface DataSendFailureCallback {
 
@@ -10,4 +11,10 @@ public interface DataSendFailureCallback {
      * Called when outgoing MTOM data stream throws exception.
      */
     void onDataSendFailed(Throwable cause);
+
+    /**
+     * Called once when outgoing MTOM data stream reached end of data.
+     */
+    default void onDataSendFinished() {
+    }
 }
@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.lightcomp.ft.common.Checksum;
+import com.lightcomp.ft.common.ChecksumGenerator;
+import com.lightcomp.ft.core.send.items.SourceFile;
 
 import jakarta.xml.bind.DatatypeConverter;
 
@@ -16,24 +18,41 @@ public class FileChksmStream implements BlockStream {
 
     private final Checksum checksum;
 
+    private final SourceFile srcFile;
+
+    private final long fileSize;
+
     private final Path srcPath;
 
+    private final SourceFile notifiedFile;
+
     private byte[] arrChksm;
 
     private int remaining;
 
-    public FileChksmStream(Checksum checksum, Path srcPath) {
+    public FileChksmStream(Checksum checksum, SourceFile srcFile, long fileSize, Path srcPath,
+            SourceFile notifiedFile) {
         this.checksum = checksum;
+        this.srcFile = srcFile;
+        this.fileSize = fileSize;
         this.srcPath = srcPath;
+        this.notifiedFile = notifiedFile;
         this.remaining = checksum.getAlgorithm().getByteLen();
     }
 
     @Override
     public void open() throws IOException {
+        if (checksum instanceof ChecksumGenerator) {
+            // frame with last file data can be sent concurrently with this frame
+            FileDataStream.updateChecksum(srcFile, (ChecksumGenerator) checksum, fileSize, srcPath);
+        }
         arrChksm = checksum.generate();
         if (logger.isDebugEnabled()) {
             logger.debug("File={}, SHA512={}", srcPath, DatatypeConverter.printHexBinary(arrChksm));
         }
+        if (notifiedFile != null) {
+            notifiedFile.onChecksumGenerated(checksum.getAlgorithm(), arrChksm);
+        }
     }
 
     @Override
@@ -3,16 +3,31 @@ package com.lightcomp.ft.core.send;
 import java.nio.file.Path;
 
 import com.lightcomp.ft.common.Checksum;
+import com.lightcomp.ft.core.send.items.SourceFile;
 
 public class FileChksmStreamProvider implements BlockStreamProvider {
 
     private final Checksum checksum;
 
+    private final SourceFile srcFile;
+
+    private final long fileSize;
+
     private final Path srcPath;
 
-    public FileChksmStreamProvider(Checksum checksum, Path srcPath) {
+    private final SourceFile notifiedFile;
+
+    /**
+     * @param notifiedFile
+     *            file notified about generated checksum, can be null
+     */
+    public FileChksmStreamProvider(Checksum checksum, SourceFile srcFile, long fileSize, Path srcPath,
+            SourceFile notifiedFile) {
         this.checksum = checksum;
+        this.srcFile = srcFile;
+        this.fileSize = fileSize;
         this.srcPath = srcPath;
+        this.notifiedFile = notifiedFile;
     }
 
     @Override
@@ -22,6 +37,6 @@ public class FileChksmStreamProvider implements BlockStreamProvider {
 
     @Override
     public BlockStream create() {
-        return new FileChksmStream(checksum, srcPath);
+        return new FileChksmStream(checksum, srcFile, fileSize, srcPath, notifiedFile);
     }
 }
@@ -10,12 +10,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.lightcomp.ft.common.Checksum;
+import com.lightcomp.ft.common.ChecksumGenerator;
 import com.lightcomp.ft.core.send.items.SourceFile;
 
 public class FileDataStream implements BlockStream {
 
 	private static final Logger logger = LoggerFactory.getLogger(FileDataStream.class);
 
+	private static final int SKIPPED_BUFFER_SIZE = 65536;
+
 	private final SourceFile srcFile;
 
 	private final long offset;
@@ -46,6 +49,47 @@ public class FileDataStream implements BlockStream {
 	public void open() throws IOException {
 		Validate.isTrue(channel == null);
 		channel = srcFile.openChannel(offset);
+		updateSkippedChecksum();
+	}
+
+	/**
+	 * Resumed transfer does not send file data processed by server, checksum is
+	 * updated from the skipped data first.
+	 */
+	private void updateSkippedChecksum() throws IOException {
+		if (checksum instanceof ChecksumGenerator) {
+			updateChecksum(srcFile, (ChecksumGenerator) checksum, offset, srcPath);
+		}
+	}
+
+	/**
+	 * Updates checksum generator from source file data up to end position. Data
+	 * processed concurrently by other thread are skipped.
+	 */
+	static void updateChecksum(SourceFile srcFile, ChecksumGenerator generator, long endPos, Path srcPath)
+			throws IOException {
+		long pos = generator.getNumProcessed();
+		if (pos >= endPos) {
+			return;
+		}
+		ByteBuffer bb = ByteBuffer.allocate(SKIPPED_BUFFER_SIZE);
+		try (ReadableByteChannel skippedChannel = srcFile.openChannel(pos)) {
+			while (pos < endPos && generator.getNumProcessed() < endPos) {
+				bb.clear();
+				if (endPos - pos < bb.capacity()) {
+					bb.limit((int) (endPos - pos));
+				}
+				int n = skippedChannel.read(bb);
+				if (n <= 0) {
+					String message = "Skipped data of source file ended prematurely, path=" + srcPath;
+					logger.error(message);
+					throw new IOException(message);
+				}
+				pos += n;
+				bb.flip();
+				generator.update(pos, bb);
+			}
+		}
 	}
 
 	@Override
@@ -71,9 +115,10 @@ public class FileDataStream implements BlockStream {
 		}
 		// increment position
 		streamPos += len;
-		// update generator and progress
+		// update generator and progress, buffer is flipped to read data
 		long newPos = offset + streamPos;
-		checksum.update(newPos, b, off, len);
+		bb.flip().position(off);
+		checksum.update(newPos, bb);
 		progress.update(newPos);
 		return len;
 	}
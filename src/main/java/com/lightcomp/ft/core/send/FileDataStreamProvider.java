@@ -1,8 +1,10 @@
 package com.lightcomp.ft.core.send;
 
+import java.io.IOException;
 import java.nio.file.Path;
 
 import com.lightcomp.ft.common.Checksum;
+import com.lightcomp.ft.common.ChecksumGenerator;
 import com.lightcomp.ft.core.send.items.SourceFile;
 
 public class FileDataStreamProvider implements BlockStreamProvider {
@@ -38,4 +40,15 @@ public class FileDataStreamProvider implements BlockStreamProvider {
 	public BlockStream create() {
 		return new FileDataStream(srcFile, offset, size, checksum, srcPath, progress);
 	}
+
+	/**
+	 * Precomputes checksum of file data up to end of this block, data are not
+	 * reported as sent.
+	 */
+	@Override
+	public void prepare() throws IOException {
+		if (checksum instanceof ChecksumGenerator) {
+			FileDataStream.updateChecksum(srcFile, (ChecksumGenerator) checksum, offset + size, srcPath);
+		}
+	}
 }
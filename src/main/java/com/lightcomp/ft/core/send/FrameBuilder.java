@@ -7,9 +7,12 @@ import org.apache.commons.lang3.Validate;
 import com.lightcomp.ft.common.PathUtils;
 import com.lightcomp.ft.core.blocks.DirBeginBlockImpl;
 import com.lightcomp.ft.core.blocks.DirEndBlockImpl;
+import com.lightcomp.ft.core.send.items.SourceFile;
 import com.lightcomp.ft.core.send.items.SourceItem;
 import com.lightcomp.ft.core.send.items.SourceItemReader;
+import com.lightcomp.ft.exception.TransferExBuilder;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 
 /**
  * Frame builder, builds frame in sequence from first to last one.
@@ -21,15 +24,35 @@ public class FrameBuilder {
 
 	private final SendConfig config;
 
+	private final BlockEncoding blockEncoding;
+
+	private final long maxPackedFileSize;
+
 	private SendProgressInfo progressInfo;
 
 	private FrameFileSplitter currFS;
 
+	private FramePack currPack;
+
 	private int currSeqNum;
 
 	public FrameBuilder(SendProgressInfo progressInfo, SendConfig config) {
+		this(progressInfo, config, BlockEncoding.XML, false);
+	}
+
+	/**
+	 * @param blockEncoding
+	 *            encoding of frame blocks negotiated with receiver
+	 * @param packFiles
+	 *            when true receiver accepts packs of small files, files are
+	 *            packed only when enabled by config
+	 */
+	public FrameBuilder(SendProgressInfo progressInfo, SendConfig config, BlockEncoding blockEncoding,
+			boolean packFiles) {
 		this.progressInfo = progressInfo;
 		this.config = config;
+		this.blockEncoding = blockEncoding;
+		this.maxPackedFileSize = packFiles ? config.getMaxPackedFileSize() : 0;
 	}
 
 	public int getCurrentSeqNum() {
@@ -46,11 +69,32 @@ public class FrameBuilder {
 		Validate.isTrue(dirStack.size() > 0); // initialization not called or last frame built
 
 		currSeqNum++;
-		SendFrameContextImpl frameCtx = new SendFrameContextImpl(currSeqNum, config);
+		SendFrameContextImpl frameCtx = new SendFrameContextImpl(currSeqNum, config, blockEncoding);
 		buildBlocks(frameCtx);
 		return frameCtx;
 	}
 
+	/**
+	 * Builds frames processed by server before transfer was interrupted, data of
+	 * the frames are not read. Source items must not be changed since interrupted
+	 * transfer.
+	 * 
+	 * @return Returns true when last frame was skipped.
+	 */
+	public boolean skipFrames(int seqNum) throws TransferException {
+		while (currSeqNum < seqNum) {
+			SendFrameContext frameCtx = build();
+			if (frameCtx.isLast()) {
+				if (currSeqNum < seqNum) {
+					throw new TransferExBuilder("Resumed frame is after last frame")
+							.addParam("resumedSeqNum", seqNum).addParam("lastSeqNum", currSeqNum).build();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void buildBlocks(SendFrameContextImpl frameCtx) throws TransferException {
 		while (dirStack.size() > 0) {
 			// add all blocks from current file first
@@ -72,17 +116,27 @@ public class FrameBuilder {
 			// process next child if present
 			if (dir.hasNext()) {
 				SourceItem child = dir.getNext();
+				long packedSize = getPackedSize(child);
+				if (packedSize >= 0) {
+					if (!addPackedFile(child.asFile(), packedSize, dir, frameCtx)) {
+						dir.pushBack(child);
+						return; // frame filled
+					}
+					continue;
+				}
+				addPack(frameCtx);
 				if (child.isDir()) {
 					FrameDirContext childDir = new FrameDirContext(child.getName(), dir.getPath(),
 							child.asDir().getChidrenReader());
 					dirStack.addLast(childDir);
 				} else {
 					currFS = FrameFileSplitter.create(child.asFile(), dir.getPath(), config.getChecksumAlg(),
-							progressInfo);
+							config.getChecksumLimiter(), progressInfo);
 				}
 				continue;
 			}
 			// add end block and remove it from stack
+			addPack(frameCtx);
 			if (!addDirEnd(dir, frameCtx)) {
 				return; // frame filled
 			}
@@ -92,6 +146,53 @@ public class FrameBuilder {
 		frameCtx.setLast(true);
 	}
 
+	/**
+	 * Packed file with checksum must fit into empty frame.
+	 * 
+	 * @return Size of packed file or -1 when item is not packed.
+	 */
+	private long getPackedSize(SourceItem item) {
+		if (maxPackedFileSize <= 0 || item.isDir()) {
+			return -1;
+		}
+		long size = item.asFile().getSize();
+		long chksmSize = config.getChecksumAlg().getByteLen();
+		if (size < 0 || size > maxPackedFileSize || size + chksmSize > config.getMaxFrameSize()) {
+			return -1;
+		}
+		return size;
+	}
+
+	/**
+	 * @return Return true if file was packed. Return false if frame is full, open
+	 *         pack is added to frame.
+	 */
+	private boolean addPackedFile(SourceFile file, long size, FrameDirContext dirCtx,
+			SendFrameContextImpl frameCtx) throws TransferException {
+		if (currPack == null) {
+			currPack = new FramePack(dirCtx.getPath(), config, progressInfo);
+		}
+		if (currPack.add(file, size, frameCtx)) {
+			return true;
+		}
+		addPack(frameCtx);
+		return false;
+	}
+
+	/**
+	 * Adds open pack to frame, block and data were reserved when files were
+	 * packed.
+	 */
+	private void addPack(SendFrameContextImpl frameCtx) {
+		if (currPack == null) {
+			return;
+		}
+		if (!currPack.isEmpty()) {
+			currPack.addTo(frameCtx);
+		}
+		currPack = null;
+	}
+
 	/**
 	 * @return Return true if dir begin block was added. Return false if frame is
 	 *         full.
@@ -2,6 +2,8 @@ package com.lightcomp.ft.core.send;
 
 import java.nio.file.Path;
 
+import org.apache.commons.lang3.Validate;
+
 import com.lightcomp.ft.core.send.items.SourceItem;
 import com.lightcomp.ft.core.send.items.SourceItemReader;
 
@@ -15,6 +17,8 @@ class FrameDirContext implements SourceItemReader {
 
 	private boolean open;
 
+	private SourceItem pushedBack;
+
 	public FrameDirContext(String name, Path path, SourceItemReader reader) {
 		this.name = name;
 		this.path = path;
@@ -41,14 +45,28 @@ class FrameDirContext implements SourceItemReader {
 
 	@Override
 	public boolean hasNext() {
-		return reader.hasNext();
+		return pushedBack != null || reader.hasNext();
 	}
 
 	@Override
 	public SourceItem getNext() {
+		if (pushedBack != null) {
+			SourceItem item = pushedBack;
+			pushedBack = null;
+			return item;
+		}
 		return reader.getNext();
 	}
 
+	/**
+	 * Returns item which did not fit the frame, the item is returned by next call of
+	 * {@link #getNext()}.
+	 */
+	public void pushBack(SourceItem item) {
+		Validate.isTrue(pushedBack == null);
+		pushedBack = item;
+	}
+
 	@Override
 	public void close() {
 		reader.close();
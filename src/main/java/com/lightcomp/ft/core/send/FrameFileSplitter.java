@@ -2,6 +2,7 @@ package com.lightcomp.ft.core.send;
 
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
 
 import com.lightcomp.ft.common.Checksum;
 import com.lightcomp.ft.common.Checksum.Algorithm;
@@ -83,7 +84,10 @@ class FrameFileSplitter {
 		FileEndBlockImpl b = new FileEndBlockImpl();
 		b.setLm(srcFile.getLastModified());
 
-		FileChksmStreamProvider fchsp = new FileChksmStreamProvider(checksum, srcPath);
+		// only generated checksum is passed back to source file
+		SourceFile notifiedFile = checksum instanceof ChecksumGenerator ? srcFile : null;
+		FileChksmStreamProvider fchsp = new FileChksmStreamProvider(checksum, srcFile, this.size, srcPath,
+				notifiedFile);
 
 		frameCtx.addBlock(b, fchsp);
 		offset += size;
@@ -112,7 +116,7 @@ class FrameFileSplitter {
 	}
 
 	public static FrameFileSplitter create(SourceFile srcFile, Path parentPath, Algorithm checksumAlg,
-			SendProgressInfo progressInfo) throws TransferException {
+			Semaphore checksumLimiter, SendProgressInfo progressInfo) throws TransferException {
 		// validate file name and create source path mainly for logging
 		Path path;
 		try {
@@ -129,13 +133,13 @@ class FrameFileSplitter {
 					.build();
 		}
 
-		Checksum checksum = createChecksum(checksumAlg, srcFile.getChecksum(), path);
+		Checksum checksum = createChecksum(checksumAlg, checksumLimiter, srcFile.getChecksum(checksumAlg), path);
 		FileDataProgress dataProgress = new FileDataProgress(progressInfo);
 		return new FrameFileSplitter(srcFile, size, checksum, path, dataProgress);
 	}
 
-	private static Checksum createChecksum(Algorithm checksumAlg, byte[] checksum, Path srcPath)
-			throws TransferException {
+	private static Checksum createChecksum(Algorithm checksumAlg, Semaphore checksumLimiter, byte[] checksum,
+			Path srcPath) throws TransferException {
 		if (checksum != null) {
 			if (checksumAlg.getByteLen() != checksum.length) {
 				throw new TransferExBuilder("File checksum has invalid length")
@@ -144,6 +148,6 @@ class FrameFileSplitter {
 			}
 			return new ChecksumHolder(checksumAlg, checksum);
 		}
-		return ChecksumGenerator.create(checksumAlg);
+		return ChecksumGenerator.create(checksumAlg, checksumLimiter);
 	}
 }
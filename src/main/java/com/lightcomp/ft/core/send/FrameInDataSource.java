@@ -3,7 +3,12 @@ package com.lightcomp.ft.core.send;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import com.lightcomp.ft.common.BufferPool;
 
 import jakarta.activation.DataSource;
 
@@ -13,9 +18,40 @@ public class FrameInDataSource implements DataSource {
 
     private final DataSendFailureCallback failureCallback;
 
+    private final int readAheadBuffers;
+
+    private final BufferPool bufferPool;
+
+    private final Executor readAheadExecutor;
+
+    private final int readAheadTimeout;
+
+    private final List<ReadAheadInStream> readAheadStreams = new ArrayList<>();
+
+    private boolean cancelled;
+
     public FrameInDataSource(Collection<BlockStreamProvider> bsProviders, DataSendFailureCallback failureCallback) {
+        this(bsProviders, failureCallback, 0, null, null, 0);
+    }
+
+    /**
+     * @param readAheadBuffers
+     *            number of read-ahead buffers, zero when data are read by caller thread
+     * @param bufferPool
+     *            pool of read-ahead buffers, can be null when read-ahead is not used
+     * @param readAheadExecutor
+     *            executor of read-ahead I/O threads, can be null when read-ahead is not used
+     * @param readAheadTimeout
+     *            number of seconds until read-ahead gives up waiting
+     */
+    public FrameInDataSource(Collection<BlockStreamProvider> bsProviders, DataSendFailureCallback failureCallback,
+            int readAheadBuffers, BufferPool bufferPool, Executor readAheadExecutor, int readAheadTimeout) {
         this.bsProviders = bsProviders;
         this.failureCallback = failureCallback;
+        this.readAheadBuffers = readAheadBuffers;
+        this.bufferPool = bufferPool;
+        this.readAheadExecutor = readAheadExecutor;
+        this.readAheadTimeout = readAheadTimeout;
     }
 
     @Override
@@ -25,7 +61,34 @@ public class FrameInDataSource implements DataSource {
 
     @Override
     public InputStream getInputStream() throws IOException {
-        return new FrameInStream(bsProviders, failureCallback);
+        if (readAheadBuffers <= 0) {
+            return new FrameInStream(bsProviders, failureCallback);
+        }
+        // source stream is read by I/O thread, callback is notified by read-ahead stream
+        FrameInStream source = new FrameInStream(bsProviders, t -> {
+        });
+        long size = bsProviders.stream().mapToLong(BlockStreamProvider::getStreamSize).sum();
+        synchronized (readAheadStreams) {
+            if (cancelled) {
+                throw new IOException("Frame data already cancelled");
+            }
+            ReadAheadInStream is = new ReadAheadInStream(source, size, readAheadBuffers, bufferPool,
+                    readAheadExecutor, readAheadTimeout, failureCallback);
+            readAheadStreams.add(is);
+            return is;
+        }
+    }
+
+    /**
+     * Cancels read-ahead of all opened streams, streams are no longer needed when frame was sent or
+     * its sending failed.
+     */
+    public void cancel() {
+        synchronized (readAheadStreams) {
+            cancelled = true;
+            readAheadStreams.forEach(ReadAheadInStream::cancel);
+            readAheadStreams.clear();
+        }
     }
 
     @Override
@@ -11,12 +11,16 @@ public class FrameInStream extends InputStream {
 
     private final DataSendFailureCallback failureCallback;
 
+    private final byte[] singleByte = new byte[1];
+
     private BlockStream currBlockStream;
 
     private long available;
 
     private boolean closed;
 
+    private boolean finished;
+
     public FrameInStream(Collection<BlockStreamProvider> bsProviders, DataSendFailureCallback failureCallback) {
         this.bsProviderIt = bsProviders.iterator();
         this.failureCallback = failureCallback;
@@ -25,10 +29,9 @@ public class FrameInStream extends InputStream {
 
     @Override
     public int read() throws IOException {
-        byte[] b = new byte[1];
-        int n = read(b, 0, 1);
+        int n = read(singleByte, 0, 1);
         if (n == 1) {
-            return Byte.toUnsignedInt(b[0]);
+            return Byte.toUnsignedInt(singleByte[0]);
         }
         return n;
     }
@@ -51,6 +54,9 @@ public class FrameInStream extends InputStream {
         // update available if not end of stream (-1)
         if (read > 0) {
             available -= read;
+        } else if (read < 0 && !finished) {
+            finished = true;
+            failureCallback.onDataSendFinished();
         }
         return read;
     }
@@ -0,0 +1,89 @@
+package com.lightcomp.ft.core.send;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lightcomp.ft.common.ChecksumGenerator;
+import com.lightcomp.ft.core.blocks.FilePackBlockImpl;
+import com.lightcomp.ft.core.send.items.SourceFile;
+import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.exception.TransferExBuilder;
+import com.lightcomp.ft.xsd.v1.PackedFile;
+
+/**
+ * Pack of small files from one directory. Pack is added to single frame as one
+ * block, data of all files are followed by one checksum. Checksums defined by
+ * source files are not used.
+ */
+class FramePack {
+
+	private final List<SourceFile> files = new ArrayList<>();
+
+	private final List<Long> sizes = new ArrayList<>();
+
+	private final FilePackBlockImpl block = new FilePackBlockImpl();
+
+	private final Path dirPath;
+
+	private final SendConfig config;
+
+	private final SendProgressInfo progressInfo;
+
+	private long dataSize;
+
+	public FramePack(Path dirPath, SendConfig config, SendProgressInfo progressInfo) {
+		this.dirPath = dirPath;
+		this.config = config;
+		this.progressInfo = progressInfo;
+	}
+
+	public boolean isEmpty() {
+		return files.isEmpty();
+	}
+
+	/**
+	 * @return True when file was added. False when pack cannot be extended in
+	 *         current frame.
+	 */
+	public boolean add(SourceFile srcFile, long size, SendFrameContextImpl frameCtx) throws TransferException {
+		// pack reserves one block, frame is not changed until pack is added
+		if (files.size() >= config.getMaxFrameBlocks() || frameCtx.isBlockListFull()) {
+			return false;
+		}
+		long chksmSize = config.getChecksumAlg().getByteLen();
+		if (dataSize + size + chksmSize > frameCtx.getRemainingDataSize()) {
+			return false;
+		}
+		try {
+			dirPath.resolve(srcFile.getName());
+		} catch (InvalidPathException e) {
+			throw new TransferExBuilder("Invalid source file name").addParam("parentPath", dirPath)
+					.addParam("name", srcFile.getName()).setCause(e).build();
+		}
+		PackedFile pf = new PackedFile();
+		pf.setN(srcFile.getName());
+		pf.setFs(size);
+		pf.setLm(srcFile.getLastModified());
+
+		block.getFiles().add(pf);
+		files.add(srcFile);
+		sizes.add(size);
+		dataSize += size;
+
+		return true;
+	}
+
+	/**
+	 * Adds pack block and its data to frame, pack must not be empty.
+	 */
+	public void addTo(SendFrameContextImpl frameCtx) {
+		ChecksumGenerator checksum = ChecksumGenerator.create(config.getChecksumAlg(),
+				config.getChecksumLimiter());
+		FileDataProgress dataProgress = new FileDataProgress(progressInfo);
+		PackDataStreamProvider pdsp = new PackDataStreamProvider(files, sizes, dataSize, checksum, dirPath,
+				dataProgress);
+		frameCtx.addBlock(block, pdsp);
+	}
+}
@@ -0,0 +1,123 @@
+package com.lightcomp.ft.core.send;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lightcomp.ft.common.Checksum;
+import com.lightcomp.ft.core.send.items.SourceFile;
+
+/**
+ * Streams data of all packed files in sequence followed by their checksum.
+ */
+public class PackDataStream implements BlockStream {
+
+	private static final Logger logger = LoggerFactory.getLogger(PackDataStream.class);
+
+	private final List<SourceFile> files;
+
+	private final List<Long> sizes;
+
+	private final Checksum checksum;
+
+	private final Path dirPath;
+
+	private final FileDataProgress progress;
+
+	private ReadableByteChannel channel;
+
+	private int fileIndex;
+
+	private long filePos;
+
+	private long streamPos;
+
+	private byte[] arrChksm;
+
+	private int chksmPos;
+
+	public PackDataStream(List<SourceFile> files, List<Long> sizes, Checksum checksum, Path dirPath,
+			FileDataProgress progress) {
+		this.files = files;
+		this.sizes = sizes;
+		this.checksum = checksum;
+		this.dirPath = dirPath;
+		this.progress = progress;
+	}
+
+	@Override
+	public void open() throws IOException {
+		Validate.isTrue(channel == null);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		while (fileIndex < files.size()) {
+			long size = sizes.get(fileIndex);
+			if (filePos < size) {
+				return readFileData(b, off, (int) Math.min(size - filePos, len));
+			}
+			closeChannel();
+			fileIndex++;
+			filePos = 0;
+		}
+		return readChecksum(b, off, len);
+	}
+
+	private int readFileData(byte[] b, int off, int len) throws IOException {
+		if (channel == null) {
+			channel = files.get(fileIndex).openChannel(0);
+		}
+		ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+		while (bb.hasRemaining()) {
+			if (channel.read(bb) < 0) {
+				String message = "Data stream of packed file ended prematurely, path="
+						+ dirPath.resolve(files.get(fileIndex).getName());
+				logger.error(message);
+				throw new IOException(message);
+			}
+		}
+		filePos += len;
+		streamPos += len;
+		checksum.update(streamPos, b, off, len);
+		progress.update(streamPos);
+		return len;
+	}
+
+	private int readChecksum(byte[] b, int off, int len) {
+		if (arrChksm == null) {
+			arrChksm = checksum.generate();
+		}
+		if (chksmPos == arrChksm.length) {
+			return -1;
+		}
+		len = Math.min(arrChksm.length - chksmPos, len);
+		System.arraycopy(arrChksm, chksmPos, b, off, len);
+		chksmPos += len;
+		return len;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeChannel();
+	}
+
+	private void closeChannel() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+}
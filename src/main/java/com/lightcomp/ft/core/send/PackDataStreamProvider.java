@@ -0,0 +1,94 @@
+package com.lightcomp.ft.core.send;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.lightcomp.ft.common.Checksum;
+import com.lightcomp.ft.common.ChecksumGenerator;
+import com.lightcomp.ft.core.send.items.SourceFile;
+
+public class PackDataStreamProvider implements BlockStreamProvider {
+
+	private static final int PREPARE_BUFFER_SIZE = 65536;
+
+	private final List<SourceFile> files;
+
+	private final List<Long> sizes;
+
+	private final long dataSize;
+
+	private final Checksum checksum;
+
+	private final Path dirPath;
+
+	private final FileDataProgress progress;
+
+	public PackDataStreamProvider(List<SourceFile> files, List<Long> sizes, long dataSize, Checksum checksum,
+			Path dirPath, FileDataProgress progress) {
+		this.files = files;
+		this.sizes = sizes;
+		this.dataSize = dataSize;
+		this.checksum = checksum;
+		this.dirPath = dirPath;
+		this.progress = progress;
+	}
+
+	@Override
+	public long getStreamSize() {
+		return dataSize + checksum.getAlgorithm().getByteLen();
+	}
+
+	@Override
+	public BlockStream create() {
+		return new PackDataStream(files, sizes, checksum, dirPath, progress);
+	}
+
+	/**
+	 * Precomputes checksum of packed data when sending has not started yet, data
+	 * are not reported as sent.
+	 */
+	@Override
+	public void prepare() throws IOException {
+		if (!(checksum instanceof ChecksumGenerator)) {
+			return;
+		}
+		ChecksumGenerator generator = (ChecksumGenerator) checksum;
+		if (generator.getNumProcessed() > 0) {
+			return;
+		}
+		ByteBuffer bb = ByteBuffer.allocate(PREPARE_BUFFER_SIZE);
+		long packPos = 0;
+		for (int i = 0; i < files.size() && generator.getNumProcessed() < dataSize; i++) {
+			SourceFile srcFile = files.get(i);
+			long fileEnd = packPos + sizes.get(i);
+			if (packPos == fileEnd) {
+				continue;
+			}
+			try (ReadableByteChannel channel = srcFile.openChannel(0)) {
+				while (packPos < fileEnd) {
+					bb.clear();
+					if (fileEnd - packPos < bb.capacity()) {
+						bb.limit((int) (fileEnd - packPos));
+					}
+					if (channel.read(bb) <= 0) {
+						throw new IOException("Data of packed file ended prematurely, path="
+								+ dirPath.resolve(srcFile.getName()));
+					}
+					packPos += bb.position();
+					bb.flip();
+					// data processed concurrently by sender are skipped
+					generator.update(packPos, bb);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PackDataStreamProvider [dirPath=" + dirPath + ", files=" + files.size() + ", dataSize=" + dataSize
+				+ "]";
+	}
+}
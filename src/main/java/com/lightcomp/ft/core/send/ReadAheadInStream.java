@@ -0,0 +1,358 @@
+package com.lightcomp.ft.core.send;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lightcomp.ft.common.BufferPool;
+
+/**
+ * Input stream which reads source stream in advance by separate I/O thread. Source data are
+ * prefetched to bounded number of buffers acquired from pool, so disk latency does not stall sending
+ * thread. I/O threads are shared by all streams and bounded, stream waits for free thread when all
+ * threads are reading.
+ * <p>
+ * Waiting of both sides is limited by timeout, I/O thread gives up when stream is not consumed and
+ * reading fails when source data are not read in time. Owner of the stream can cancel reading when
+ * stream is abandoned by consumer. Failure callback is notified by reading thread, source stream must
+ * not notify it by itself.
+ */
+public class ReadAheadInStream extends InputStream {
+
+    public static final int BUFFER_SIZE = 65536;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadAheadInStream.class);
+
+    private final ArrayDeque<ByteBuffer> filledChunks = new ArrayDeque<>();
+
+    private final ArrayDeque<ByteBuffer> freeChunks = new ArrayDeque<>();
+
+    private final InputStream source;
+
+    private final ReadableByteChannel sourceChannel;
+
+    private final BufferPool bufferPool;
+
+    private final DataSendFailureCallback failureCallback;
+
+    private final int maxChunks;
+
+    private final long timeoutNanos;
+
+    private int allocatedChunks;
+
+    private final byte[] singleByte = new byte[1];
+
+    private ByteBuffer currChunk;
+
+    private long available;
+
+    private Throwable sourceError;
+
+    private boolean sourceFinished;
+
+    private boolean closed;
+
+    private boolean cancelled;
+
+    private boolean finished;
+
+    /**
+     * @param source
+     *            source stream, read and closed by I/O thread
+     * @param available
+     *            total number of bytes in source stream
+     * @param maxBuffers
+     *            maximum number of prefetched buffers
+     * @param bufferPool
+     *            pool of prefetched buffers
+     * @param executor
+     *            executor of I/O threads, see {@link #createExecutor(int)}
+     * @param timeout
+     *            number of seconds each side waits for the other one
+     */
+    public ReadAheadInStream(InputStream source, long available, int maxBuffers, BufferPool bufferPool,
+            Executor executor, int timeout, DataSendFailureCallback failureCallback) {
+        this.source = source;
+        this.bufferPool = bufferPool;
+        // direct buffers are filled through channel
+        this.sourceChannel = bufferPool.isDirect() ? Channels.newChannel(source) : null;
+        this.available = available;
+        this.maxChunks = maxBuffers;
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeout);
+        this.failureCallback = failureCallback;
+
+        executor.execute(this::readSource);
+    }
+
+    /**
+     * Creates executor of I/O threads which can be shared by streams, idle threads are terminated.
+     * 
+     * @param maxThreads
+     *            maximum number of source streams read concurrently
+     */
+    public static ThreadPoolExecutor createExecutor(int maxThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "FileTransferReadAhead");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(singleByte, 0, 1);
+        if (n == 1) {
+            return Byte.toUnsignedInt(singleByte[0]);
+        }
+        return n;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Input stream already closed");
+        }
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        int read;
+        try {
+            read = readInternal(b, off, len);
+        } catch (Throwable t) {
+            // cancelled stream was abandoned by its owner
+            if (!isCancelled()) {
+                failureCallback.onDataSendFailed(t);
+            }
+            throw t;
+        }
+        // update available if not end of stream (-1)
+        if (read > 0) {
+            available -= read;
+        } else if (read < 0 && !finished) {
+            finished = true;
+            failureCallback.onDataSendFinished();
+        }
+        return read;
+    }
+
+    private int readInternal(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (currChunk == null) {
+            currChunk = takeFilledChunk();
+            if (currChunk == null) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, currChunk.remaining());
+        currChunk.get(b, off, n);
+        if (!currChunk.hasRemaining()) {
+            releaseChunk(currChunk);
+            currChunk = null;
+        }
+        return n;
+    }
+
+    /**
+     * @return Returns next filled chunk or null when end of source reached.
+     */
+    private synchronized ByteBuffer takeFilledChunk() throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (filledChunks.isEmpty()) {
+            if (sourceError != null) {
+                throw new IOException("Failed to read ahead source data", sourceError);
+            }
+            if (cancelled) {
+                throw new IOException("Reading of source data cancelled");
+            }
+            if (sourceFinished) {
+                return null;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                // I/O thread stops when it gets chance to run
+                sourceError = new IOException("Source data not read ahead in time");
+                releaseChunks();
+                continue;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reading of source data interrupted");
+            }
+        }
+        return filledChunks.poll();
+    }
+
+    private synchronized void releaseChunk(ByteBuffer chunk) {
+        if (closed || cancelled) {
+            bufferPool.release(chunk);
+            return;
+        }
+        freeChunks.add(chunk);
+        notifyAll();
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("Input stream already closed");
+        }
+        if (available > Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) available;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // chunk being filled is released by reader, reader closes source by itself
+        if (currChunk != null) {
+            bufferPool.release(currChunk);
+            currChunk = null;
+        }
+        releaseChunks();
+        notifyAll();
+    }
+
+    /**
+     * Cancels reading of source data when stream is abandoned, stream can be closed by consumer or
+     * by other thread. Subsequent reads fail. Chunk being read by consumer is released by consumer.
+     */
+    public synchronized void cancel() {
+        if (closed || cancelled) {
+            return;
+        }
+        cancelled = true;
+        releaseChunks();
+        notifyAll();
+    }
+
+    private synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return True when I/O thread must stop reading. Caller must ensure synchronization.
+     */
+    private boolean isReaderStopped() {
+        return closed || cancelled || sourceError != null;
+    }
+
+    private void releaseChunks() {
+        filledChunks.forEach(bufferPool::release);
+        filledChunks.clear();
+        freeChunks.forEach(bufferPool::release);
+        freeChunks.clear();
+    }
+
+    /**
+     * Reads source stream until end of data, failure, close or cancel.
+     */
+    private void readSource() {
+        try {
+            while (true) {
+                ByteBuffer chunk = takeFreeChunk();
+                if (chunk == null) {
+                    break; // stopped
+                }
+                if (!fillChunk(chunk)) {
+                    break;
+                }
+            }
+        } catch (Throwable t) {
+            synchronized (this) {
+                sourceError = t;
+                // stream cannot be completed
+                releaseChunks();
+                notifyAll();
+            }
+        } finally {
+            try {
+                source.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close read-ahead source", e);
+            }
+        }
+    }
+
+    /**
+     * @return Returns free chunk or null when reading was stopped.
+     */
+    private synchronized ByteBuffer takeFreeChunk() throws InterruptedException, IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (!isReaderStopped()) {
+            ByteBuffer chunk = freeChunks.poll();
+            if (chunk != null) {
+                return chunk;
+            }
+            if (allocatedChunks < maxChunks) {
+                allocatedChunks++;
+                return bufferPool.acquire(BUFFER_SIZE);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new IOException("Read-ahead data not consumed in time");
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return null;
+    }
+
+    /**
+     * @return Returns false when end of source reached.
+     */
+    private boolean fillChunk(ByteBuffer chunk) throws IOException {
+        chunk.clear().limit(BUFFER_SIZE);
+        boolean eof = false;
+        while (chunk.hasRemaining()) {
+            int n;
+            if (sourceChannel != null) {
+                n = sourceChannel.read(chunk);
+            } else {
+                n = source.read(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+                if (n > 0) {
+                    chunk.position(chunk.position() + n);
+                }
+            }
+            if (n < 0) {
+                eof = true;
+                break;
+            }
+        }
+        chunk.flip();
+        synchronized (this) {
+            if (isReaderStopped()) {
+                bufferPool.release(chunk);
+            } else if (chunk.hasRemaining()) {
+                filledChunks.add(chunk);
+            } else {
+                freeChunks.add(chunk);
+            }
+            sourceFinished = eof;
+            notifyAll();
+        }
+        return !eof;
+    }
+}
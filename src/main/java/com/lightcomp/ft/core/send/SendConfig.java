@@ -1,5 +1,9 @@
 package com.lightcomp.ft.core.send;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import com.lightcomp.ft.common.BufferPool;
 import com.lightcomp.ft.common.Checksum.Algorithm;
 
 public interface SendConfig {
@@ -14,8 +18,40 @@ public interface SendConfig {
      */
     int getMaxFrameBlocks();
 
+    /**
+     * @return Maximum size of file packed with other small files into single block, zero when files
+     *         are not packed.
+     */
+    long getMaxPackedFileSize();
+
     /**
      * @return Checksum algorithm.
      */
     Algorithm getChecksumAlg();
+
+    /**
+     * @return Limiter of concurrent checksum computations, null when not limited.
+     */
+    Semaphore getChecksumLimiter();
+
+    /**
+     * @return Number of buffers prefetched from source files by separate I/O thread, zero when data are
+     *         read by sending thread.
+     */
+    int getReadAheadBuffers();
+
+    /**
+     * @return Executor of read-ahead I/O threads shared by all frames.
+     */
+    Executor getReadAheadExecutor();
+
+    /**
+     * @return Number of seconds until read-ahead gives up waiting for source data or for consumer.
+     */
+    int getReadAheadTimeout();
+
+    /**
+     * @return Pool of data buffers.
+     */
+    BufferPool getBufferPool();
 }
@@ -1,5 +1,7 @@
 package com.lightcomp.ft.core.send;
 
+import java.io.IOException;
+
 import com.lightcomp.ft.xsd.v1.Frame;
 
 public interface SendFrameContext {
@@ -9,4 +11,15 @@ public interface SendFrameContext {
     boolean isLast();
 
     Frame prepareFrame(DataSendFailureCallback callback);
+
+    /**
+     * Prepares data of frame blocks, can run concurrently with sending of the frame.
+     */
+    void prepareData() throws IOException;
+
+    /**
+     * Releases data streams of prepared frame, called when frame was sent, its sending failed or
+     * frame is no longer kept for resend.
+     */
+    void releaseData();
 }
@@ -1,13 +1,17 @@
 package com.lightcomp.ft.core.send;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.Executor;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.lightcomp.ft.common.BufferPool;
+import com.lightcomp.ft.core.blocks.BinaryBlockWriter;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 import com.lightcomp.ft.xsd.v1.FrameBlock;
 import com.lightcomp.ft.xsd.v1.FrameBlocks;
 import com.lightcomp.ft.xsd.v1.Frame;
@@ -28,14 +32,42 @@ public class SendFrameContextImpl implements SendFrameContext {
 
     private final long maxFrameSize;
 
+    private final int readAheadBuffers;
+
+    private final BufferPool bufferPool;
+
+    private final Executor readAheadExecutor;
+
+    private final int readAheadTimeout;
+
+    private final BlockEncoding blockEncoding;
+
+    /**
+     * Data source of last prepared frame, previous one is cancelled when frame is resent.
+     */
+    private FrameInDataSource dataSource;
+
     private long dataSize;
 
     private boolean last;
 
     public SendFrameContextImpl(int seqNum, SendConfig config) {
+        this(seqNum, config, BlockEncoding.XML);
+    }
+
+    /**
+     * @param blockEncoding
+     *            encoding of frame blocks negotiated with receiver
+     */
+    public SendFrameContextImpl(int seqNum, SendConfig config, BlockEncoding blockEncoding) {
         this.seqNum = seqNum;
         this.maxFrameBlocks = config.getMaxFrameBlocks();
         this.maxFrameSize = config.getMaxFrameSize();
+        this.readAheadBuffers = config.getReadAheadBuffers();
+        this.bufferPool = config.getBufferPool();
+        this.readAheadExecutor = readAheadBuffers > 0 ? config.getReadAheadExecutor() : null;
+        this.readAheadTimeout = config.getReadAheadTimeout();
+        this.blockEncoding = blockEncoding;
     }
 
     @Override
@@ -87,15 +119,110 @@ public class SendFrameContextImpl implements SendFrameContext {
         frame.setDataSize(dataSize);
         frame.setLast(last);
 
-        // create frame blocks
-        FrameBlocks fbs = new FrameBlocks();
-        fbs.getDbsAndDesAndFbs().addAll(blocks);
-        frame.setBlocks(fbs);
+        List<BlockStreamProvider> providers = bsProviders;
+        if (blockEncoding == BlockEncoding.BINARY) {
+            // encoded blocks prefix frame data
+            byte[] encoded = encodeBlocks();
+            providers = new ArrayList<>(bsProviders.size() + 1);
+            providers.add(new EncodedBlocksProvider(encoded));
+            providers.addAll(bsProviders);
+            frame.setBlocksSize(encoded.length);
+            frame.setDataSize(encoded.length + dataSize);
+        } else {
+            // create frame blocks
+            FrameBlocks fbs = new FrameBlocks();
+            fbs.getDbsAndDesAndFbs().addAll(blocks);
+            frame.setBlocks(fbs);
+        }
 
         // set MTOM data source
-        FrameInDataSource ds = new FrameInDataSource(bsProviders, failureCallback);
+        FrameInDataSource ds = new FrameInDataSource(providers, failureCallback, readAheadBuffers, bufferPool,
+                readAheadExecutor, readAheadTimeout);
         frame.setData(new DataHandler(ds));
+        replaceDataSource(ds);
 
         return frame;
     }
+
+    @Override
+    public void releaseData() {
+        replaceDataSource(null);
+    }
+
+    private void replaceDataSource(FrameInDataSource ds) {
+        FrameInDataSource prevDs;
+        synchronized (this) {
+            prevDs = dataSource;
+            dataSource = ds;
+        }
+        if (prevDs != null) {
+            prevDs.cancel();
+        }
+    }
+
+    @Override
+    public void prepareData() throws IOException {
+        for (BlockStreamProvider bsp : bsProviders) {
+            bsp.prepare();
+        }
+    }
+
+    private byte[] encodeBlocks() {
+        BinaryBlockWriter writer = new BinaryBlockWriter(blocks.size() * 16);
+        for (FrameBlock block : blocks) {
+            writer.write(block);
+        }
+        return writer.toByteArray();
+    }
+
+    private static class EncodedBlocksProvider implements BlockStreamProvider {
+
+        private final byte[] encoded;
+
+        EncodedBlocksProvider(byte[] encoded) {
+            this.encoded = encoded;
+        }
+
+        @Override
+        public long getStreamSize() {
+            return encoded.length;
+        }
+
+        @Override
+        public BlockStream create() {
+            return new BlockStream() {
+
+                private int pos;
+
+                @Override
+                public void open() {
+                    pos = 0;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (pos == encoded.length) {
+                        return -1;
+                    }
+                    len = Math.min(len, encoded.length - pos);
+                    System.arraycopy(encoded, pos, b, off, len);
+                    pos += len;
+                    return len;
+                }
+
+                @Override
+                public void close() {
+                    // nothing to release
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "EncodedBlocksProvider [size=" + encoded.length + "]";
+        }
+    }
 }
@@ -0,0 +1,245 @@
+package com.lightcomp.ft.core.send.items;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lightcomp.ft.common.Checksum.Algorithm;
+import com.lightcomp.ft.common.RecordLog;
+
+/**
+ * Persistent cache of source file checksums. Entries are keyed by absolute file path and valid only
+ * while file size and last modification time are unchanged. Each entry records its checksum algorithm,
+ * checksum of other algorithm is not returned. Cache is stored as sidecar log in cache directory.
+ * <p>
+ * Number of entries is limited, least recently used entries are evicted. Failure to write log is
+ * only logged, cache is not required for transfer.
+ */
+public class ChecksumCache implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChecksumCache.class);
+
+    private static final int MAGIC = 0x46434332; // FCC2
+
+    private static final String LOG_FILE_NAME = "checksums.log";
+
+    private static final int MIN_COMPACT_RECORDS = 1000;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private RecordLog log;
+
+    private int obsoleteRecords;
+
+    private ChecksumCache(int maxEntries) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    // record of evicted entry is removed by compaction
+                    obsoleteRecords++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Opens cache, directory and log file are created when do not exist.
+     *
+     * @param cacheDir
+     *            directory of cache log, not-null
+     * @param maxEntries
+     *            maximum number of cached checksums, greater than zero
+     */
+    public static ChecksumCache open(Path cacheDir, int maxEntries) throws IOException {
+        Validate.notNull(cacheDir);
+        Validate.isTrue(maxEntries > 0);
+
+        Files.createDirectories(cacheDir);
+        ChecksumCache cache = new ChecksumCache(maxEntries);
+        cache.load(cacheDir.resolve(LOG_FILE_NAME));
+        return cache;
+    }
+
+    /**
+     * @return Cached checksum or null when file is not cached, was changed or its checksum was generated
+     *         by other algorithm.
+     */
+    public synchronized byte[] get(Path path, long size, long lastModified, Algorithm algorithm) {
+        checkOpen();
+
+        Entry entry = entries.get(toKey(path));
+        if (entry == null || entry.size != size || entry.lastModified != lastModified
+                || entry.algorithm != algorithm) {
+            return null;
+        }
+        return entry.checksum.clone();
+    }
+
+    /**
+     * Stores checksum of file with specified size and last modification time, previous checksum of file
+     * is replaced.
+     */
+    public synchronized void put(Path path, long size, long lastModified, Algorithm algorithm, byte[] checksum) {
+        Validate.isTrue(checksum.length == algorithm.getByteLen());
+        checkOpen();
+
+        String key = toKey(path);
+        Entry entry = new Entry(size, lastModified, algorithm, checksum.clone());
+        Entry prevEntry = entries.put(key, entry);
+        if (prevEntry != null) {
+            if (prevEntry.isSame(entry)) {
+                return;
+            }
+            obsoleteRecords++;
+        }
+        try {
+            log.append(entry.toBytes(key));
+        } catch (IOException e) {
+            // checksum remains cached in memory
+            logger.error("Failed to write checksum cache record, file=" + log.getLogFile() + ", path=" + path, e);
+            return;
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * @return Number of cached checksums.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Rewrites log without obsolete records.
+     */
+    public synchronized void compact() throws IOException {
+        checkOpen();
+
+        log.compact(writer -> {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writer.write(entry.getValue().toBytes(entry.getKey()));
+            }
+        });
+        obsoleteRecords = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+        entries.clear();
+    }
+
+    private void checkOpen() {
+        Validate.validState(log != null, "Checksum cache is closed");
+    }
+
+    private static String toKey(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private void load(Path logFile) throws IOException {
+        log = RecordLog.open(logFile, MAGIC, (position, data) -> {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            String key = in.readUTF();
+            Entry entry = Entry.read(in);
+            // later record replaces previous one, records of unknown algorithm are ignored
+            if (entry == null || entries.put(key, entry) != null) {
+                obsoleteRecords++;
+            }
+        });
+        obsoleteRecords += log.getSkippedRecords();
+        compactIfNeeded();
+    }
+
+    /**
+     * Compacts log when obsolete records prevail. Caller must ensure synchronization.
+     */
+    private void compactIfNeeded() {
+        if (obsoleteRecords < MIN_COMPACT_RECORDS || obsoleteRecords <= entries.size()) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            // log is still valid, compaction will be repeated
+            logger.error("Failed to compact checksum cache, file=" + log.getLogFile(), e);
+        }
+    }
+
+    private static class Entry {
+
+        final long size;
+
+        final long lastModified;
+
+        final Algorithm algorithm;
+
+        final byte[] checksum;
+
+        Entry(long size, long lastModified, Algorithm algorithm, byte[] checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.algorithm = algorithm;
+            this.checksum = checksum;
+        }
+
+        boolean isSame(Entry other) {
+            return size == other.size && lastModified == other.lastModified && algorithm == other.algorithm
+                    && Arrays.equals(checksum, other.checksum);
+        }
+
+        byte[] toBytes(String key) throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeUTF(key);
+            out.writeUTF(algorithm.name());
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeShort(checksum.length);
+            out.write(checksum);
+            out.flush();
+            return bos.toByteArray();
+        }
+
+        /**
+         * @return Returns entry or null when algorithm is unknown or checksum length does not match.
+         */
+        static Entry read(DataInputStream in) throws IOException {
+            String algName = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            byte[] checksum = new byte[in.readUnsignedShort()];
+            in.readFully(checksum);
+            Algorithm algorithm;
+            try {
+                algorithm = Algorithm.valueOf(algName);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (checksum.length != algorithm.getByteLen()) {
+                return null;
+            }
+            return new Entry(size, lastModified, algorithm, checksum);
+        }
+    }
+}
@@ -13,12 +13,23 @@ public class DirReader implements SourceItemReader {
 
 	private final Path path;
 
+	private final ChecksumCache checksumCache;
+
 	private Stream<SourceItem> res;
 
 	private Iterator<SourceItem> it;
 
 	public DirReader(Path path) {
+		this(path, null);
+	}
+
+	/**
+	 * @param checksumCache
+	 *            cache of file checksums used by read files, can be null
+	 */
+	public DirReader(Path path, ChecksumCache checksumCache) {
 		this.path = path;
+		this.checksumCache = checksumCache;
 	}
 
 	@Override
@@ -27,9 +38,9 @@ public class DirReader implements SourceItemReader {
 		try {
 			res = Files.list(path).<SourceItem>map(p -> {
 				if (Files.isDirectory(p)) {
-					return new BaseDir(p.getFileName().toString(), new DirReader(p));
+					return new BaseDir(p.getFileName().toString(), new DirReader(p, checksumCache));
 				} else {
-					return new SimpleFile(p);
+					return new SimpleFile(p, null, checksumCache);
 				}
 			});
 
@@ -7,6 +7,8 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import com.lightcomp.ft.common.Checksum.Algorithm;
+
 public class SimpleFile implements SourceFile {
 
 	/*
@@ -19,6 +21,18 @@ public class SimpleFile implements SourceFile {
      */
     private final String name;
 
+    /*
+     * Cache of file checksums, can be null
+     */
+    private final ChecksumCache checksumCache;
+
+    /*
+     * Size and last modification of file when cached checksum was requested
+     */
+    private long chksmSize = -1;
+
+    private long chksmLastModified;
+
     /**
      * Construct SimpleFile. Use last part of path as name
      * @param path to file
@@ -33,8 +47,19 @@ public class SimpleFile implements SourceFile {
      * @param name alternative name of file
      */
     public SimpleFile(Path path, String name) {
-    	this.path = path;
-    	this.name = name;
+        this(path, name, null);
+    }
+
+    /**
+     * Construct SimpleFile with checksum cache.
+     * @param path to file
+     * @param name alternative name of file, can be null
+     * @param checksumCache cache of file checksums, can be null
+     */
+    public SimpleFile(Path path, String name, ChecksumCache checksumCache) {
+        this.path = path;
+        this.name = name;
+        this.checksumCache = checksumCache;
     }
     
     @Override
@@ -84,6 +109,27 @@ public class SimpleFile implements SourceFile {
         return null;
     }
 
+    @Override
+    public byte[] getChecksum(Algorithm algorithm) {
+        if (checksumCache == null) {
+            return null;
+        }
+        chksmSize = getSize();
+        chksmLastModified = getLastModified();
+        return checksumCache.get(path, chksmSize, chksmLastModified, algorithm);
+    }
+
+    @Override
+    public void onChecksumGenerated(Algorithm algorithm, byte[] checksum) {
+        if (checksumCache == null || chksmSize < 0) {
+            return;
+        }
+        // checksum is not cached when file was changed during transfer
+        if (chksmSize == getSize() && chksmLastModified == getLastModified()) {
+            checksumCache.put(path, chksmSize, chksmLastModified, algorithm, checksum);
+        }
+    }
+
     @Override
     public ReadableByteChannel openChannel(long position) throws IOException {
     	SeekableByteChannel channel = Files.newByteChannel(path); //NOSONAR
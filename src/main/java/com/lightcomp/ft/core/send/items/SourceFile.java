@@ -3,6 +3,8 @@ package com.lightcomp.ft.core.send.items;
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
 
+import com.lightcomp.ft.common.Checksum.Algorithm;
+
 /**
  * Transfer source file.
  */
@@ -14,5 +16,20 @@ public interface SourceFile extends SourceItem {
 
     byte[] getChecksum();
 
+    /**
+     * @return Precomputed checksum of file data generated by specified algorithm or null when checksum
+     *         is generated during sending. Default implementation returns {@link #getChecksum()}.
+     */
+    default byte[] getChecksum(Algorithm algorithm) {
+        return getChecksum();
+    }
+
+    /**
+     * Called when checksum of file data was generated during sending, implementation can cache it for
+     * next transfers. Default implementation does nothing.
+     */
+    default void onChecksumGenerated(Algorithm algorithm, byte[] checksum) {
+    }
+
     ReadableByteChannel openChannel(long position) throws IOException;
 }
@@ -0,0 +1,135 @@
+package com.lightcomp.ft.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import com.lightcomp.ft.common.TaskExecutor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes transfer metrics to Micrometer registry. Data counters are monotonic, rates (bytes/s)
+ * are computed by registry backend. All meters are tagged by component, client and server sharing
+ * one registry must use different components.
+ * <p>
+ * Requires optional micrometer-core dependency.
+ */
+public class MicrometerTransferMetrics implements TransferMetrics {
+
+    public static final String PREFIX = "filetransfer.";
+
+    private final Map<Direction, AtomicInteger> activeTransfers = new EnumMap<>(Direction.class);
+
+    private final Map<Direction, Counter> dataCounters = new EnumMap<>(Direction.class);
+
+    private final Map<FrameStage, Timer> frameTimers = new EnumMap<>(FrameStage.class);
+
+    private final AtomicLong tempDataSize = new AtomicLong();
+
+    private final MeterRegistry registry;
+
+    private final Tags tags;
+
+    private final Counter busyCounter;
+
+    private final Counter busyRetryCounter;
+
+    private final Counter connectionRetryCounter;
+
+    /**
+     * @param registry
+     *            meter registry, not-null
+     * @param component
+     *            value of component tag, e.g. client or server, not-blank
+     */
+    public MicrometerTransferMetrics(MeterRegistry registry, String component) {
+        this.registry = Validate.notNull(registry);
+        this.tags = Tags.of("component", Validate.notBlank(component));
+
+        for (Direction direction : Direction.values()) {
+            Tags dirTags = tags.and("direction", toTagValue(direction));
+            AtomicInteger active = new AtomicInteger();
+            Gauge.builder(PREFIX + "transfers.active", active, AtomicInteger::get).tags(dirTags)
+                    .description("Number of active transfers").register(registry);
+            activeTransfers.put(direction, active);
+            dataCounters.put(direction, Counter.builder(PREFIX + "data").tags(dirTags).baseUnit("bytes")
+                    .description("Transferred file data").register(registry));
+        }
+        for (FrameStage stage : FrameStage.values()) {
+            frameTimers.put(stage, Timer.builder(PREFIX + "frame").tags(tags).tag("stage", toTagValue(stage))
+                    .description("Duration of frame stage").register(registry));
+        }
+        busyCounter = Counter.builder(PREFIX + "busy").tags(tags).description("Busy responses of server")
+                .register(registry);
+        busyRetryCounter = createRetryCounter("busy");
+        connectionRetryCounter = createRetryCounter("connection");
+        Gauge.builder(PREFIX + "temp.data", tempDataSize, AtomicLong::get).tags(tags).baseUnit("bytes")
+                .description("Frame data stored in temporary files").register(registry);
+    }
+
+    private Counter createRetryCounter(String cause) {
+        return Counter.builder(PREFIX + "retries").tags(tags).tag("cause", cause)
+                .description("Retried client operations").register(registry);
+    }
+
+    @Override
+    public void transferStarted(Direction direction) {
+        activeTransfers.get(direction).incrementAndGet();
+    }
+
+    @Override
+    public void transferTerminated(Direction direction) {
+        activeTransfers.get(direction).decrementAndGet();
+    }
+
+    @Override
+    public void dataTransferred(Direction direction, long size) {
+        dataCounters.get(direction).increment(size);
+    }
+
+    @Override
+    public void frameCompleted(FrameStage stage, long nanos) {
+        frameTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void busyResponse() {
+        busyCounter.increment();
+    }
+
+    @Override
+    public void operationRetried(boolean busy) {
+        if (busy) {
+            busyRetryCounter.increment();
+        } else {
+            connectionRetryCounter.increment();
+        }
+    }
+
+    @Override
+    public void tempDataChanged(long delta) {
+        tempDataSize.addAndGet(delta);
+    }
+
+    @Override
+    public void bindExecutor(TaskExecutor executor) {
+        Gauge.builder(PREFIX + "executor.queued", executor, TaskExecutor::getQueueSize).tags(tags)
+                .description("Tasks waiting for execution").register(registry);
+        Gauge.builder(PREFIX + "executor.active", executor, TaskExecutor::getActiveCount).tags(tags)
+                .description("Currently executed tasks").register(registry);
+    }
+
+    private static String toTagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
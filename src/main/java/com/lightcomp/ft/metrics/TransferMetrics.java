@@ -0,0 +1,96 @@
+package com.lightcomp.ft.metrics;
+
+import com.lightcomp.ft.common.TaskExecutor;
+
+/**
+ * Receives measurements of client or server transfers. Methods are called by transfer threads, some
+ * of them in synchronized blocks, implementation must be thread-safe and must not block.
+ */
+public interface TransferMetrics {
+
+    /**
+     * Metrics which ignore all measurements.
+     */
+    TransferMetrics NOOP = new TransferMetrics() {
+    };
+
+    enum Direction {
+        UPLOAD, DOWNLOAD
+    }
+
+    enum FrameStage {
+        /**
+         * Frame is built from source items.
+         */
+        BUILD,
+        /**
+         * Data of built frame are prepared before sending, e.g. checksums are precomputed.
+         */
+        PREPARE,
+        /**
+         * Received frame data are stored in memory buffer or temporary file.
+         */
+        SPOOL,
+        /**
+         * Received frame blocks are written to target files.
+         */
+        PROCESS
+    }
+
+    /**
+     * Transfer was initialized and became active.
+     */
+    default void transferStarted(Direction direction) {
+    }
+
+    /**
+     * Active transfer reached terminal state.
+     */
+    default void transferTerminated(Direction direction) {
+    }
+
+    /**
+     * File data were sent or received.
+     */
+    default void dataTransferred(Direction direction, long size) {
+    }
+
+    /**
+     * Frame stage was completed.
+     *
+     * @param nanos
+     *            duration of stage in nanoseconds
+     */
+    default void frameCompleted(FrameStage stage, long nanos) {
+    }
+
+    /**
+     * Server rejected request because transfer or server was busy.
+     */
+    default void busyResponse() {
+    }
+
+    /**
+     * Client operation failed and will be retried.
+     *
+     * @param busy
+     *            true when server was busy, false for connection failure
+     */
+    default void operationRetried(boolean busy) {
+    }
+
+    /**
+     * Size of frame data stored in temporary files has changed.
+     *
+     * @param delta
+     *            positive for stored data, negative for deleted data
+     */
+    default void tempDataChanged(long delta) {
+    }
+
+    /**
+     * Binds queue depth and active tasks of executor, called once when client or server starts.
+     */
+    default void bindExecutor(TaskExecutor executor) {
+    }
+}
@@ -26,7 +26,7 @@ public class EndpointFactory {
      * Returns WS API implementor, suitable for end-point publishing.
      */
     public Object getImplementor() {
-        return new FileTransferServiceImpl(transferManager);
+        return new FileTransferServiceImpl(transferManager, config.getMetrics(), config.getUploadWindowSize());
     }
 
     /**
@@ -1,19 +1,26 @@
 package com.lightcomp.ft.server;
 
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.lang3.Validate;
 
+import com.lightcomp.ft.common.BufferPool;
 import com.lightcomp.ft.common.Checksum.Algorithm;
 import com.lightcomp.ft.common.PathUtils;
 import com.lightcomp.ft.core.SimpleIdGenerator;
 import com.lightcomp.ft.core.TransferIdGenerator;
+import com.lightcomp.ft.core.recv.RecvConfig;
+import com.lightcomp.ft.core.send.ReadAheadInStream;
 import com.lightcomp.ft.core.send.SendConfig;
+import com.lightcomp.ft.metrics.TransferMetrics;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 
 /**
  * Server configuration.
  */
-public class ServerConfig implements SendConfig {
+public class ServerConfig implements SendConfig, RecvConfig {
 
     private final TransferStatusStorage statusStorage;
 
@@ -25,13 +32,57 @@ public class ServerConfig implements SendConfig {
 
     private int threadPoolSize = 5;
 
+    private int fileWriteThreads;
+
+    private boolean virtualThreads;
+
+    private int virtualThreadLimit = 1000;
+
+    private int checksumConcurrency;
+
+    private Semaphore checksumLimiter;
+
+    private int readAheadBuffers;
+
+    private int readAheadThreads = 32;
+
+    private Executor readAheadExecutor;
+
+    private int readAheadTimeout = 60;
+
+    private BufferPool bufferPool = BufferPool.getDefault();
+
+    private TransferMetrics metrics = TransferMetrics.NOOP;
+
     private int inactiveTimeout = 60 * 5;
 
     private long maxFrameSize = 10 * 1024 * 1024L;
 
     private int maxFrameBlocks = 10000;
 
+    private long maxPackedFileSize;
+
+    private BlockEncoding blockEncoding = BlockEncoding.BINARY;
+
+    private int maxMemoryFrameSize = 1024 * 1024;
+
+    private int uploadWindowSize = 1;
+
+    private int downloadWindowSize = 1;
+
+    private int uploadFrameCapacity = 10;
+
+    private int downloadFrameCapacity = 3;
+
+    private boolean prepareFrameData;
+
+    private long maxBufferedFrameData;
+
     private Algorithm checksumAlg = Algorithm.SHA_512;
+
+    private boolean preallocateFiles;
+
+    private boolean resumableUploads;
     
     private boolean soapLogging;
 
@@ -88,6 +139,164 @@ public class ServerConfig implements SendConfig {
         this.threadPoolSize = threadPoolSize;
     }
 
+    /**
+     * @return Number of threads writing small uploaded files concurrently, zero when files are written
+     *         by frame processing thread.
+     */
+    public int getFileWriteThreads() {
+        return fileWriteThreads;
+    }
+
+    /**
+     * Small files completed within received frame are written concurrently, directories are still
+     * created in sequence. Frame is confirmed after all its files are written.
+     * 
+     * @param fileWriteThreads
+     *            number of threads shared by all uploads, zero disables concurrent writing, default is
+     *            zero
+     */
+    public void setFileWriteThreads(int fileWriteThreads) {
+        Validate.isTrue(fileWriteThreads >= 0);
+        this.fileWriteThreads = fileWriteThreads;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Virtual threads are used only when supported by runtime (Java 21+), otherwise platform threads
+     * are used. Number of simultaneously running tasks is limited by virtual thread limit instead of
+     * thread pool size.
+     * 
+     * @param virtualThreads
+     *            when true tasks are executed by virtual threads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * @return Maximum of simultaneously running tasks when virtual threads are used.
+     */
+    public int getVirtualThreadLimit() {
+        return virtualThreadLimit;
+    }
+
+    /**
+     * @param virtualThreadLimit
+     *            maximum of simultaneously running tasks when virtual threads are used, greater than
+     *            zero, default is 1000
+     */
+    public void setVirtualThreadLimit(int virtualThreadLimit) {
+        Validate.isTrue(virtualThreadLimit > 0);
+        this.virtualThreadLimit = virtualThreadLimit;
+    }
+
+    public int getChecksumConcurrency() {
+        return checksumConcurrency;
+    }
+
+    /**
+     * Checksum computation is CPU bound, the limit is useful when many tasks are executed by virtual
+     * threads.
+     * 
+     * @param checksumConcurrency
+     *            maximum of simultaneous checksum computations, zero for unlimited
+     */
+    public void setChecksumConcurrency(int checksumConcurrency) {
+        Validate.isTrue(checksumConcurrency >= 0);
+        this.checksumConcurrency = checksumConcurrency;
+        this.checksumLimiter = checksumConcurrency > 0 ? new Semaphore(checksumConcurrency) : null;
+    }
+
+    @Override
+    public Semaphore getChecksumLimiter() {
+        return checksumLimiter;
+    }
+
+    @Override
+    public int getReadAheadBuffers() {
+        return readAheadBuffers;
+    }
+
+    /**
+     * @param readAheadBuffers
+     *            number of 64KB buffers prefetched from source files by separate I/O thread for each sent
+     *            frame, zero or greater, zero means data are read by sending thread (default)
+     */
+    public void setReadAheadBuffers(int readAheadBuffers) {
+        Validate.isTrue(readAheadBuffers >= 0);
+        this.readAheadBuffers = readAheadBuffers;
+    }
+
+    public int getReadAheadThreads() {
+        return readAheadThreads;
+    }
+
+    /**
+     * @param readAheadThreads
+     *            maximum number of I/O threads reading ahead source files, greater than zero, frames
+     *            wait for free thread when all threads are reading
+     */
+    public synchronized void setReadAheadThreads(int readAheadThreads) {
+        Validate.isTrue(readAheadThreads > 0);
+        this.readAheadThreads = readAheadThreads;
+        // idle threads of previous executor are terminated
+        this.readAheadExecutor = null;
+    }
+
+    @Override
+    public synchronized Executor getReadAheadExecutor() {
+        if (readAheadExecutor == null) {
+            readAheadExecutor = ReadAheadInStream.createExecutor(readAheadThreads);
+        }
+        return readAheadExecutor;
+    }
+
+    @Override
+    public int getReadAheadTimeout() {
+        return readAheadTimeout;
+    }
+
+    /**
+     * @param readAheadTimeout
+     *            number of seconds until read-ahead gives up waiting for source data or for sending
+     *            thread, greater than zero
+     */
+    public void setReadAheadTimeout(int readAheadTimeout) {
+        Validate.isTrue(readAheadTimeout > 0);
+        this.readAheadTimeout = readAheadTimeout;
+    }
+
+    @Override
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * @param bufferPool
+     *            pool of heap or direct data buffers, not-null, default is shared heap pool
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = Validate.notNull(bufferPool);
+    }
+
+    /**
+     * @return Metrics of server transfers.
+     */
+    public TransferMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics
+     *            metrics of server transfers, not-null, default ignores all measurements
+     */
+    public void setMetrics(TransferMetrics metrics) {
+        this.metrics = Validate.notNull(metrics);
+    }
+
     /**
      * @return Number of seconds until transfer is consider inactive.
      */
@@ -132,6 +341,170 @@ public class ServerConfig implements SendConfig {
         this.maxFrameBlocks = maxFrameBlocks;
     }
 
+    @Override
+    public long getMaxPackedFileSize() {
+        return maxPackedFileSize;
+    }
+
+    /**
+     * Small downloaded files of one directory are packed into single block with one checksum. Files are packed
+     * only when receiver supports it.
+     * 
+     * @param maxPackedFileSize
+     *            maximum size of packed file in bytes, zero disables packing, default is zero
+     */
+    public void setMaxPackedFileSize(long maxPackedFileSize) {
+        Validate.isTrue(maxPackedFileSize >= 0);
+        this.maxPackedFileSize = maxPackedFileSize;
+    }
+
+    /**
+     * @return Encoding of frame blocks offered to clients.
+     */
+    public BlockEncoding getBlockEncoding() {
+        return blockEncoding;
+    }
+
+    /**
+     * @param blockEncoding
+     *            encoding of frame blocks offered to clients, not-null, BINARY is used only when client
+     *            requests it, default is BINARY
+     */
+    public void setBlockEncoding(BlockEncoding blockEncoding) {
+        this.blockEncoding = Validate.notNull(blockEncoding);
+    }
+
+    /**
+     * @return Maximum size of received frame which can be buffered in memory.
+     */
+    public int getMaxMemoryFrameSize() {
+        return maxMemoryFrameSize;
+    }
+
+    /**
+     * Received frame is processed directly from request when no other frame is processed, otherwise
+     * the frame data are buffered in memory or stored in work directory when exceeds this limit.
+     * 
+     * @param maxMemoryFrameSize
+     *            maximum size of frame buffered in memory, zero or greater
+     */
+    public void setMaxMemoryFrameSize(int maxMemoryFrameSize) {
+        Validate.isTrue(maxMemoryFrameSize >= 0);
+        this.maxMemoryFrameSize = maxMemoryFrameSize;
+    }
+
+    /**
+     * @return Maximum number of upload frames received ahead of last continuously received frame.
+     */
+    public int getUploadWindowSize() {
+        return uploadWindowSize;
+    }
+
+    /**
+     * Frames within the window can be received concurrently and out of order, server still processes
+     * them in sequence. Window is sent to clients which limit their upload window by it.
+     * 
+     * @param uploadWindowSize
+     *            maximum number of upload frames received ahead, greater than zero
+     */
+    public void setUploadWindowSize(int uploadWindowSize) {
+        Validate.isTrue(uploadWindowSize > 0);
+        this.uploadWindowSize = uploadWindowSize;
+    }
+
+    public int getDownloadWindowSize() {
+        return downloadWindowSize;
+    }
+
+    /**
+     * Frames within the window are kept after sending, client can request them concurrently or resend
+     * them during recovery. Window must not be smaller than window of connected clients, frames
+     * requested ahead within the window are prepared when download frame capacity allows.
+     * 
+     * @param downloadWindowSize
+     *            maximum number of download frames requested ahead, greater than zero
+     */
+    public void setDownloadWindowSize(int downloadWindowSize) {
+        Validate.isTrue(downloadWindowSize > 0);
+        this.downloadWindowSize = downloadWindowSize;
+    }
+
+    /**
+     * @return Maximum number of upload frames received or waiting for processing per transfer.
+     */
+    public int getUploadFrameCapacity() {
+        return uploadFrameCapacity;
+    }
+
+    /**
+     * @param uploadFrameCapacity
+     *            maximum number of upload frames received or waiting for processing per transfer,
+     *            greater than zero
+     */
+    public void setUploadFrameCapacity(int uploadFrameCapacity) {
+        Validate.isTrue(uploadFrameCapacity > 0);
+        this.uploadFrameCapacity = uploadFrameCapacity;
+    }
+
+    /**
+     * @return Maximum number of download frames prepared ahead per transfer.
+     */
+    public int getDownloadFrameCapacity() {
+        return downloadFrameCapacity;
+    }
+
+    /**
+     * Number of frames prepared ahead is adapted per transfer up to this capacity according to rate of
+     * client requests and frame build time.
+     * 
+     * @param downloadFrameCapacity
+     *            maximum number of download frames prepared ahead per transfer, greater than zero
+     */
+    public void setDownloadFrameCapacity(int downloadFrameCapacity) {
+        Validate.isTrue(downloadFrameCapacity > 0);
+        this.downloadFrameCapacity = downloadFrameCapacity;
+    }
+
+    /**
+     * @return True when checksums of download frames are precomputed ahead of sending.
+     */
+    public boolean isPrepareFrameData() {
+        return prepareFrameData;
+    }
+
+    /**
+     * Data of frames prepared ahead are read by separate task which precomputes their checksums, data are
+     * read again when frame is sent. Useful only when checksum computation is slower than reading of
+     * source data, e.g. data are cached in memory.
+     * 
+     * @param prepareFrameData
+     *            when true checksums of download frames are precomputed, disabled by default
+     */
+    public void setPrepareFrameData(boolean prepareFrameData) {
+        this.prepareFrameData = prepareFrameData;
+    }
+
+    /**
+     * @return Maximum size of upload frame data buffered in memory or work directory by all
+     *         transfers, zero when unlimited.
+     */
+    public long getMaxBufferedFrameData() {
+        return maxBufferedFrameData;
+    }
+
+    /**
+     * Upload frame which cannot be buffered within the limit is refused as busy until other frames
+     * are processed. Frames processed directly from request are not counted.
+     * 
+     * @param maxBufferedFrameData
+     *            maximum size of buffered upload frame data in bytes for all transfers, zero for
+     *            unlimited
+     */
+    public void setMaxBufferedFrameData(long maxBufferedFrameData) {
+        Validate.isTrue(maxBufferedFrameData >= 0);
+        this.maxBufferedFrameData = maxBufferedFrameData;
+    }
+
     @Override
     public Algorithm getChecksumAlg() {
         return checksumAlg;
@@ -139,12 +512,41 @@ public class ServerConfig implements SendConfig {
 
     /**
      * @param checksumAlg
-     *            checksum algorithm, not-null
+     *            checksum algorithm, not-null, client must use same algorithm
      */
     public void setChecksumAlg(Algorithm checksumAlg) {
         this.checksumAlg = Validate.notNull(checksumAlg);
     }
 
+    @Override
+    public boolean isPreallocateFiles() {
+        return preallocateFiles;
+    }
+
+    /**
+     * @param preallocateFiles
+     *            when true received file is extended to its declared size before data are written
+     */
+    public void setPreallocateFiles(boolean preallocateFiles) {
+        this.preallocateFiles = preallocateFiles;
+    }
+
+    public boolean isResumableUploads() {
+        return resumableUploads;
+    }
+
+    /**
+     * Progress of upload is saved to work directory after each processed frame. Failed or canceled
+     * upload can be resumed by client also after server restart, {@link TransferHandler} must
+     * provide data handler of resumed transfer.
+     * 
+     * @param resumableUploads
+     *            when true uploads can be resumed
+     */
+    public void setResumableUploads(boolean resumableUploads) {
+        this.resumableUploads = resumableUploads;
+    }
+
     public boolean isSoapLogging() {
         return soapLogging;
     }
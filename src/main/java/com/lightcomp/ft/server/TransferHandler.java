@@ -17,4 +17,16 @@ public interface TransferHandler {
      * @return Returns data handler or null when rejected.
      */
     TransferDataHandler onTransferBegin(String transferId, GenericDataType request);
+
+    /**
+     * Creates data handler for resumed upload, called only when resumable uploads are enabled. Handler
+     * must use upload directory of interrupted transfer.
+     * 
+     * @param transferId
+     *            id of interrupted transfer, not-null
+     * @return Returns data handler or null when rejected.
+     */
+    default UploadHandler onTransferResume(String transferId) {
+        return null;
+    }
 }
@@ -6,7 +6,8 @@ package com.lightcomp.ft.server;
 public interface TransferStatusStorage {
 
     /**
-     * Save terminated transfer
+     * Save terminated transfer. Resumed transfer can be terminated again, its status replaces the
+     * previous one.
      * 
      * @param transferId
      * @param status
@@ -2,7 +2,12 @@ package com.lightcomp.ft.server.internal;
 
 import com.lightcomp.ft.core.send.FrameBuilder;
 import com.lightcomp.ft.core.send.SendFrameContext;
+import com.lightcomp.ft.metrics.TransferMetrics;
+import com.lightcomp.ft.metrics.TransferMetrics.FrameStage;
 
+/**
+ * Plans download frames in sequence. Data of planned frames can be prepared by separate tasks.
+ */
 public class DwnldFrameWorker implements Runnable {
 
     private enum State {
@@ -13,11 +18,14 @@ public class DwnldFrameWorker implements Runnable {
 
     private final FrameBuilder frameBuilder;
 
+    private final TransferMetrics metrics;
+
     private State state = State.RUNNING;
 
-    public DwnldFrameWorker(DwnldTransfer transfer, FrameBuilder frameBuilder) {
+    public DwnldFrameWorker(DwnldTransfer transfer, FrameBuilder frameBuilder, TransferMetrics metrics) {
         this.transfer = transfer;
         this.frameBuilder = frameBuilder;
+        this.metrics = metrics;
     }
 
     public synchronized void terminate() {
@@ -45,8 +53,11 @@ public class DwnldFrameWorker implements Runnable {
 				}
 			}
 			try {
+				long start = System.nanoTime();
 				SendFrameContext frameCtx = frameBuilder.build();
-				if (!transfer.frameProcessed(frameCtx)) {
+				long buildTime = System.nanoTime() - start;
+				metrics.frameCompleted(FrameStage.BUILD, buildTime);
+				if (!transfer.frameProcessed(frameCtx, buildTime)) {
 					break; // worker terminated
 				}
 			} catch (Throwable t) {
@@ -3,6 +3,8 @@ package com.lightcomp.ft.server.internal;
 import java.util.LinkedList;
 
 import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.lightcomp.ft.common.TaskExecutor;
 import com.lightcomp.ft.core.send.DataSendFailureCallback;
@@ -10,21 +12,29 @@ import com.lightcomp.ft.core.send.FrameBuilder;
 import com.lightcomp.ft.core.send.SendFrameContext;
 import com.lightcomp.ft.core.send.SendProgressInfo;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.TransferMetrics.Direction;
+import com.lightcomp.ft.metrics.TransferMetrics.FrameStage;
 import com.lightcomp.ft.server.DownloadHandler;
 import com.lightcomp.ft.server.ServerConfig;
 import com.lightcomp.ft.server.TransferState;
 import com.lightcomp.ft.server.TransferStatus;
 import com.lightcomp.ft.wsdl.v1.FileTransferException;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 import com.lightcomp.ft.xsd.v1.ErrorCode;
 import com.lightcomp.ft.xsd.v1.Frame;
 import com.lightcomp.ft.xsd.v1.GenericDataType;
 
 public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, DataSendFailureCallback {
 
-	public static final int FRAME_CAPACITY = 3;
+	private static final Logger logger = LoggerFactory.getLogger(DwnldTransfer.class);
 
 	private final LinkedList<SendFrameContext> frameQueue = new LinkedList<>();
 
+	/**
+	 * Frames sent before current frame, kept for resend within download window.
+	 */
+	private final LinkedList<SendFrameContext> sentFrames = new LinkedList<>();
+
 	// passed to asynchronous workers, do not use locally !
 	private final FrameBuilder frameBuilder;
 
@@ -34,9 +44,22 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 
 	private int lastFrameSeqNum = -1;
 
-	public DwnldTransfer(String transferId, DownloadHandler handler, ServerConfig config, TaskExecutor executor) {
+	/**
+	 * Moving average of frame build time in nanoseconds.
+	 */
+	private long avgBuildTime;
+
+	/**
+	 * Moving average of interval between client frame requests in nanoseconds.
+	 */
+	private long avgFetchInterval;
+
+	private long lastFetchTime;
+
+	public DwnldTransfer(String transferId, DownloadHandler handler, ServerConfig config, TaskExecutor executor,
+			BlockEncoding blockEncoding, boolean packFiles) {
 		super(transferId, handler, config, executor);
-		this.frameBuilder = new FrameBuilder(this, config);
+		this.frameBuilder = new FrameBuilder(this, config, blockEncoding, packFiles);
 	}
 
 	@Override
@@ -60,6 +83,7 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 			// copy status in synch block
 			ts = status.copy();
 		}
+		metrics.dataTransferred(Direction.DOWNLOAD, size);
 		// exception is caught by onDataSendFailed(Throwable)
 		onTransferProgress(ts);
 	}
@@ -147,25 +171,40 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 			Validate.isTrue(currFrame.getSeqNum() == seqNum);
 			return new DwnldFrameResult(currFrame);
 		}
-		// checks number of next frame
-		if (trSeqNum != seqNum - 1) {
+		// return result if frame was sent within window
+		if (seqNum < trSeqNum) {
+			for (SendFrameContext frameCtx : sentFrames) {
+				if (frameCtx.getSeqNum() == seqNum) {
+					return new DwnldFrameResult(frameCtx);
+				}
+			}
+		}
+		// checks number of next frame, client can request frames ahead within window
+		if (seqNum <= trSeqNum || seqNum > trSeqNum + config.getDownloadWindowSize()) {
 			ServerError err = new ServerError("Failed to send frame, invalid frame number", this)
 					.addParam("lastSeqNum", currFrame.getSeqNum()).addParam("receivedSeqNum", seqNum);
 			return new DwnldFrameResult(err);
 		}
-		// return result if first request
-		if (trSeqNum == 0) {
-			Validate.isTrue(currFrame.getSeqNum() == 1);
-			status.incrementTransferedSeqNum();
-			return new DwnldFrameResult(currFrame, status.copy());
-		}
-		// check if current is not last
-		if (currFrame.isLast()) {
-			ServerError err = new ServerError("Requested frame exceeds last frame of transfer", this);
+		// client requests frames ahead until last frame is received
+		if (lastFrameSeqNum >= 0 && seqNum > lastFrameSeqNum) {
+			ServerError err = new ServerError("Requested frame exceeds last frame of transfer", this)
+					.setCode(ErrorCode.BUSY);
 			return new DwnldFrameResult(err);
 		}
-		// prepare next frame
-		return moveToNextFrame(seqNum);
+		// frame ahead is sent only when all previous frames are prepared
+		if (seqNum > trSeqNum + 1) {
+			SendFrameContext lastPrepared = frameQueue.isEmpty() ? currFrame : frameQueue.getLast();
+			if (lastPrepared.getSeqNum() < seqNum) {
+				ServerError err = new ServerError("Transfer is busy", this).setCode(ErrorCode.BUSY);
+				return new DwnldFrameResult(err);
+			}
+		}
+		// move to requested frame, skipped frames are kept for resend
+		DwnldFrameResult result;
+		do {
+			result = moveToNextFrame(status.getTransferedSeqNum() + 1);
+		} while (result.getError() == null && status.getTransferedSeqNum() < seqNum);
+		return result;
 	}
 
 	/**
@@ -173,9 +212,10 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 	 * must ensure synchronization.
 	 */
 	private DwnldFrameResult moveToNextFrame(int seqNum) {
-		// next can be already set to current by worker
+		// first frame or next already set to current by worker
 		if (currFrame.getSeqNum() != seqNum) {
-			// reset old current
+			// keep old current for resend and reset
+			addSentFrame(currFrame);
 			currFrame = null;
 			// if queue is empty wait for worker
 			if (frameQueue.isEmpty()) {
@@ -186,12 +226,30 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 			currFrame = frameQueue.removeFirst();
 			prepareWorker();
 		}
+		// update fetch rate of client
+		long now = System.nanoTime();
+		if (lastFetchTime > 0) {
+			avgFetchInterval = updateAverage(avgFetchInterval, now - lastFetchTime);
+		}
+		lastFetchTime = now;
 		// update last frame
 		status.incrementTransferedSeqNum();
 		// return current frame with copy of changed status
 		return new DwnldFrameResult(currFrame, status.copy());
 	}
 
+	/**
+	 * Adds frame to sent frames, only frames within download window are kept. Caller
+	 * must ensure synchronization.
+	 */
+	private void addSentFrame(SendFrameContext frameCtx) {
+		sentFrames.addLast(frameCtx);
+		// window includes current frame
+		while (sentFrames.size() >= config.getDownloadWindowSize()) {
+			sentFrames.removeFirst().releaseData();
+		}
+	}
+
 	/**
 	 * Checks current worker and prepares new one if needed. Caller must ensure
 	 * synchronization.
@@ -199,19 +257,46 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 	private void prepareWorker() {
 		Validate.isTrue(!status.getState().isTerminal());
 		// create new worker when needed
-		if (frameWorker == null && lastFrameSeqNum < 0) {
-			frameWorker = new DwnldFrameWorker(this, frameBuilder);
+		if (frameWorker == null && lastFrameSeqNum < 0 && frameQueue.size() < getFrameDepth()) {
+			frameWorker = new DwnldFrameWorker(this, frameBuilder, metrics);
 			executor.addTask(frameWorker);
 		}
 	}
 
+	/**
+	 * Number of frames prepared ahead. Slow worker compared to client requests
+	 * prepares more frames, up to configured capacity. Frames requested ahead
+	 * within download window are always prepared when capacity allows. Caller
+	 * must ensure synchronization.
+	 */
+	private int getFrameDepth() {
+		int capacity = config.getDownloadFrameCapacity();
+		if (avgBuildTime == 0 || avgFetchInterval == 0) {
+			return capacity;
+		}
+		long depth = Math.max(avgBuildTime / avgFetchInterval + 1, config.getDownloadWindowSize());
+		return (int) Math.min(depth, capacity);
+	}
+
+	/**
+	 * Exponential moving average with weight 1/4 for new sample.
+	 */
+	private static long updateAverage(long avg, long sample) {
+		if (avg == 0) {
+			return Math.max(sample, 1);
+		}
+		return Math.max(avg + (sample - avg) / 4, 1);
+	}
+
 	/**
 	 * Handles processed frame.
 	 * 
+	 * @param buildTime
+	 *            frame build time in nanoseconds
 	 * @return True when worker can process next frame. False when worker must
 	 *         terminate.
 	 */
-	boolean frameProcessed(SendFrameContext frameCtx) {
+	boolean frameProcessed(SendFrameContext frameCtx, long buildTime) {
 		boolean processNext;
 		TransferStatus ts;
 		synchronized (this) {
@@ -220,17 +305,46 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 				frameWorker = null;
 				return false;
 			}
+			avgBuildTime = updateAverage(avgBuildTime, buildTime);
 			processNext = frameProcessedInternal(frameCtx);
 			// update progress
 			status.incrementProcessedSeqNum();
 			// copy status in synch block
 			ts = status.copy();
 		}
+		schedulePrepare(frameCtx);
 		// exception is caught by worker
 		onTransferProgress(ts);
 		return processNext;
 	}
 
+	/**
+	 * Frame data are prepared by separate task when enabled by configuration,
+	 * worker continues with planning of next frame. Frame can be sent before its
+	 * data are prepared.
+	 */
+	private void schedulePrepare(SendFrameContext frameCtx) {
+		if (!config.isPrepareFrameData() || !executor.isRunning()) {
+			return;
+		}
+		executor.addTask(() -> {
+			synchronized (this) {
+				if (status.getState().isTerminal()) {
+					return;
+				}
+			}
+			long start = System.nanoTime();
+			try {
+				frameCtx.prepareData();
+				metrics.frameCompleted(FrameStage.PREPARE, System.nanoTime() - start);
+			} catch (Throwable t) {
+				// sending reads the data again and reports failure
+				new ServerError("Failed to prepare frame data", this).addParam("seqNum", frameCtx.getSeqNum())
+						.setCause(t).log(logger);
+			}
+		});
+	}
+
 	void frameProcessingFailed(ServerError err) {
 		transferFailed(err);
 		// terminated transfer -> no need to sync
@@ -248,7 +362,7 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 		if (currFrame == null) {
 			currFrame = frameCtx;
 		} else {
-			Validate.isTrue(frameQueue.size() < FRAME_CAPACITY);
+			Validate.isTrue(frameQueue.size() < config.getDownloadFrameCapacity());
 			frameQueue.addLast(frameCtx);
 		}
 		// terminate worker when frame is last
@@ -258,7 +372,7 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 			return false;
 		}
 		// terminate worker when queue is full
-		if (frameQueue.size() >= FRAME_CAPACITY) {
+		if (frameQueue.size() >= getFrameDepth()) {
 			frameWorker = null;
 			return false;
 		}
@@ -275,5 +389,12 @@ public class DwnldTransfer extends ServerTransfer implements SendProgressInfo, D
 		if (frameBuilder!=null) {
 			frameBuilder.closeBuilder();
 		}
+		// cancel read-ahead of abandoned frame data
+		synchronized (this) {
+			sentFrames.forEach(SendFrameContext::releaseData);
+			if (currFrame != null) {
+				currFrame.releaseData();
+			}
+		}
 	}
 }
\ No newline at end of file
@@ -1,15 +1,19 @@
 package com.lightcomp.ft.server.internal;
 
+import com.lightcomp.ft.metrics.TransferMetrics;
 import com.lightcomp.ft.server.TransferState;
 import com.lightcomp.ft.wsdl.v1.FileTransferException;
 import com.lightcomp.ft.wsdl.v1.FileTransferService;
 import com.lightcomp.ft.xsd.v1.AbortRequest;
+import com.lightcomp.ft.xsd.v1.BeginRequest;
 import com.lightcomp.ft.xsd.v1.BeginResponse;
+import com.lightcomp.ft.xsd.v1.ErrorCode;
 import com.lightcomp.ft.xsd.v1.FileTransferState;
 import com.lightcomp.ft.xsd.v1.FinishRequest;
 import com.lightcomp.ft.xsd.v1.Frame;
 import com.lightcomp.ft.xsd.v1.GenericDataType;
 import com.lightcomp.ft.xsd.v1.ReceiveRequest;
+import com.lightcomp.ft.xsd.v1.ResumeRequest;
 import com.lightcomp.ft.xsd.v1.SendRequest;
 import com.lightcomp.ft.xsd.v1.TransferStatus;
 import com.lightcomp.ft.xsd.v1.TransferStatusRequest;
@@ -21,41 +25,94 @@ public class FileTransferServiceImpl implements FileTransferService {
 
     private final TransferManager manager;
 
-    public FileTransferServiceImpl(TransferManager manager) {
+    private final TransferMetrics metrics;
+
+    private final int uploadWindowSize;
+
+    public FileTransferServiceImpl(TransferManager manager, TransferMetrics metrics, int uploadWindowSize) {
         this.manager = manager;
+        this.metrics = metrics;
+        this.uploadWindowSize = uploadWindowSize;
     }
 
     @Override
-    public BeginResponse begin(GenericDataType beginRequest) throws FileTransferException {
-        String transferId = manager.createTransferAsync(beginRequest);
-        BeginResponse br = new BeginResponse();
-        br.setTransferId(transferId);
-        return br;
+    public BeginResponse begin(BeginRequest beginRequest) throws FileTransferException {
+        return manager.createTransferAsync(beginRequest);
     }
 
     @Override
     public Frame receive(ReceiveRequest receiveRequest) throws FileTransferException {
-        Transfer transfer = manager.getTransfer(receiveRequest.getTransferId());
-        return transfer.sendFrame(receiveRequest.getFrameSeqNum());
+        try {
+            Transfer transfer = manager.getTransfer(receiveRequest.getTransferId());
+            return transfer.sendFrame(receiveRequest.getFrameSeqNum());
+        } catch (FileTransferException e) {
+            throw countBusy(e);
+        }
     }
 
     @Override
     public void send(SendRequest sendRequest) throws FileTransferException {
-        Transfer transfer = manager.getTransfer(sendRequest.getTransferId());
-        transfer.recvFrame(sendRequest.getFrame());
+        try {
+            Transfer transfer = manager.getTransfer(sendRequest.getTransferId());
+            transfer.recvFrame(sendRequest.getFrame());
+        } catch (FileTransferException e) {
+            throw countBusy(e);
+        }
     }
 
     @Override
     public GenericDataType finish(FinishRequest finishRequest) throws FileTransferException {
-        Transfer transfer = manager.getTransfer(finishRequest.getTransferId());
-        return transfer.finish();
+        try {
+            Transfer transfer = manager.getTransfer(finishRequest.getTransferId());
+            return transfer.finish();
+        } catch (FileTransferException e) {
+            throw countBusy(e);
+        }
     }
 
     @Override
     public TransferStatus status(TransferStatusRequest statusRequest) throws FileTransferException {
-        Transfer transfer = manager.getTransfer(statusRequest.getTransferId());
+        try {
+            Transfer transfer = manager.getTransfer(statusRequest.getTransferId());
+            return convertStatus(transfer.getConfirmedStatus());
+        } catch (FileTransferException e) {
+            throw countBusy(e);
+        }
+    }
+
+    @Override
+    public TransferStatus resume(ResumeRequest resumeRequest) throws FileTransferException {
+        try {
+            TransferStatus ts = convertStatus(manager.resumeTransfer(resumeRequest.getTransferId()));
+            // client limits its upload window by server
+            ts.setUploadWindow(uploadWindowSize);
+            return ts;
+        } catch (FileTransferException e) {
+            throw countBusy(e);
+        }
+    }
 
-        com.lightcomp.ft.server.TransferStatus cs = transfer.getConfirmedStatus();
+    @Override
+    public void abort(AbortRequest abortRequest) throws FileTransferException {
+        try {
+            Transfer transfer = manager.getTransfer(abortRequest.getTransferId());
+            transfer.abort();
+        } catch (FileTransferException e) {
+            throw countBusy(e);
+        }
+    }
+
+    /**
+     * Counts busy response, exception is returned for rethrow.
+     */
+    private FileTransferException countBusy(FileTransferException e) {
+        if (e.getFaultInfo() != null && e.getFaultInfo().getErrorCode() == ErrorCode.BUSY) {
+            metrics.busyResponse();
+        }
+        return e;
+    }
+
+    private static TransferStatus convertStatus(com.lightcomp.ft.server.TransferStatus cs) {
         TransferStatus ts = new TransferStatus();
         ts.setLastFrameSeqNum(cs.getTransferedSeqNum());
         ts.setResp(cs.getResponse());
@@ -63,12 +120,6 @@ public class FileTransferServiceImpl implements FileTransferService {
         return ts;
     }
 
-    @Override
-    public void abort(AbortRequest abortRequest) throws FileTransferException {
-        Transfer transfer = manager.getTransfer(abortRequest.getTransferId());
-        transfer.abort();
-    }
-
     private static FileTransferState convertState(TransferState state) {
         switch (state) {
         case STARTED:
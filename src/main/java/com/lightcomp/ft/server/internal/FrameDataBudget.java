@@ -0,0 +1,41 @@
+package com.lightcomp.ft.server.internal;
+
+/**
+ * Limits size of frame data buffered by all transfers of server.
+ */
+public class FrameDataBudget {
+
+    private final long limit;
+
+    private long used;
+
+    /**
+     * @param limit
+     *            maximum size of buffered data in bytes, zero for unlimited
+     */
+    public FrameDataBudget(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Reserves data size when enough budget is available. Single frame is always accepted when
+     * nothing is reserved.
+     * 
+     * @return Returns true when size was reserved.
+     */
+    public synchronized boolean reserve(long size) {
+        if (limit > 0 && used > 0 && used + size > limit) {
+            return false;
+        }
+        used += size;
+        return true;
+    }
+
+    public synchronized void release(long size) {
+        used -= size;
+    }
+
+    public synchronized long getUsed() {
+        return used;
+    }
+}
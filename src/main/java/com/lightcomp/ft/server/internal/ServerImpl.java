@@ -1,12 +1,19 @@
 package com.lightcomp.ft.server.internal;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -17,6 +24,8 @@ import com.lightcomp.ft.common.TaskExecutor;
 import com.lightcomp.ft.core.TransferIdGenerator;
 import com.lightcomp.ft.exception.TransferExBuilder;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.TransferMetrics;
+import com.lightcomp.ft.metrics.TransferMetrics.Direction;
 import com.lightcomp.ft.server.DownloadHandler;
 import com.lightcomp.ft.server.EndpointFactory;
 import com.lightcomp.ft.server.Server;
@@ -24,12 +33,15 @@ import com.lightcomp.ft.server.ServerConfig;
 import com.lightcomp.ft.server.TransferDataHandler;
 import com.lightcomp.ft.server.TransferDataHandler.Mode;
 import com.lightcomp.ft.server.TransferHandler;
+import com.lightcomp.ft.server.TransferState;
 import com.lightcomp.ft.server.TransferStatus;
 import com.lightcomp.ft.server.TransferStatusStorage;
 import com.lightcomp.ft.server.UploadHandler;
 import com.lightcomp.ft.wsdl.v1.FileTransferException;
+import com.lightcomp.ft.xsd.v1.BeginRequest;
+import com.lightcomp.ft.xsd.v1.BeginResponse;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 import com.lightcomp.ft.xsd.v1.ErrorCode;
-import com.lightcomp.ft.xsd.v1.GenericDataType;
 
 public class ServerImpl implements Server, TransferManager {
 
@@ -42,30 +54,68 @@ public class ServerImpl implements Server, TransferManager {
         INIT, RUNNING, STOPPING, TERMINATED
     }
 
-    private final Map<String, ServerTransfer> transferIdMap = new HashMap<>();
+    /**
+     * Registry of initialized transfers, lookup is lock-free.
+     */
+    private final ConcurrentMap<String, ServerTransfer> transferIdMap = new ConcurrentHashMap<>();
+
+    /**
+     * Transfers in creation, id is removed after transfer is published to registry.
+     */
+    private final Set<String> newTransferIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Inactivity checks ordered by deadline, check is rescheduled when transfer was active meanwhile.
+     */
+    private final DelayQueue<InactivityCheck> inactivityChecks = new DelayQueue<>();
 
-    private final Set<String> newTransferIds = new HashSet<>();
+    /**
+     * Pending inactivity check of each transfer, queued check which is not pending is discarded.
+     */
+    private final ConcurrentMap<String, InactivityCheck> pendingChecks = new ConcurrentHashMap<>();
+
+    /**
+     * Transfers which reached terminal state and wait for housekeeping.
+     */
+    private final Queue<ServerTransfer> terminatedTransfers = new ConcurrentLinkedQueue<>();
 
     private final ServerConfig config;
 
     private final TaskExecutor executor;
 
+    /**
+     * Executor of concurrent file writes, null when disabled. Frame workers wait for its tasks, they
+     * cannot share one executor.
+     */
+    private final TaskExecutor fileWriteExecutor;
+
     private final TransferIdGenerator idGenerator;
 
     private final TransferHandler handler;
 
     private final TransferStatusStorage statusStorage;
 
+    private final FrameDataBudget dataBudget;
+
+    private final TransferMetrics metrics;
+
     private final long wakeupInterval;
 
-    private State state = State.INIT;
+    private volatile State state = State.INIT;
 
     public ServerImpl(ServerConfig config) {
         this.config = config;
-        this.executor = new TaskExecutor(config.getThreadPoolSize(), "server");
+        this.executor = new TaskExecutor(config.getThreadPoolSize(), "server", config.isVirtualThreads(),
+                config.getVirtualThreadLimit());
+        this.fileWriteExecutor = config.getFileWriteThreads() > 0
+                ? new TaskExecutor(config.getFileWriteThreads(), "server-write", config.isVirtualThreads(),
+                        config.getFileWriteThreads())
+                : null;
         this.idGenerator = config.getTransferIdGenerator();
         this.handler = config.getTransferHandler();
         this.statusStorage = config.getStatusStorage();
+        this.dataBudget = new FrameDataBudget(config.getMaxBufferedFrameData());
+        this.metrics = config.getMetrics();
         // interval is 1/10 of inactive timeout or at minimum 1s
         this.wakeupInterval = Math.max(config.getInactiveTimeout() * 1000 / 10, 1000);
     }
@@ -87,6 +137,10 @@ public class ServerImpl implements Server, TransferManager {
         serverThread.start();
         // start shared executor
         executor.start();
+        metrics.bindExecutor(executor);
+        if (fileWriteExecutor != null) {
+            fileWriteExecutor.start();
+        }
     }
 
     @Override
@@ -95,6 +149,9 @@ public class ServerImpl implements Server, TransferManager {
             state = State.STOPPING;
             // stop shared executor
             executor.stop();
+            if (fileWriteExecutor != null) {
+                fileWriteExecutor.stop();
+            }
             // notify server thread
             notifyAll();
             // wait until server thread terminates
@@ -111,11 +168,9 @@ public class ServerImpl implements Server, TransferManager {
 
     @Override
     public void cancelTransfer(String transferId) throws TransferException {
-        ServerTransfer transfer;
-        synchronized (this) {
-            Validate.isTrue(state == State.RUNNING || state == State.STOPPING);
-            transfer = transferIdMap.get(transferId);
-        }
+        State currState = state;
+        Validate.isTrue(currState == State.RUNNING || currState == State.STOPPING);
+        ServerTransfer transfer = transferIdMap.get(transferId);
         if (transfer == null) {
             throw new TransferExBuilder("Transfer not found").addParam("transferId", transferId).build();
         }
@@ -124,13 +179,12 @@ public class ServerImpl implements Server, TransferManager {
 
     @Override
     public TransferStatus getTransferStatus(String transferId) {
-        synchronized (this) {
-            Validate.isTrue(state == State.RUNNING || state == State.STOPPING);
-            // get status from current transfer
-            ServerTransfer transfer = transferIdMap.get(transferId);
-            if (transfer != null) {
-                return transfer.getStatus();
-            }
+        State currState = state;
+        Validate.isTrue(currState == State.RUNNING || currState == State.STOPPING);
+        // get status from current transfer
+        ServerTransfer transfer = transferIdMap.get(transferId);
+        if (transfer != null) {
+            return transfer.getStatus();
         }
         // transfer not found -> get status from storage
         return statusStorage.getTransferStatus(transferId);
@@ -140,18 +194,16 @@ public class ServerImpl implements Server, TransferManager {
 
     @Override
     public Transfer getTransfer(String transferId) throws FileTransferException {
-        synchronized (this) {
-            checkServerState();
-            // check if requested transfer is creating
-            if (newTransferIds.contains(transferId)) {
-                throw new ServerError("Transfer is busy").addParam("transferId", transferId).setCode(ErrorCode.BUSY)
-                        .createEx();
-            }
-            // get current transfer
-            ServerTransfer transfer = transferIdMap.get(transferId);
-            if (transfer != null) {
-                return transfer;
-            }
+        checkServerState();
+        // check if requested transfer is creating, new id is removed after publishing
+        if (newTransferIds.contains(transferId)) {
+            throw new ServerError("Transfer is busy").addParam("transferId", transferId).setCode(ErrorCode.BUSY)
+                    .createEx();
+        }
+        // get current transfer
+        ServerTransfer transfer = transferIdMap.get(transferId);
+        if (transfer != null) {
+            return transfer;
         }
         // transfer not found -> get status from storage
         TransferStatus ts = statusStorage.getTransferStatus(transferId);
@@ -162,49 +214,159 @@ public class ServerImpl implements Server, TransferManager {
     }
 
     @Override
-    public String createTransferAsync(GenericDataType request) throws FileTransferException {
+    public BeginResponse createTransferAsync(BeginRequest request) throws FileTransferException {
         String transferId = idGenerator.generateId();
         if (StringUtils.isEmpty(transferId)) {
             throw new ServerError("Id generator returned empty transfer id").createEx();
         }
-        synchronized (this) {
-            checkServerState();
-            // check running transfers and new transfers for duplicate id
-            if (transferIdMap.containsKey(transferId) || newTransferIds.contains(transferId)) {
-                throw new ServerError("Id generator generated duplicate transfer id").addParam("transferId", transferId)
-                        .createEx();
-            }
-            // add new transfer to lookup
-            newTransferIds.add(transferId);
+        checkServerState();
+        // add new transfer to lookup, check running transfers and new transfers for duplicate id
+        if (!newTransferIds.add(transferId)) {
+            throw new ServerError("Id generator generated duplicate transfer id").addParam("transferId", transferId)
+                    .createEx();
         }
+        if (transferIdMap.containsKey(transferId)) {
+            newTransferIds.remove(transferId);
+            throw new ServerError("Id generator generated duplicate transfer id").addParam("transferId", transferId)
+                    .createEx();
+        }
+        BlockEncoding blockEncoding = negotiateBlockEncoding(request);
+        boolean packFiles = Boolean.TRUE.equals(request.isFilePacks());
         executor.addTask(() -> {
             TransferDataHandler dataHandler = null;
             try {
                 dataHandler = handler.onTransferBegin(transferId, request);
-                createTransfer(transferId, dataHandler);
+                createTransfer(transferId, dataHandler, null, blockEncoding, packFiles);
             } catch (Throwable t) {
                 transferCreationFailed(transferId, dataHandler, t);
             }
         });
-        return transferId;
+        BeginResponse br = new BeginResponse();
+        br.setTransferId(transferId);
+        // older clients do not expect selected encoding
+        if (blockEncoding != BlockEncoding.XML) {
+            br.setBlockEnc(blockEncoding);
+        }
+        // uploaded packs are always supported
+        br.setFilePacks(Boolean.TRUE);
+        // client limits its upload window by server
+        br.setUploadWindow(config.getUploadWindowSize());
+        return br;
+    }
+
+    /**
+     * Binary encoding is selected only when both sides support it.
+     */
+    private BlockEncoding negotiateBlockEncoding(BeginRequest request) {
+        BlockEncoding offered = config.getBlockEncoding();
+        if (offered != BlockEncoding.XML && request.getBlockEncs().contains(offered)) {
+            return offered;
+        }
+        return BlockEncoding.XML;
+    }
+
+    @Override
+    public TransferStatus resumeTransfer(String transferId) throws FileTransferException {
+        checkServerState();
+        Path checkpointFile = null;
+        if (config.isResumableUploads()) {
+            checkpointFile = UploadCheckpoint.getFile(config.getWorkDir(), transferId);
+        }
+        if (checkpointFile == null) {
+            throw new ServerError("Transfer cannot be resumed").addParam("transferId", transferId).createEx();
+        }
+        // resumed transfer is created as new transfer
+        if (!newTransferIds.add(transferId)) {
+            throw new ServerError("Transfer is busy").addParam("transferId", transferId).setCode(ErrorCode.BUSY)
+                    .createEx();
+        }
+        UploadCheckpoint checkpoint = null;
+        try {
+            ServerTransfer current = transferIdMap.get(transferId);
+            if (current != null) {
+                return getResumableStatus(current);
+            }
+            checkpoint = UploadCheckpoint.load(checkpointFile);
+        } catch (IOException e) {
+            throw new ServerError("Failed to load upload checkpoint").addParam("transferId", transferId)
+                    .addParam("checkpointFile", checkpointFile).setCause(e).createEx();
+        } finally {
+            // new id is kept only for asynchronous creation
+            if (checkpoint == null) {
+                newTransferIds.remove(transferId);
+            }
+        }
+        if (checkpoint == null) {
+            throw new ServerError("Transfer cannot be resumed, checkpoint not found")
+                    .addParam("transferId", transferId).createEx();
+        }
+        resumeTransferAsync(transferId, checkpoint);
+        // report progress of checkpoint, transfer continues after it
+        TransferStatusImpl status = new TransferStatusImpl();
+        status.changeState(TransferState.STARTED);
+        status.resume(checkpoint.getSeqNum(), checkpoint.getTransferedSize());
+        return status;
     }
 
-    private void createTransfer(String transferId, TransferDataHandler dataHandler) throws TransferException {
+    private void resumeTransferAsync(String transferId, UploadCheckpoint checkpoint) {
+        executor.addTask(() -> {
+            UploadHandler uploadHandler = null;
+            try {
+                uploadHandler = handler.onTransferResume(transferId);
+                if (uploadHandler == null) {
+                    throw new TransferExBuilder("Transfer handler rejected resumed transfer").build();
+                }
+                // received frames describe their own encoding
+                createTransfer(transferId, uploadHandler, checkpoint, BlockEncoding.XML, false);
+            } catch (Throwable t) {
+                transferCreationFailed(transferId, uploadHandler, t);
+            }
+        });
+    }
+
+    /**
+     * Active transfer is not resumed, client continues after its last received frame. Terminated
+     * transfer can be resumed after it was removed from registry.
+     */
+    private TransferStatus getResumableStatus(ServerTransfer transfer) throws FileTransferException {
+        TransferState state = transfer.getStatus().getState();
+        if (state == TransferState.FAILED || state == TransferState.CANCELED) {
+            throw new ServerError("Transfer is terminating", transfer).setCode(ErrorCode.BUSY).createEx();
+        }
+        if (state.isTerminal()) {
+            throw new ServerError("Terminated transfer cannot be resumed", transfer)
+                    .addParam("currentState", state).createEx();
+        }
+        return transfer.getConfirmedStatus();
+    }
+
+    private void createTransfer(String transferId, TransferDataHandler dataHandler, UploadCheckpoint checkpoint,
+            BlockEncoding blockEncoding, boolean packFiles) throws TransferException {
         ServerTransfer transfer;
+        Direction direction;
         if (dataHandler.getMode().equals(Mode.UPLOAD)) {
             UploadHandler uh = (UploadHandler) dataHandler;
-            transfer = new UploadTransfer(transferId, uh, config, executor);
+            transfer = new UploadTransfer(transferId, uh, config, executor, dataBudget, checkpoint,
+                    fileWriteExecutor);
+            direction = Direction.UPLOAD;
         } else {
             DownloadHandler dh = (DownloadHandler) dataHandler;
-            transfer = new DwnldTransfer(transferId, dh, config, executor);
+            transfer = new DwnldTransfer(transferId, dh, config, executor, blockEncoding, packFiles);
+            direction = Direction.DOWNLOAD;
         }
         // initialize transfer during async creation
         transfer.init();
-        // publish initialized transfer
-        synchronized (this) {
-            newTransferIds.remove(transferId);
-            transferIdMap.put(transferId, transfer);
-        }
+        metrics.transferStarted(direction);
+        // schedule check before publishing, removed transfer never keeps pending check
+        scheduleInactivityCheck(transfer, transfer.getInactiveDeadline());
+        // publish initialized transfer before removing new id, lookup never misses the transfer
+        transferIdMap.put(transferId, transfer);
+        newTransferIds.remove(transferId);
+        // schedule housekeeping of transfer
+        transfer.setTerminationListener(() -> {
+            terminatedTransfers.add(transfer);
+            metrics.transferTerminated(direction);
+        });
     }
 
     private void transferCreationFailed(String transferId, TransferDataHandler dataHandler, Throwable cause) {
@@ -221,9 +383,7 @@ public class ServerImpl implements Server, TransferManager {
             logger.error("FATAL: failed to store terminated new transfer", t);
         }
         // remove new transfer after storage save
-        synchronized (this) {
-            newTransferIds.remove(transferId);
-        }
+        newTransferIds.remove(transferId);
         // report fail to data handler if exists
         if (dataHandler != null) {
             try {
@@ -237,7 +397,7 @@ public class ServerImpl implements Server, TransferManager {
     }
 
     /**
-     * When server is not running then fatal exception is thrown. Caller must ensure synchronization.
+     * When server is not running then fatal exception is thrown.
      */
     private void checkServerState() throws FileTransferException {
         if (state != State.RUNNING) {
@@ -248,22 +408,20 @@ public class ServerImpl implements Server, TransferManager {
     /* async server methods */
 
     private void run() {
-        List<ServerTransfer> currTransfers;
         while (true) {
-            synchronized (this) {
-                // copy map values in sync block
-                currTransfers = new ArrayList<>(transferIdMap.values());
-                // exit loop if not running
-                if (state != State.RUNNING) {
-                    break;
-                }
+            // exit loop if not running
+            if (state != State.RUNNING) {
+                break;
             }
             // terminate all inactive transfer
-            List<String> terminatedTransferIds = terminateInactiveTransfers(currTransfers);
+            List<String> terminatedTransferIds = terminateInactiveTransfers();
+            // remove all terminated transfers
+            terminatedTransferIds.forEach(transferIdMap::remove);
 
             synchronized (this) {
-                // remove all terminated transfers
-                terminatedTransferIds.forEach(transferIdMap::remove);
+                if (state != State.RUNNING) {
+                    continue; // stop requested during housekeeping
+                }
                 // wait for next run
                 try {
                     wait(wakeupInterval);
@@ -273,32 +431,84 @@ public class ServerImpl implements Server, TransferManager {
                 }
             }
         }
-        terminateTransfers(currTransfers);
+        // copy map values, concurrent map does not need lock
+        terminateTransfers(new ArrayList<>(transferIdMap.values()));
+        // clear all transfers
+        transferIdMap.clear();
+        inactivityChecks.clear();
+        pendingChecks.clear();
         synchronized (this) {
             state = State.TERMINATED;
             // notify stopping threads
             notifyAll();
-            // clear all transfers
-            transferIdMap.clear();
         }
     }
 
-    private List<String> terminateInactiveTransfers(Collection<ServerTransfer> currTransfers) {
+    /**
+     * Visits only terminated transfers and transfers with expired inactivity deadline.
+     */
+    private List<String> terminateInactiveTransfers() {
+        Set<ServerTransfer> candidates = new LinkedHashSet<>();
+        ServerTransfer terminated;
+        while ((terminated = terminatedTransfers.poll()) != null) {
+            candidates.add(terminated);
+        }
+        InactivityCheck check;
+        while ((check = inactivityChecks.poll()) != null) {
+            ServerTransfer transfer = check.transfer;
+            // replaced or cancelled check is discarded
+            if (!pendingChecks.remove(transfer.getTransferId(), check)) {
+                continue;
+            }
+            // reschedule check when transfer was active after check was scheduled
+            long deadline = transfer.getInactiveDeadline();
+            if (deadline - System.nanoTime() > 0) {
+                scheduleInactivityCheck(transfer, deadline);
+                continue;
+            }
+            candidates.add(transfer);
+        }
         List<String> terminatedTransferIds = new ArrayList<>();
-        for (ServerTransfer transfer : currTransfers) {
+        for (ServerTransfer transfer : candidates) {
+            // skip transfers already removed
+            if (transferIdMap.get(transfer.getTransferId()) != transfer) {
+                continue;
+            }
             if (transfer.terminateIfInactive()) {
                 try {
                     statusStorage.saveTransferStatus(transfer.getTransferId(), transfer.getStatus());
                     terminatedTransferIds.add(transfer.getTransferId());
+                    // removed transfer is not checked anymore
+                    cancelInactivityCheck(transfer);
+                    continue;
                 } catch (Throwable t) {
                     // log and ignore this exception, no easy recovery
                     logger.error("FATAL: failed to store terminated inactive transfer", t);
                 }
             }
+            // check transfer again at its next deadline, replaces pending check
+            scheduleInactivityCheck(transfer, transfer.getInactiveDeadline());
         }
         return terminatedTransferIds;
     }
 
+    /**
+     * Schedules inactivity check of transfer, pending check of transfer is replaced. Replaced check
+     * remains in queue and is discarded when polled.
+     */
+    private void scheduleInactivityCheck(ServerTransfer transfer, long deadline) {
+        InactivityCheck check = new InactivityCheck(transfer, deadline);
+        pendingChecks.put(transfer.getTransferId(), check);
+        inactivityChecks.add(check);
+    }
+
+    /**
+     * Cancels pending check of transfer, check is discarded when polled from queue.
+     */
+    private void cancelInactivityCheck(ServerTransfer transfer) {
+        pendingChecks.remove(transfer.getTransferId());
+    }
+
     private void terminateTransfers(Collection<ServerTransfer> currTransfers) {
         for (ServerTransfer transfer : currTransfers) {
             transfer.terminate();
@@ -310,4 +520,29 @@ public class ServerImpl implements Server, TransferManager {
             }
         }
     }
+
+    /**
+     * Delayed inactivity check of transfer.
+     */
+    private static class InactivityCheck implements Delayed {
+
+        private final ServerTransfer transfer;
+
+        private final long deadline;
+
+        InactivityCheck(ServerTransfer transfer, long deadline) {
+            this.transfer = transfer;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
 }
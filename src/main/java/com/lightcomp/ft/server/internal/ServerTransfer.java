@@ -1,7 +1,6 @@
 package com.lightcomp.ft.server.internal;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -11,6 +10,7 @@ import com.lightcomp.ft.common.TaskExecutor;
 import com.lightcomp.ft.core.TransferInfo;
 import com.lightcomp.ft.exception.TransferExBuilder;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.TransferMetrics;
 import com.lightcomp.ft.server.ServerConfig;
 import com.lightcomp.ft.server.TransferDataHandler;
 import com.lightcomp.ft.server.TransferState;
@@ -36,12 +36,15 @@ public abstract class ServerTransfer implements Transfer, TransferInfo {
 
     protected final TaskExecutor executor;
 
+    protected final TransferMetrics metrics;
+
     protected ServerTransfer(String transferId, TransferDataHandler handler, ServerConfig config,
             TaskExecutor executor) {
         this.transferId = transferId;
         this.handler = handler;
         this.config = config;
         this.executor = executor;
+        this.metrics = config.getMetrics();
     }
 
     @Override
@@ -79,6 +82,21 @@ public abstract class ServerTransfer implements Transfer, TransferInfo {
         return status.copy();
     }
 
+    /**
+     * @param terminationListener
+     *            called in synchronized block when transfer reaches terminal state, must not block
+     */
+    public synchronized void setTerminationListener(Runnable terminationListener) {
+        status.setTerminationListener(terminationListener);
+    }
+
+    /**
+     * @return Value of {@link System#nanoTime()} when transfer becomes inactive.
+     */
+    public synchronized long getInactiveDeadline() {
+        return status.getLastActivityNanos() + TimeUnit.SECONDS.toNanos(config.getInactiveTimeout());
+    }
+
     @Override
     public synchronized TransferStatus getConfirmedStatus() throws FileTransferException {
         if (isBusy()) {
@@ -216,11 +234,8 @@ public abstract class ServerTransfer implements Transfer, TransferInfo {
             waitWhileFinishing();
             // if transfer is terminated we are done
             if (!status.getState().isTerminal()) {
-                // check if transfer is active
-                long timeout = config.getInactiveTimeout();
-                LocalDateTime timeoutLimit = LocalDateTime.now().minus(timeout, ChronoUnit.SECONDS);
-                LocalDateTime lastActivity = status.getLastActivity();
-                if (timeoutLimit.isBefore(lastActivity)) {
+                // check if transfer is active, same deadline is used by inactivity checks
+                if (getInactiveDeadline() - System.nanoTime() > 0) {
                     return false;
                 }
                 // inactive transfer
@@ -327,6 +342,13 @@ public abstract class ServerTransfer implements Transfer, TransferInfo {
         if (isBusy()) {
             throw new ServerError("Transfer is busy", this).setCode(ErrorCode.BUSY).createEx();
         }
+        checkTransferState();
+    }
+
+    /**
+     * If passed the check transfer cannot be terminated. Caller must ensure synchronization.
+     */
+    protected void checkTransferState() throws FileTransferException {
         switch (status.getState()) {
             case CREATED:
                 throw new IllegalStateException();
@@ -1,7 +1,9 @@
 package com.lightcomp.ft.server.internal;
 
+import com.lightcomp.ft.server.TransferStatus;
 import com.lightcomp.ft.wsdl.v1.FileTransferException;
-import com.lightcomp.ft.xsd.v1.GenericDataType;
+import com.lightcomp.ft.xsd.v1.BeginRequest;
+import com.lightcomp.ft.xsd.v1.BeginResponse;
 
 public interface TransferManager {
 
@@ -10,9 +12,23 @@ public interface TransferManager {
      * 
      * Transfer is created asynchronously.
      * 
-     * @return transfer id
+     * @return transfer id and negotiated block encoding
      */
-    String createTransferAsync(GenericDataType request) throws FileTransferException;
+    BeginResponse createTransferAsync(BeginRequest request) throws FileTransferException;
+
+    /**
+     * Resumes interrupted upload from its last checkpoint.
+     * 
+     * Transfer is created asynchronously.
+     * 
+     * @return status of resumed transfer
+     * @throws FileTransferException
+     *             <ul>
+     *             <li>busy code when transfer is being created or terminated</li>
+     *             <li>fatal code when transfer cannot be resumed or server is not running</li>
+     *             </ul>
+     */
+    TransferStatus resumeTransfer(String transferId) throws FileTransferException;
 
     /**
      * @throws FileTransferException
@@ -15,6 +15,9 @@ public class TransferStatusImpl implements TransferStatus {
 
     private LocalDateTime lastActivity;
 
+    // monotonic time of last activity used for inactivity expiry
+    private long lastActivityNanos;
+
     private LocalDateTime startTime;
 
     private long transferedSize;
@@ -27,9 +30,13 @@ public class TransferStatusImpl implements TransferStatus {
 
     private ErrorDesc errorDesc;
 
+    // listener is not copied
+    private Runnable terminationListener;
+
     public TransferStatusImpl() {
         state = TransferState.CREATED;
         lastActivity = LocalDateTime.now();
+        lastActivityNanos = System.nanoTime();
     }
 
     /**
@@ -38,6 +45,7 @@ public class TransferStatusImpl implements TransferStatus {
     private TransferStatusImpl(TransferStatusImpl src) {
         state = src.state;
         lastActivity = src.lastActivity;
+        lastActivityNanos = src.lastActivityNanos;
         startTime = src.startTime;
         transferedSize = src.transferedSize;
         transferedSeqNum = src.transferedSeqNum;
@@ -86,8 +94,22 @@ public class TransferStatusImpl implements TransferStatus {
         return errorDesc;
     }
 
+    /**
+     * @return Value of {@link System#nanoTime()} at last activity.
+     */
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
     /* modify methods */
 
+    /**
+     * Listener is called when state is changed to terminal state.
+     */
+    public void setTerminationListener(Runnable terminationListener) {
+        this.terminationListener = terminationListener;
+    }
+
     public void addTransferedData(long size) {
         Validate.isTrue(size >= 0);
         transferedSize += size;
@@ -104,6 +126,16 @@ public class TransferStatusImpl implements TransferStatus {
         updateActivity();
     }
 
+    /**
+     * Restores progress of resumed transfer, all frames up to sequential number were processed.
+     */
+    public void resume(int seqNum, long transferedSize) {
+        this.transferedSeqNum = seqNum;
+        this.processedSeqNum = seqNum;
+        this.transferedSize = transferedSize;
+        updateActivity();
+    }
+
     public void changeStateToFinished(GenericDataType response) {
         changeState(TransferState.FINISHED);
         this.response = response;
@@ -117,6 +149,9 @@ public class TransferStatusImpl implements TransferStatus {
     public void changeState(TransferState nextState) {
         state = Validate.notNull(nextState);
         updateActivity();
+        if (terminationListener != null && nextState.isTerminal()) {
+            terminationListener.run();
+        }
     }
 
     public TransferStatusImpl copy() {
@@ -125,6 +160,7 @@ public class TransferStatusImpl implements TransferStatus {
 
     private void updateActivity() {
         lastActivity = LocalDateTime.now();
+        lastActivityNanos = System.nanoTime();
         if (startTime == null) {
             startTime = lastActivity;
         }
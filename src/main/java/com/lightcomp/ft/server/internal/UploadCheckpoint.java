@@ -0,0 +1,139 @@
+package com.lightcomp.ft.server.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+import com.lightcomp.ft.core.recv.RecvPosition;
+
+/**
+ * Progress of resumable upload saved after each processed frame.
+ */
+class UploadCheckpoint {
+
+    private static final String FILE_SUFFIX = ".resume";
+
+    private final int seqNum;
+
+    private final long transferedSize;
+
+    private final boolean transfered;
+
+    private final RecvPosition position;
+
+    /**
+     * @param seqNum
+     *            sequential number of last processed frame
+     * @param transferedSize
+     *            size of received file data
+     * @param transfered
+     *            true when last frame was processed
+     * @param position
+     *            receive position after processed frame
+     */
+    public UploadCheckpoint(int seqNum, long transferedSize, boolean transfered, RecvPosition position) {
+        this.seqNum = seqNum;
+        this.transferedSize = transferedSize;
+        this.transfered = transfered;
+        this.position = position;
+    }
+
+    public int getSeqNum() {
+        return seqNum;
+    }
+
+    public long getTransferedSize() {
+        return transferedSize;
+    }
+
+    public boolean isTransfered() {
+        return transfered;
+    }
+
+    public RecvPosition getPosition() {
+        return position;
+    }
+
+    /**
+     * Saves checkpoint, previous checkpoint is atomically replaced by forced temporary file.
+     */
+    public void save(Path file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("seqNum", Integer.toString(seqNum));
+        props.setProperty("transferedSize", Long.toString(transferedSize));
+        props.setProperty("transfered", Boolean.toString(transfered));
+        props.setProperty("dir", position.getDir().toString());
+        if (position.getFile() != null) {
+            props.setProperty("file", position.getFile().toString());
+            props.setProperty("fileSize", Long.toString(position.getFileSize()));
+            props.setProperty("fileOffset", Long.toString(position.getFileOffset()));
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            props.store(Channels.newOutputStream(channel), null);
+            // checkpoint is durable before it replaces previous one
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return Returns checkpoint or null when file does not exist.
+     */
+    public static UploadCheckpoint load(Path file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            props.load(is);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            int seqNum = Integer.parseInt(props.getProperty("seqNum"));
+            long transferedSize = Long.parseLong(props.getProperty("transferedSize"));
+            boolean transfered = Boolean.parseBoolean(props.getProperty("transfered"));
+            Path dir = Paths.get(props.getProperty("dir"));
+            RecvPosition position;
+            String fileName = props.getProperty("file");
+            if (fileName != null) {
+                long fileSize = Long.parseLong(props.getProperty("fileSize"));
+                long fileOffset = Long.parseLong(props.getProperty("fileOffset"));
+                position = new RecvPosition(dir, Paths.get(fileName), fileSize, fileOffset);
+            } else {
+                position = new RecvPosition(dir, null, 0, 0);
+            }
+            return new UploadCheckpoint(seqNum, transferedSize, transfered, position);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid upload checkpoint, file=" + file, e);
+        }
+    }
+
+    public static void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * @return Checkpoint file of transfer or null when transfer id cannot be used as file name.
+     */
+    public static Path getFile(Path workDir, String transferId) {
+        Path file;
+        try {
+            file = workDir.resolve(transferId + FILE_SUFFIX);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        // id from client request must not point outside of work directory
+        if (!workDir.equals(file.getParent())) {
+            return null;
+        }
+        return file;
+    }
+}
@@ -5,6 +5,8 @@ import java.util.LinkedList;
 import org.apache.commons.lang3.Validate;
 
 import com.lightcomp.ft.core.recv.RecvFrameProcessor;
+import com.lightcomp.ft.metrics.TransferMetrics;
+import com.lightcomp.ft.metrics.TransferMetrics.FrameStage;
 
 public class UploadFrameWorker implements Runnable {
 
@@ -16,16 +18,26 @@ public class UploadFrameWorker implements Runnable {
 
     private final UploadTransfer transfer;
 
+    private final TransferMetrics metrics;
+
     private State state = State.RUNNING;
 
-    public UploadFrameWorker(UploadTransfer transfer) {
+    public UploadFrameWorker(UploadTransfer transfer, TransferMetrics metrics) {
         this.transfer = transfer;
+        this.metrics = metrics;
     }
 
     public synchronized int getFrameCount() {
         return frameQueue.size();
     }
 
+    /**
+     * @return Returns true when worker is finished and all added frames were processed.
+     */
+    public synchronized boolean isFinished() {
+        return state == State.FINISHED;
+    }
+
     /**
      * Adds frame processor to worker queue.
      * 
@@ -74,7 +86,9 @@ public class UploadFrameWorker implements Runnable {
                 rfp = frameQueue.removeFirst();
             }
             try {
+                long start = System.nanoTime();
                 rfp.process();
+                metrics.frameCompleted(FrameStage.PROCESS, System.nanoTime() - start);
                 if (!transfer.frameProcessed(rfp)) {
                     break; // terminated worker
                 }
@@ -3,6 +3,9 @@ package com.lightcomp.ft.server.internal;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -15,32 +18,95 @@ import com.lightcomp.ft.core.recv.RecvFrameProcessor;
 import com.lightcomp.ft.core.recv.RecvProgressInfo;
 import com.lightcomp.ft.exception.TransferExBuilder;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.TransferMetrics.Direction;
+import com.lightcomp.ft.metrics.TransferMetrics.FrameStage;
 import com.lightcomp.ft.server.ServerConfig;
 import com.lightcomp.ft.server.TransferState;
 import com.lightcomp.ft.server.TransferStatus;
 import com.lightcomp.ft.server.UploadHandler;
 import com.lightcomp.ft.wsdl.v1.FileTransferException;
+import com.lightcomp.ft.xsd.v1.ErrorCode;
 import com.lightcomp.ft.xsd.v1.Frame;
 
 public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
 
-    public static final int FRAME_CAPACITY = 10;
-
     private static final Logger logger = LoggerFactory.getLogger(UploadTransfer.class);
 
+    /**
+     * Number of small files received in memory per write thread, limits memory of one transfer.
+     */
+    private static final int PENDING_FILES_PER_THREAD = 8;
+
     private final RecvContextImpl recvCtx;
 
+    private final FrameDataBudget dataBudget;
+
+    /**
+     * Checkpoint of interrupted transfer, null when transfer is not resumed.
+     */
+    private final UploadCheckpoint resumedCheckpoint;
+
+    /**
+     * Checkpoint file of resumable transfer, null when transfer is not resumable.
+     */
+    private final Path checkpointFile;
+
+    private final Set<Integer> receivingSeqNums = new HashSet<>();
+
+    private final TreeMap<Integer, RecvFrameProcessor> receivedFrames = new TreeMap<>();
+
     private Path tempDir;
 
     private UploadFrameWorker frameWorker;
 
-    private boolean receivingFrame;
+    /**
+     * Sequential number of last frame passed to worker or streamed.
+     */
+    private int startedSeqNum;
 
-    private boolean lastFrameReceived;
+    /**
+     * Sequential number of streamed frame, zero when no frame is streamed.
+     */
+    private int streamingSeqNum;
+
+    /**
+     * Sequential number of last frame, zero when last frame was not received yet.
+     */
+    private int lastSeqNum;
+
+    /**
+     * Size of buffered frame data reserved in server budget.
+     */
+    private long reservedDataSize;
+
+    /**
+     * Part of reserved data which is stored in temporary files.
+     */
+    private long reservedTempSize;
 
-    public UploadTransfer(String transferId, UploadHandler handler, ServerConfig config, TaskExecutor executor) {
+    public UploadTransfer(String transferId, UploadHandler handler, ServerConfig config, TaskExecutor executor,
+            FrameDataBudget dataBudget) {
+        this(transferId, handler, config, executor, dataBudget, null, null);
+    }
+
+    /**
+     * @param resumedCheckpoint
+     *            checkpoint of interrupted transfer, null for new transfer
+     * @param fileWriteExecutor
+     *            executor of concurrent file writes, null when files are written by frame worker
+     */
+    public UploadTransfer(String transferId, UploadHandler handler, ServerConfig config, TaskExecutor executor,
+            FrameDataBudget dataBudget, UploadCheckpoint resumedCheckpoint, TaskExecutor fileWriteExecutor) {
         super(transferId, handler, config, executor);
-        this.recvCtx = new RecvContextImpl(this, handler.getUploadDir(), config.getChecksumAlg());
+        this.recvCtx = new RecvContextImpl(this, handler.getUploadDir(), config, fileWriteExecutor,
+                config.getFileWriteThreads() * PENDING_FILES_PER_THREAD);
+        this.dataBudget = dataBudget;
+        this.resumedCheckpoint = resumedCheckpoint;
+        this.checkpointFile = config.isResumableUploads()
+                ? UploadCheckpoint.getFile(config.getWorkDir(), transferId)
+                : null;
+        // checkpoint is saved after files are forced to storage
+        this.recvCtx.setSyncFiles(checkpointFile != null);
     }
 
     @Override
@@ -54,9 +120,38 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
             eb.log(logger);
             throw eb.build();
         }
+        if (resumedCheckpoint != null) {
+            resume(resumedCheckpoint);
+            return;
+        }
         super.init();
     }
 
+    /**
+     * Restores receive position and progress of interrupted transfer. Caller must ensure
+     * synchronization.
+     */
+    private void resume(UploadCheckpoint cp) throws TransferException {
+        try {
+            recvCtx.resume(cp.getPosition());
+        } catch (TransferException e) {
+            // uninitialized transfer is not published, release its resources now
+            cleanResources();
+            TransferExBuilder eb = new TransferExBuilder("Failed to resume transfer", this)
+                    .addParam("seqNum", cp.getSeqNum()).setCause(e);
+            eb.log(logger);
+            throw eb.build();
+        }
+        super.init();
+        status.resume(cp.getSeqNum(), cp.getTransferedSize());
+        startedSeqNum = cp.getSeqNum();
+        if (cp.isTransfered()) {
+            lastSeqNum = cp.getSeqNum();
+            status.changeState(TransferState.TRANSFERED);
+        }
+        logger.info("Transfer resumed, transferId={}, seqNum={}", transferId, cp.getSeqNum());
+    }
+
     @Override
     public void onFileDataReceived(long size) {
         TransferStatus ts;
@@ -65,6 +160,7 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
             // copy status in synch block
             ts = status.copy();
         }
+        metrics.dataTransferred(Direction.UPLOAD, size);
         // exception is caught by worker
         onTransferProgress(ts);
     }
@@ -72,31 +168,54 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
     @Override
     protected boolean isBusyInternal() {
         // check if already receiving frame
-        if (receivingFrame) {
+        if (!receivingSeqNums.isEmpty()) {
             return true;
         }
         // cannot processes more frames
-        if (frameWorker != null && frameWorker.getFrameCount() >= FRAME_CAPACITY) {
+        if (isFrameCapacityFull()) {
             return true;
         }
         // check if processing last frame
-        if (lastFrameReceived && status.getState() == TransferState.STARTED) {
+        if (lastSeqNum > 0 && status.getTransferedSeqNum() == lastSeqNum
+                && status.getState() == TransferState.STARTED) {
             return true;
         }
         return false;
     }
 
+    /**
+     * Frames which are received, waiting for processing or waiting for previous frames are counted.
+     * Caller must ensure synchronization.
+     */
+    private boolean isFrameCapacityFull() {
+        int frameCount = receivingSeqNums.size() + receivedFrames.size();
+        if (frameWorker != null) {
+            frameCount += frameWorker.getFrameCount();
+        }
+        return frameCount >= config.getUploadFrameCapacity();
+    }
+
     @Override
     public void recvFrame(Frame frame) throws FileTransferException {
         ServerError err = null;
         TransferStatus ts = null;
+        boolean streaming = false;
         synchronized (this) {
-            checkActiveTransfer();
+            checkTransferState();
+            // frame received out of order was resent by client
+            if (receivedFrames.containsKey(frame.getSeqNum())) {
+                return;
+            }
+            boolean reserved = checkReceiveBusy(frame);
             err = prepareReceive(frame);
             if (err == null) {
+                streaming = streamingSeqNum == frame.getSeqNum();
                 // copy status in synch block
                 ts = status.copy();
-            } else if (err.isFatal()) {
+            } else if (reserved) {
+                releaseFrameData(frame.getDataSize());
+            }
+            if (err != null && err.isFatal()) {
                 status.changeStateToFailed(err.getDesc());
                 // notify canceling threads
                 notifyAll();
@@ -109,15 +228,109 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
             }
             throw err.createEx();
         }
-        // receive is blocked by flag but not synchronized
-        receiveInternal(frame, ts);
+        // receive is blocked by seq number but not synchronized
+        if (streaming) {
+            streamInternal(frame, ts);
+        } else {
+            receiveInternal(frame, ts);
+        }
+    }
+
+    /**
+     * Throws busy exception when frame cannot be received now. Data of frame which cannot be streamed
+     * are reserved in server budget. Caller must ensure synchronization.
+     * 
+     * @return Returns true when frame data were reserved.
+     */
+    private boolean checkReceiveBusy(Frame frame) throws FileTransferException {
+        int seqNum = frame.getSeqNum();
+        if (status.getState() == TransferState.FINISHING || receivingSeqNums.contains(seqNum)
+                || isFrameCapacityFull()) {
+            throw new ServerError("Transfer is busy", this).addParam("seqNum", seqNum).setCode(ErrorCode.BUSY)
+                    .createEx();
+        }
+        if (canStream(seqNum)) {
+            return false;
+        }
+        if (!dataBudget.reserve(frame.getDataSize())) {
+            throw new ServerError("Server frame data budget exhausted", this).addParam("seqNum", seqNum)
+                    .addParam("dataSize", frame.getDataSize()).setCode(ErrorCode.BUSY).createEx();
+        }
+        reservedDataSize += frame.getDataSize();
+        if (isStoredData(frame.getDataSize())) {
+            reservedTempSize += frame.getDataSize();
+            metrics.tempDataChanged(frame.getDataSize());
+        }
+        return true;
+    }
+
+    /**
+     * Releases buffered data of single frame from server budget. Caller must ensure synchronization.
+     */
+    private void releaseFrameData(long size) {
+        dataBudget.release(size);
+        reservedDataSize -= size;
+        if (isStoredData(size)) {
+            reservedTempSize -= size;
+            metrics.tempDataChanged(-size);
+        }
+    }
+
+    /**
+     * @return Returns true when frame data of given size are stored in temporary file.
+     */
+    private boolean isStoredData(long dataSize) {
+        return dataSize > config.getMaxMemoryFrameSize();
+    }
+
+    /**
+     * Frame can be streamed when all previous frames are processed. Caller must ensure
+     * synchronization.
+     */
+    private boolean canStream(int seqNum) {
+        return seqNum == startedSeqNum + 1 && streamingSeqNum == 0
+                && (frameWorker == null || frameWorker.isFinished());
+    }
+
+    /**
+     * Processes frame directly from request, all previous frames are already processed.
+     */
+    private void streamInternal(Frame frame, TransferStatus ts) throws FileTransferException {
+        RecvFrameProcessor rfp = RecvFrameProcessor.create(recvCtx, frame);
+        try {
+            onTransferProgress(ts);
+            long start = System.nanoTime();
+            rfp.process();
+            metrics.frameCompleted(FrameStage.PROCESS, System.nanoTime() - start);
+            frameProcessed(rfp);
+        } catch (Throwable t) {
+            ServerError err = new ServerError("Failed to process frame", this).addParam("seqNum", frame.getSeqNum())
+                    .setCause(t);
+            transferFailed(err);
+            throw err.createEx();
+        } finally {
+            boolean terminated;
+            synchronized (this) {
+                receivingSeqNums.remove(frame.getSeqNum());
+                streamingSeqNum = 0;
+                terminated = status.getState().isTerminal();
+                // pass frames received during streaming
+                startFrameProcessing();
+            }
+            // context of terminated transfer cannot be closed during streaming
+            if (terminated) {
+                recvCtx.close();
+            }
+        }
     }
 
     private void receiveInternal(Frame frame, TransferStatus ts) throws FileTransferException {
         RecvFrameProcessor rfp = RecvFrameProcessor.create(recvCtx, frame);
         try {
             onTransferProgress(ts);
-            rfp.prepareData(tempDir);
+            long start = System.nanoTime();
+            rfp.prepareData(tempDir, config.getMaxMemoryFrameSize(), config.getBufferPool());
+            metrics.frameCompleted(FrameStage.SPOOL, System.nanoTime() - start);
         } catch (Throwable t) {
             ServerError err = new ServerError("Failed to receive frame", this).addParam("seqNum", frame.getSeqNum())
                     .setCause(t);
@@ -125,10 +338,13 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
             throw err.createEx();
         } finally {
             synchronized (this) {
-                receivingFrame = false;
+                receivingSeqNums.remove(frame.getSeqNum());
             }
         }
-        startFrameProcessing(rfp);
+        synchronized (this) {
+            receivedFrames.put(rfp.getSeqNum(), rfp);
+            startFrameProcessing();
+        }
     }
 
     /**
@@ -142,31 +358,63 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
             return new ServerError("Unable to receive frame in current state", this).addParam("currentState",
                     status.getState());
         }
+        int seqNum = frame.getSeqNum();
         // check last frame received
-        if (lastFrameReceived) {
-            return new ServerError("Server already received last frame", this);
+        if (lastSeqNum > 0 && seqNum >= lastSeqNum) {
+            return new ServerError("Server already received last frame", this).addParam("receivedSeqNum", seqNum);
         }
-        // check last frame number
+        // check frame number is within window
         int nextSeqNum = status.getTransferedSeqNum() + 1;
-        if (nextSeqNum != frame.getSeqNum()) {
+        if (seqNum < nextSeqNum || seqNum >= nextSeqNum + config.getUploadWindowSize()) {
             return new ServerError("Failed to receive frame, invalid frame number", this)
-                    .addParam("expectedSeqNum", nextSeqNum).addParam("receivedSeqNum", frame.getSeqNum());
+                    .addParam("expectedSeqNum", nextSeqNum).addParam("receivedSeqNum", seqNum);
+        }
+        if (Boolean.TRUE.equals(frame.isLast())) {
+            // frames after last cannot be received
+            int maxSeqNum = Math.max(seqNum, receivedFrames.isEmpty() ? 0 : receivedFrames.lastKey());
+            for (int rsn : receivingSeqNums) {
+                maxSeqNum = Math.max(maxSeqNum, rsn);
+            }
+            if (maxSeqNum > seqNum) {
+                return new ServerError("Server already received frame after last frame", this)
+                        .addParam("lastSeqNum", seqNum).addParam("receivedSeqNum", maxSeqNum);
+            }
+            lastSeqNum = seqNum;
+        }
+        receivingSeqNums.add(seqNum);
+        // move transfered number over continuously received frames
+        while (receivingSeqNums.contains(nextSeqNum) || receivedFrames.containsKey(nextSeqNum)) {
+            status.incrementTransferedSeqNum();
+            nextSeqNum++;
+        }
+        // frame can be streamed when all previous frames are processed
+        if (canStream(seqNum)) {
+            streamingSeqNum = seqNum;
+            startedSeqNum = seqNum;
         }
-        lastFrameReceived = Boolean.TRUE.equals(frame.isLast());
-        status.incrementTransferedSeqNum();
-        receivingFrame = true;
         return null;
     }
 
-    private synchronized void startFrameProcessing(RecvFrameProcessor rfp) {
+    /**
+     * Passes received frames in sequence to worker, method is called in synchronized block.
+     */
+    private void startFrameProcessing() {
         if (status.getState().isTerminal()) {
             return; // transfer was terminated during data preparing
         }
-        if (frameWorker == null || !frameWorker.addFrame(rfp)) {
-            // start new worker with the processor
-            frameWorker = new UploadFrameWorker(this);
-            frameWorker.addFrame(rfp);
-            executor.addTask(frameWorker);
+        // streamed frame must be processed before next frames
+        if (streamingSeqNum != 0) {
+            return;
+        }
+        while (!receivedFrames.isEmpty() && receivedFrames.firstKey() == startedSeqNum + 1) {
+            RecvFrameProcessor rfp = receivedFrames.pollFirstEntry().getValue();
+            startedSeqNum = rfp.getSeqNum();
+            if (frameWorker == null || !frameWorker.addFrame(rfp)) {
+                // start new worker with the processor
+                frameWorker = new UploadFrameWorker(this, metrics);
+                frameWorker.addFrame(rfp);
+                executor.addTask(frameWorker);
+            }
         }
     }
 
@@ -186,6 +434,10 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
             // integrity checks
             Validate.isTrue(status.getState() == TransferState.STARTED);
             Validate.isTrue(status.getProcessedSeqNum() + 1 == rfp.getSeqNum());
+            // buffered data of processed frame are released
+            if (rfp.getSeqNum() != streamingSeqNum) {
+                releaseFrameData(rfp.getDataSize());
+            }
             // if last frame change state and reset worker
             if (rfp.isLast()) {
                 status.changeState(TransferState.TRANSFERED);
@@ -196,11 +448,46 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
             // copy status in synch block
             ts = status.copy();
         }
+        // items created after resumed position were overwritten by this frame
+        recvCtx.resumeCompleted();
+        saveCheckpoint(ts, rfp.isLast());
         // exception will be caught by worker
         onTransferProgress(ts);
         return !rfp.isLast();
     }
 
+    /**
+     * Saves progress of resumable transfer, receive context is not changed until next frame is
+     * processed. Checkpoint which cannot be saved is deleted and transfer continues.
+     */
+    private void saveCheckpoint(TransferStatus ts, boolean last) {
+        if (checkpointFile == null) {
+            return;
+        }
+        UploadCheckpoint cp = new UploadCheckpoint(ts.getProcessedSeqNum(), ts.getTransferedSize(), last,
+                recvCtx.getPosition());
+        try {
+            // saved position must not point after data lost by crash
+            recvCtx.forceOpenFile();
+            cp.save(checkpointFile);
+        } catch (IOException | TransferException e) {
+            ServerError err = new ServerError("Failed to save upload checkpoint", this)
+                    .addParam("seqNum", cp.getSeqNum()).addParam("checkpointFile", checkpointFile).setCause(e);
+            err.log(logger);
+            deleteCheckpoint();
+        }
+    }
+
+    private void deleteCheckpoint() {
+        try {
+            UploadCheckpoint.delete(checkpointFile);
+        } catch (IOException e) {
+            ServerError err = new ServerError("Failed to delete upload checkpoint", this)
+                    .addParam("checkpointFile", checkpointFile).setCause(e);
+            err.log(logger);
+        }
+    }
+
     void frameProcessingFailed(ServerError err) {
         transferFailed(err);
         // terminated transfer -> no need to sync
@@ -214,6 +501,26 @@ public class UploadTransfer extends ServerTransfer implements RecvProgressInfo {
             frameWorker.terminate();
             frameWorker = null;
         }
+        // close open file, streamed frame closes context by itself
+        boolean streaming;
+        TransferState state;
+        synchronized (this) {
+            streaming = streamingSeqNum != 0;
+            state = status.getState();
+            // frames waiting for previous frames are stored in temporary directory
+            receivedFrames.clear();
+            dataBudget.release(reservedDataSize);
+            metrics.tempDataChanged(-reservedTempSize);
+            reservedDataSize = 0;
+            reservedTempSize = 0;
+        }
+        if (!streaming) {
+            recvCtx.close();
+        }
+        // failed and canceled transfer can be resumed
+        if (checkpointFile != null && (state == TransferState.FINISHED || state == TransferState.ABORTED)) {
+            deleteCheckpoint();
+        }
         // delete temporary files
         if (tempDir != null) {
             try {
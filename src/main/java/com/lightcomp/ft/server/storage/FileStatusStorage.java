@@ -0,0 +1,235 @@
+package com.lightcomp.ft.server.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lightcomp.ft.common.RecordLog;
+import com.lightcomp.ft.server.TransferStatus;
+import com.lightcomp.ft.server.TransferStatusStorage;
+
+/**
+ * Status storage which appends terminated transfer statuses to local log file. Only index of record
+ * positions and limited LRU cache of statuses are kept in memory. Records older than retention are
+ * expired and log is compacted when expired and duplicate records prevail.
+ * <p>
+ * Log is not forced to disk after each save, statuses written just before system crash can be lost.
+ * Incomplete record at the end of log is truncated when storage is opened, corrupted records within
+ * log are skipped and reported.
+ */
+public class FileStatusStorage implements TransferStatusStorage, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileStatusStorage.class);
+
+    private static final int MAGIC = 0x46544C31; // FTL1
+
+    private static final int MIN_COMPACT_RECORDS = 1000;
+
+    /**
+     * Record positions in order of saving, oldest first.
+     */
+    private final LinkedHashMap<String, IndexEntry> index = new LinkedHashMap<>();
+
+    private final LinkedHashMap<String, TransferStatus> cache;
+
+    private final Path logFile;
+
+    private final long retentionMillis;
+
+    private RecordLog log;
+
+    private int obsoleteRecords;
+
+    private FileStatusStorage(Path logFile, int cacheSize, Duration retention) {
+        this.logFile = logFile;
+        this.retentionMillis = retention != null ? retention.toMillis() : 0;
+        this.cache = new LinkedHashMap<String, TransferStatus>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TransferStatus> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Opens storage, log file is created when does not exist.
+     *
+     * @param logFile
+     *            log file, not-null
+     * @param cacheSize
+     *            maximum number of statuses cached in memory, zero or greater
+     * @param retention
+     *            how long are statuses kept, null for unlimited
+     */
+    public static FileStatusStorage open(Path logFile, int cacheSize, Duration retention) throws IOException {
+        Validate.notNull(logFile);
+        Validate.isTrue(cacheSize >= 0);
+        Validate.isTrue(retention == null || !retention.isNegative());
+
+        FileStatusStorage storage = new FileStatusStorage(logFile, cacheSize, retention);
+        storage.load();
+        return storage;
+    }
+
+    @Override
+    public synchronized void saveTransferStatus(String transferId, TransferStatus status) {
+        Validate.notNull(transferId);
+        Validate.notNull(status);
+        checkOpen();
+
+        expireRecords();
+        // status of resumed transfer replaces previous record, index stays ordered by save time
+        if (index.remove(transferId) != null) {
+            cache.remove(transferId);
+            obsoleteRecords++;
+        }
+        StatusRecord record = new StatusRecord(transferId, System.currentTimeMillis(), status);
+        try {
+            long position = log.append(record.toBytes());
+            index.put(transferId, new IndexEntry(position, record.getSavedAt()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save transfer status, transferId=" + transferId, e);
+        }
+        cache.put(transferId, status);
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized TransferStatus getTransferStatus(String transferId) {
+        checkOpen();
+
+        expireRecords();
+        TransferStatus status = cache.get(transferId);
+        if (status != null) {
+            return status;
+        }
+        IndexEntry entry = index.get(transferId);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            status = StatusRecord.fromBytes(log.read(entry.position)).getStatus();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read transfer status, transferId=" + transferId, e);
+        }
+        cache.put(transferId, status);
+        return status;
+    }
+
+    /**
+     * @return Number of stored statuses within retention.
+     */
+    public synchronized int size() {
+        expireRecords();
+        return index.size();
+    }
+
+    /**
+     * Rewrites log without expired and duplicate records.
+     */
+    public synchronized void compact() throws IOException {
+        checkOpen();
+
+        expireRecords();
+        long[] newPositions = new long[index.size()];
+        log.compact(writer -> {
+            int i = 0;
+            for (IndexEntry entry : index.values()) {
+                newPositions[i++] = writer.write(log.read(entry.position));
+            }
+        });
+        // index is updated after log was replaced
+        int i = 0;
+        for (IndexEntry entry : index.values()) {
+            entry.position = newPositions[i++];
+        }
+        obsoleteRecords = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+        index.clear();
+        cache.clear();
+    }
+
+    private void checkOpen() {
+        Validate.validState(log != null, "Status storage is closed");
+    }
+
+    private void load() throws IOException {
+        log = RecordLog.open(logFile, MAGIC, (position, data) -> {
+            StatusRecord record = StatusRecord.readKey(data);
+            // later record replaces previous one
+            if (index.remove(record.getTransferId()) != null) {
+                obsoleteRecords++;
+            }
+            index.put(record.getTransferId(), new IndexEntry(position, record.getSavedAt()));
+        });
+        obsoleteRecords += log.getSkippedRecords();
+        expireRecords();
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes records older than retention from index. Caller must ensure synchronization.
+     */
+    private void expireRecords() {
+        if (retentionMillis <= 0) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - retentionMillis;
+        Iterator<Map.Entry<String, IndexEntry>> it = index.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, IndexEntry> entry = it.next();
+            // index is ordered by save time
+            if (entry.getValue().savedAt >= limit) {
+                break;
+            }
+            it.remove();
+            cache.remove(entry.getKey());
+            obsoleteRecords++;
+        }
+    }
+
+    /**
+     * Compacts log when obsolete records prevail. Caller must ensure synchronization.
+     */
+    private void compactIfNeeded() {
+        if (obsoleteRecords < MIN_COMPACT_RECORDS || obsoleteRecords <= index.size()) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            // log is still valid, compaction will be repeated
+            logger.error("Failed to compact status log, file=" + logFile, e);
+        }
+    }
+
+    private static class IndexEntry {
+
+        long position;
+
+        final long savedAt;
+
+        IndexEntry(long position, long savedAt) {
+            this.position = position;
+            this.savedAt = savedAt;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.lightcomp.ft.server.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import com.lightcomp.ft.server.ErrorDesc;
+import com.lightcomp.ft.server.TransferState;
+import com.lightcomp.ft.server.TransferStatus;
+import com.lightcomp.ft.server.internal.ErrorDescImpl;
+import com.lightcomp.ft.xsd.v1.GenericDataType;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+
+/**
+ * Binary record of terminated transfer status stored in log.
+ */
+class StatusRecord {
+
+    private static final QName RESPONSE_NAME = new QName("response");
+
+    private static JAXBContext jaxbContext;
+
+    private final String transferId;
+
+    private final long savedAt;
+
+    private final TransferStatus status;
+
+    StatusRecord(String transferId, long savedAt, TransferStatus status) {
+        this.transferId = transferId;
+        this.savedAt = savedAt;
+        this.status = status;
+    }
+
+    public String getTransferId() {
+        return transferId;
+    }
+
+    /**
+     * @return Time in milliseconds when status was saved.
+     */
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            writeString(out, transferId);
+            out.writeLong(savedAt);
+            out.writeUTF(status.getState().name());
+            writeDateTime(out, status.getLastActivity());
+            writeDateTime(out, status.getStartTime());
+            out.writeLong(status.getTransferedSize());
+            out.writeInt(status.getTransferedSeqNum());
+            out.writeInt(status.getProcessedSeqNum());
+            writeResponse(out, status.getResponse());
+            writeErrorDesc(out, status.getErrorDesc());
+        }
+        return bos.toByteArray();
+    }
+
+    public static StatusRecord fromBytes(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            String transferId = readString(in);
+            long savedAt = in.readLong();
+            TransferState state = TransferState.valueOf(in.readUTF());
+            LocalDateTime lastActivity = readDateTime(in);
+            LocalDateTime startTime = readDateTime(in);
+            long transferedSize = in.readLong();
+            int transferedSeqNum = in.readInt();
+            int processedSeqNum = in.readInt();
+            GenericDataType response = readResponse(in);
+            ErrorDesc errorDesc = readErrorDesc(in);
+            StoredStatus status = new StoredStatus(state, lastActivity, startTime, transferedSize, transferedSeqNum,
+                    processedSeqNum, response, errorDesc);
+            return new StatusRecord(transferId, savedAt, status);
+        }
+    }
+
+    /**
+     * Reads only transfer id and save time, status is not deserialized.
+     */
+    public static StatusRecord readKey(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            String transferId = readString(in);
+            long savedAt = in.readLong();
+            return new StatusRecord(transferId, savedAt, null);
+        }
+    }
+
+    private static void writeResponse(DataOutputStream out, GenericDataType response) throws IOException {
+        if (response == null) {
+            writeString(out, null);
+            return;
+        }
+        StringWriter sw = new StringWriter();
+        try {
+            getJaxbContext().createMarshaller()
+                    .marshal(new JAXBElement<>(RESPONSE_NAME, GenericDataType.class, response), sw);
+        } catch (JAXBException e) {
+            throw new IOException("Failed to serialize transfer response", e);
+        }
+        writeString(out, sw.toString());
+    }
+
+    private static GenericDataType readResponse(DataInputStream in) throws IOException {
+        String xml = readString(in);
+        if (xml == null) {
+            return null;
+        }
+        try {
+            return getJaxbContext().createUnmarshaller()
+                    .unmarshal(new StreamSource(new StringReader(xml)), GenericDataType.class).getValue();
+        } catch (JAXBException e) {
+            throw new IOException("Failed to deserialize transfer response", e);
+        }
+    }
+
+    private static void writeErrorDesc(DataOutputStream out, ErrorDesc errorDesc) throws IOException {
+        out.writeBoolean(errorDesc != null);
+        if (errorDesc == null) {
+            return;
+        }
+        writeString(out, errorDesc.getMessage());
+        writeString(out, errorDesc.getDetail());
+        // parameters are stored as strings
+        Map<String, Object> params = errorDesc.getParams();
+        out.writeInt(params != null ? params.size() : -1);
+        if (params != null) {
+            for (Map.Entry<String, Object> param : params.entrySet()) {
+                writeString(out, param.getKey());
+                writeString(out, String.valueOf(param.getValue()));
+            }
+        }
+        StackTraceElement[] stackTrace = errorDesc.getStackTrace();
+        out.writeInt(stackTrace != null ? stackTrace.length : -1);
+        if (stackTrace != null) {
+            for (StackTraceElement ste : stackTrace) {
+                writeString(out, ste.getClassName());
+                writeString(out, ste.getMethodName());
+                writeString(out, ste.getFileName());
+                out.writeInt(ste.getLineNumber());
+            }
+        }
+    }
+
+    private static ErrorDesc readErrorDesc(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        ErrorDescImpl errorDesc = new ErrorDescImpl(readString(in));
+        errorDesc.setDetail(readString(in));
+        int paramCount = in.readInt();
+        if (paramCount >= 0) {
+            Map<String, Object> params = new LinkedHashMap<>();
+            for (int i = 0; i < paramCount; i++) {
+                params.put(readString(in), readString(in));
+            }
+            errorDesc.setParams(params);
+        }
+        int steCount = in.readInt();
+        if (steCount >= 0) {
+            StackTraceElement[] stackTrace = new StackTraceElement[steCount];
+            for (int i = 0; i < steCount; i++) {
+                stackTrace[i] = new StackTraceElement(readString(in), readString(in), readString(in), in.readInt());
+            }
+            errorDesc.setStackTrace(stackTrace);
+        }
+        return errorDesc;
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime dateTime) throws IOException {
+        writeString(out, dateTime != null ? dateTime.toString() : null);
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        String str = readString(in);
+        return str != null ? LocalDateTime.parse(str) : null;
+    }
+
+    /**
+     * Writes nullable string of any length.
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(GenericDataType.class);
+        }
+        return jaxbContext;
+    }
+}
@@ -0,0 +1,90 @@
+package com.lightcomp.ft.server.storage;
+
+import java.time.LocalDateTime;
+
+import com.lightcomp.ft.server.ErrorDesc;
+import com.lightcomp.ft.server.TransferState;
+import com.lightcomp.ft.server.TransferStatus;
+import com.lightcomp.ft.xsd.v1.GenericDataType;
+
+/**
+ * Immutable transfer status loaded from storage.
+ */
+class StoredStatus implements TransferStatus {
+
+    private final TransferState state;
+
+    private final LocalDateTime lastActivity;
+
+    private final LocalDateTime startTime;
+
+    private final long transferedSize;
+
+    private final int transferedSeqNum;
+
+    private final int processedSeqNum;
+
+    private final GenericDataType response;
+
+    private final ErrorDesc errorDesc;
+
+    StoredStatus(TransferState state, LocalDateTime lastActivity, LocalDateTime startTime, long transferedSize,
+            int transferedSeqNum, int processedSeqNum, GenericDataType response, ErrorDesc errorDesc) {
+        this.state = state;
+        this.lastActivity = lastActivity;
+        this.startTime = startTime;
+        this.transferedSize = transferedSize;
+        this.transferedSeqNum = transferedSeqNum;
+        this.processedSeqNum = processedSeqNum;
+        this.response = response;
+        this.errorDesc = errorDesc;
+    }
+
+    @Override
+    public TransferState getState() {
+        return state;
+    }
+
+    @Override
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public long getTransferedSize() {
+        return transferedSize;
+    }
+
+    @Override
+    public int getTransferedSeqNum() {
+        return transferedSeqNum;
+    }
+
+    @Override
+    public int getProcessedSeqNum() {
+        return processedSeqNum;
+    }
+
+    @Override
+    public GenericDataType getResponse() {
+        return response;
+    }
+
+    @Override
+    public ErrorDesc getErrorDesc() {
+        return errorDesc;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredStatus [state=" + state + ", lastActivity=" + lastActivity + ", startTime=" + startTime
+                + ", transferedSize=" + transferedSize + ", transferedSeqNum=" + transferedSeqNum
+                + ", processedSeqNum=" + processedSeqNum + ", response=" + response + ", errorDesc=" + errorDesc
+                + "]";
+    }
+}
@@ -12,7 +12,7 @@ public class StatusStorageImpl implements TransferStatusStorage {
 
     @Override
     public synchronized void saveTransferStatus(String transferId, TransferStatus status) {
-        transferIdMap.putIfAbsent(transferId, status);
+        transferIdMap.put(transferId, status);
     }
 
     @Override
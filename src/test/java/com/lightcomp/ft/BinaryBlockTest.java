@@ -0,0 +1,130 @@
+package com.lightcomp.ft;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lightcomp.ft.core.blocks.BinaryBlockReader;
+import com.lightcomp.ft.core.blocks.BinaryBlockWriter;
+import com.lightcomp.ft.core.recv.RecvContext;
+import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.xsd.v1.DirBegin;
+import com.lightcomp.ft.xsd.v1.DirEnd;
+import com.lightcomp.ft.xsd.v1.FileBegin;
+import com.lightcomp.ft.xsd.v1.FileData;
+import com.lightcomp.ft.xsd.v1.FileEnd;
+import com.lightcomp.ft.xsd.v1.FilePack;
+import com.lightcomp.ft.xsd.v1.PackedFile;
+
+public class BinaryBlockTest {
+
+    @Test
+    public void testRoundTrip() throws TransferException {
+        BinaryBlockWriter writer = new BinaryBlockWriter(0);
+
+        DirBegin db = new DirBegin();
+        db.setN("dir žluťoučký");
+        writer.write(db);
+
+        FileBegin fb = new FileBegin();
+        fb.setN("a.txt");
+        fb.setFs(Long.MAX_VALUE);
+        writer.write(fb);
+
+        FileData fd = new FileData();
+        fd.setOff(300);
+        fd.setDs(0);
+        writer.write(fd);
+
+        FileEnd fe = new FileEnd();
+        fe.setLm(-1000);
+        writer.write(fe);
+
+        FilePack fp = new FilePack();
+        for (int i = 0; i < 2; i++) {
+            PackedFile pf = new PackedFile();
+            pf.setN(i + ".txt");
+            pf.setFs(i * 128);
+            pf.setLm(Long.MIN_VALUE + i);
+            fp.getFiles().add(pf);
+        }
+        writer.write(fp);
+
+        writer.write(new DirEnd());
+
+        byte[] encoded = writer.toByteArray();
+        Assert.assertEquals(writer.size(), encoded.length);
+
+        List<String> calls = receiveAll(encoded);
+        Assert.assertEquals(Arrays.asList(
+                "openDir[dir žluťoučký]",
+                "openFile[a.txt, " + Long.MAX_VALUE + "]",
+                "writeFileData[300, 0]",
+                "closeFile[-1000]",
+                "openFilePack",
+                "writePackedFile[0.txt, 0, " + Long.MIN_VALUE + "]",
+                "writePackedFile[1.txt, 128, " + (Long.MIN_VALUE + 1) + "]",
+                "closeFilePack",
+                "closeDir"), calls);
+    }
+
+    @Test
+    public void testMalformed() {
+        // unknown block type
+        assertMalformed(new byte[] { 99 });
+        // truncated varint of file size
+        assertMalformed(new byte[] { 3, 1, 'a', (byte) 0x80 });
+        // varint longer than 64 bits
+        byte[] overlong = new byte[12];
+        Arrays.fill(overlong, (byte) 0x80);
+        overlong[0] = 4;
+        overlong[11] = 1;
+        assertMalformed(overlong);
+        // name length exceeds encoded blocks
+        assertMalformed(new byte[] { 1, 10, 'a' });
+        // negative name length
+        assertMalformed(withNegativeNumber(new byte[] { 1 }));
+        // negative file size
+        assertMalformed(withNegativeNumber(new byte[] { 3, 1, 'a' }));
+        // negative data offset
+        assertMalformed(withNegativeNumber(new byte[] { 4 }));
+    }
+
+    /**
+     * Appends varint of -1 to block prefix.
+     */
+    private static byte[] withNegativeNumber(byte[] prefix) {
+        byte[] encoded = Arrays.copyOf(prefix, prefix.length + 10);
+        Arrays.fill(encoded, prefix.length, encoded.length - 1, (byte) 0xFF);
+        encoded[encoded.length - 1] = 1;
+        return encoded;
+    }
+
+    private static void assertMalformed(byte[] encoded) {
+        try {
+            receiveAll(encoded);
+            Assert.fail("Malformed blocks decoded: " + Arrays.toString(encoded));
+        } catch (TransferException e) {
+            // expected
+        }
+    }
+
+    private static List<String> receiveAll(byte[] encoded) throws TransferException {
+        List<String> calls = new ArrayList<>();
+        RecvContext ctx = (RecvContext) Proxy.newProxyInstance(RecvContext.class.getClassLoader(),
+                new Class<?>[] { RecvContext.class }, (proxy, method, args) -> {
+                    calls.add(method.getName() + (args != null ? Arrays.toString(args) : ""));
+                    return null;
+                });
+        BinaryBlockReader reader = new BinaryBlockReader(ByteBuffer.wrap(encoded));
+        while (reader.hasNext()) {
+            reader.receiveNext(ctx);
+        }
+        return calls;
+    }
+}
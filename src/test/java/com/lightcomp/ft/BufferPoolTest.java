@@ -0,0 +1,37 @@
+package com.lightcomp.ft;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lightcomp.ft.common.BufferPool;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testReuse() {
+        BufferPool pool = new BufferPool(true, 16384);
+
+        ByteBuffer bb = pool.acquire(5000);
+        Assert.assertTrue(bb.isDirect());
+        Assert.assertEquals(8192, bb.capacity());
+        Assert.assertEquals(5000, bb.limit());
+        pool.release(bb);
+        Assert.assertEquals(8192, pool.getPooledBytes());
+
+        // same size class is reused
+        Assert.assertSame(bb, pool.acquire(8000));
+        Assert.assertEquals(1, pool.getAllocatedCount());
+        Assert.assertEquals(2, pool.getAcquiredCount());
+
+        // large buffers and buffers over limit are not pooled
+        pool.release(pool.acquire(BufferPool.MAX_BUFFER_SIZE + 1));
+        pool.release(pool.acquire(16384));
+        pool.release(pool.acquire(8192));
+        Assert.assertEquals(16384, pool.getPooledBytes());
+        // foreign buffer is ignored
+        pool.release(ByteBuffer.allocate(4096));
+        Assert.assertEquals(16384, pool.getPooledBytes());
+    }
+}
@@ -0,0 +1,111 @@
+package com.lightcomp.ft;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lightcomp.ft.common.Checksum.Algorithm;
+import com.lightcomp.ft.common.PathUtils;
+import com.lightcomp.ft.core.send.items.ChecksumCache;
+import com.lightcomp.ft.core.send.items.SimpleFile;
+
+public class ChecksumCacheTest {
+
+    private Path tempDir;
+
+    private Path cacheDir;
+
+    private Path file;
+
+    private byte[] checksum;
+
+    @Before
+    public void before() throws IOException {
+        tempDir = Files.createTempDirectory("checksum-cache-tests");
+        cacheDir = tempDir.resolve("cache");
+        file = tempDir.resolve("a.bin");
+        Files.write(file, new byte[] { 1, 2, 3 });
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+        checksum = new byte[Algorithm.SHA_512.getByteLen()];
+        checksum[0] = 1;
+    }
+
+    @After
+    public void after() throws IOException {
+        PathUtils.deleteWithChildren(tempDir);
+    }
+
+    @Test
+    public void testUnchangedFile() throws IOException {
+        try (ChecksumCache cache = ChecksumCache.open(cacheDir, 10)) {
+            SimpleFile sf = new SimpleFile(file, null, cache);
+            Assert.assertNull(sf.getChecksum(Algorithm.SHA_512));
+            sf.onChecksumGenerated(Algorithm.SHA_512, checksum);
+
+            Assert.assertArrayEquals(checksum, new SimpleFile(file, null, cache).getChecksum(Algorithm.SHA_512));
+        }
+        // cached checksum is used after reopen
+        try (ChecksumCache cache = ChecksumCache.open(cacheDir, 10)) {
+            Assert.assertArrayEquals(checksum, new SimpleFile(file, null, cache).getChecksum(Algorithm.SHA_512));
+        }
+    }
+
+    @Test
+    public void testChangedFile() throws IOException {
+        try (ChecksumCache cache = ChecksumCache.open(cacheDir, 10)) {
+            SimpleFile sf = new SimpleFile(file, null, cache);
+            Assert.assertNull(sf.getChecksum(Algorithm.SHA_512));
+            sf.onChecksumGenerated(Algorithm.SHA_512, checksum);
+
+            Files.setLastModifiedTime(file, FileTime.fromMillis(2000));
+            Assert.assertNull(new SimpleFile(file, null, cache).getChecksum(Algorithm.SHA_512));
+
+            Files.write(file, new byte[] { 1, 2, 3, 4 });
+            Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+            Assert.assertNull(new SimpleFile(file, null, cache).getChecksum(Algorithm.SHA_512));
+
+            // file changed during transfer is not cached
+            sf = new SimpleFile(file, null, cache);
+            Assert.assertNull(sf.getChecksum(Algorithm.SHA_512));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(3000));
+            sf.onChecksumGenerated(Algorithm.SHA_512, checksum);
+            Assert.assertNull(new SimpleFile(file, null, cache).getChecksum(Algorithm.SHA_512));
+        }
+    }
+
+    @Test
+    public void testOtherAlgorithm() throws IOException {
+        try (ChecksumCache cache = ChecksumCache.open(cacheDir, 10)) {
+            SimpleFile sf = new SimpleFile(file, null, cache);
+            Assert.assertNull(sf.getChecksum(Algorithm.SHA_512_TREE));
+            sf.onChecksumGenerated(Algorithm.SHA_512_TREE, checksum);
+
+            // checksum of same length generated by other algorithm is not used
+            Assert.assertNull(new SimpleFile(file, null, cache).getChecksum(Algorithm.SHA_512));
+            Assert.assertArrayEquals(checksum,
+                    new SimpleFile(file, null, cache).getChecksum(Algorithm.SHA_512_TREE));
+        }
+    }
+
+    @Test
+    public void testMaxEntries() throws IOException {
+        try (ChecksumCache cache = ChecksumCache.open(cacheDir, 2)) {
+            for (int i = 0; i < 3; i++) {
+                cache.put(tempDir.resolve(i + ".bin"), i, 1000, Algorithm.SHA_512, checksum);
+            }
+            Assert.assertEquals(2, cache.size());
+            Assert.assertNull(cache.get(tempDir.resolve("0.bin"), 0, 1000, Algorithm.SHA_512));
+        }
+        // evicted entries are not loaded
+        try (ChecksumCache cache = ChecksumCache.open(cacheDir, 2)) {
+            Assert.assertEquals(2, cache.size());
+            Assert.assertArrayEquals(checksum, cache.get(tempDir.resolve("2.bin"), 2, 1000, Algorithm.SHA_512));
+        }
+    }
+}
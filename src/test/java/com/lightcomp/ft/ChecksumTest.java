@@ -0,0 +1,67 @@
+package com.lightcomp.ft;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lightcomp.ft.common.Checksum.Algorithm;
+import com.lightcomp.ft.common.ChecksumGenerator;
+
+import jakarta.xml.bind.DatatypeConverter;
+
+public class ChecksumTest {
+
+    @Test
+    public void testTreeChecksum() {
+        // multiple leaves and partial last leaf
+        byte[] data = new byte[3 * 1024 * 1024 + 1234];
+        new Random(1).nextBytes(data);
+
+        byte[] expected = generate(Algorithm.SHA_512_TREE, data, data.length);
+        Assert.assertEquals(Algorithm.SHA_512_TREE.getByteLen(), expected.length);
+        // result does not depend on update chunks
+        Assert.assertArrayEquals(expected, generate(Algorithm.SHA_512_TREE, data, 1000));
+        Assert.assertArrayEquals(expected, generate(Algorithm.SHA_512_TREE, data, 65536));
+        // different from sequential hash
+        Assert.assertFalse(Arrays.equals(expected, generate(Algorithm.SHA_512, data, data.length)));
+    }
+
+    @Test
+    public void testFastChecksums() {
+        Assert.assertEquals("ef46db3751d8e999", hex(generate(Algorithm.XXH64, new byte[0], 1)));
+        byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals("44bc2cf5ad770999", hex(generate(Algorithm.XXH64, abc, 1)));
+        // longer than one stripe, updated in parts
+        byte[] text = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals("fbcea83c8a378bf1", hex(generate(Algorithm.XXH64, text, 5)));
+
+        byte[] digits = "123456789".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals("e3069283", hex(generate(Algorithm.CRC32C, digits, 4)));
+        Assert.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                hex(generate(Algorithm.SHA_256, abc, 2)));
+    }
+
+    private static String hex(byte[] b) {
+        return DatatypeConverter.printHexBinary(b).toLowerCase();
+    }
+
+    private static byte[] generate(Algorithm algorithm, byte[] data, int chunkSize) {
+        ChecksumGenerator chg = ChecksumGenerator.create(algorithm);
+        boolean buffer = false;
+        for (int off = 0; off < data.length; off += chunkSize) {
+            int len = Math.min(chunkSize, data.length - off);
+            // alternate array and buffer updates
+            if (buffer) {
+                chg.update(off + len, ByteBuffer.wrap(data, off, len));
+            } else {
+                chg.update(off + len, data, off, len);
+            }
+            buffer = !buffer;
+        }
+        return chg.generate();
+    }
+}
@@ -0,0 +1,158 @@
+package com.lightcomp.ft;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lightcomp.ft.common.PathUtils;
+import com.lightcomp.ft.server.TransferState;
+import com.lightcomp.ft.server.TransferStatus;
+import com.lightcomp.ft.server.internal.ErrorDescImpl;
+import com.lightcomp.ft.server.internal.TransferStatusImpl;
+import com.lightcomp.ft.server.storage.FileStatusStorage;
+import com.lightcomp.ft.xsd.v1.GenericDataType;
+
+public class FileStatusStorageTest {
+
+    private Path tempDir;
+
+    @Before
+    public void before() throws IOException {
+        tempDir = Files.createTempDirectory("file-status-storage-tests");
+    }
+
+    @After
+    public void after() throws IOException {
+        PathUtils.deleteWithChildren(tempDir);
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path logFile = tempDir.resolve("status.log");
+
+        TransferStatusImpl finished = new TransferStatusImpl();
+        finished.changeState(TransferState.STARTED);
+        finished.addTransferedData(100);
+        GenericDataType response = new GenericDataType();
+        response.setId("resp");
+        response.setType("test");
+        response.setBinData(new byte[] { 1, 2, 3 });
+        finished.changeStateToFinished(response);
+
+        TransferStatusImpl failed = new TransferStatusImpl();
+        ErrorDescImpl errorDesc = new ErrorDescImpl("Test failure");
+        errorDesc.setParams(Collections.singletonMap("seqNum", 5));
+        failed.changeStateToFailed(errorDesc);
+
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 1, null)) {
+            storage.saveTransferStatus("1", finished.copy());
+            storage.saveTransferStatus("2", failed.copy());
+            // status of resumed transfer replaces previous one
+            storage.saveTransferStatus("1", failed.copy());
+            storage.saveTransferStatus("1", finished.copy());
+        }
+        // append incomplete record
+        Files.write(logFile, new byte[] { 0, 0, 0, 100, 1 }, StandardOpenOption.APPEND);
+
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 1, null)) {
+            Assert.assertEquals(2, storage.size());
+
+            TransferStatus ts = storage.getTransferStatus("1");
+            Assert.assertEquals(TransferState.FINISHED, ts.getState());
+            Assert.assertEquals(100, ts.getTransferedSize());
+            Assert.assertEquals(finished.getLastActivity(), ts.getLastActivity());
+            Assert.assertEquals("resp", ts.getResponse().getId());
+            Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, ts.getResponse().getBinData());
+
+            ts = storage.getTransferStatus("2");
+            Assert.assertEquals(TransferState.FAILED, ts.getState());
+            Assert.assertEquals("Test failure", ts.getErrorDesc().getMessage());
+            Assert.assertEquals("5", ts.getErrorDesc().getParams().get("seqNum"));
+
+            Assert.assertNull(storage.getTransferStatus("3"));
+            // storage is writable after truncation
+            storage.saveTransferStatus("3", failed.copy());
+        }
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 1, null)) {
+            Assert.assertEquals(3, storage.size());
+        }
+    }
+
+    @Test
+    public void testCorruptedRecord() throws IOException {
+        Path logFile = tempDir.resolve("status.log");
+
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 0, null)) {
+            storage.saveTransferStatus("1", new TransferStatusImpl());
+            storage.saveTransferStatus("2", new TransferStatusImpl());
+            storage.saveTransferStatus("3", new TransferStatusImpl());
+        }
+        // corrupt data of second record, log header is followed by length and CRC of first record
+        byte[] log = Files.readAllBytes(logFile);
+        int position = 4 + 8 + ByteBuffer.wrap(log, 4, 4).getInt();
+        log[position + 8] ^= 1;
+        Files.write(logFile, log);
+
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 0, null)) {
+            // records after corrupted record are kept
+            Assert.assertEquals(2, storage.size());
+            Assert.assertNotNull(storage.getTransferStatus("1"));
+            Assert.assertNull(storage.getTransferStatus("2"));
+            Assert.assertNotNull(storage.getTransferStatus("3"));
+        }
+
+        // corrupt length of first record
+        log = Files.readAllBytes(logFile);
+        log[4] = (byte) 0x7f;
+        Files.write(logFile, log);
+
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 0, null)) {
+            // records after corrupted length are kept
+            Assert.assertEquals(1, storage.size());
+            Assert.assertNotNull(storage.getTransferStatus("3"));
+        }
+    }
+
+    @Test
+    public void testIncompleteHeader() throws IOException {
+        Path logFile = tempDir.resolve("status.log");
+        Files.write(logFile, new byte[] { 0x46 });
+
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 0, null)) {
+            storage.saveTransferStatus("1", new TransferStatusImpl());
+        }
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 0, null)) {
+            Assert.assertNotNull(storage.getTransferStatus("1"));
+        }
+    }
+
+    @Test
+    public void testRetention() throws IOException, InterruptedException {
+        Path logFile = tempDir.resolve("status.log");
+
+        try (FileStatusStorage storage = FileStatusStorage.open(logFile, 10, Duration.ofMillis(200))) {
+            storage.saveTransferStatus("1", new TransferStatusImpl());
+            Assert.assertNotNull(storage.getTransferStatus("1"));
+
+            Thread.sleep(300);
+
+            storage.saveTransferStatus("2", new TransferStatusImpl());
+            Assert.assertNull(storage.getTransferStatus("1"));
+            Assert.assertNotNull(storage.getTransferStatus("2"));
+
+            long size = Files.size(logFile);
+            storage.compact();
+            Assert.assertTrue(Files.size(logFile) < size);
+            Assert.assertNotNull(storage.getTransferStatus("2"));
+        }
+    }
+}
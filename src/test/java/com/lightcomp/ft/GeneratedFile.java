@@ -87,7 +87,7 @@ public class GeneratedFile implements SourceFile {
                 }
                 long rem = size - pos;
                 int len = (int) Math.min(rem, dst.remaining());
-                byte[] data = createDataSeq(len);
+                byte[] data = createDataSeq(pos, len);
                 dst.put(data, 0, len);
                 pos += len;
                 return len;
@@ -95,9 +95,12 @@ public class GeneratedFile implements SourceFile {
         };
     }
 
-    private static byte[] createDataSeq(int len) {
+    /**
+     * Data depend only on position in file, file can be read by multiple channels.
+     */
+    private static byte[] createDataSeq(long pos, int len) {
         byte[] data = new byte[len];
-        int cindex = 0;
+        int cindex = (int) (pos % CHARS.length);
         for (int i = 0; i < len; i++) {
             data[i] = CHARS[cindex++];
             if (cindex == CHARS.length) {
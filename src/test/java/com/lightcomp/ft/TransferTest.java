@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
@@ -49,12 +50,14 @@ import com.lightcomp.ft.core.send.items.MemoryFile;
 import com.lightcomp.ft.core.send.items.SourceItem;
 import com.lightcomp.ft.core.send.items.SourceItemReader;
 import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.metrics.MicrometerTransferMetrics;
 import com.lightcomp.ft.server.DownloadHandler;
 import com.lightcomp.ft.server.Server;
 import com.lightcomp.ft.server.ServerConfig;
 import com.lightcomp.ft.server.TransferHandler;
 import com.lightcomp.ft.server.UploadHandler;
 import com.lightcomp.ft.simple.StatusStorageImpl;
+import com.lightcomp.ft.xsd.v1.BlockEncoding;
 import com.lightcomp.ft.xsd.v1.DirBegin;
 import com.lightcomp.ft.xsd.v1.Frame;
 import com.lightcomp.ft.xsd.v1.GenericDataType;
@@ -62,6 +65,8 @@ import com.lightcomp.ft.xsd.v1.ReceiveRequest;
 import com.lightcomp.ft.xsd.v1.SendRequest;
 import com.lightcomp.ft.xsd.v1.XmlData;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.xml.bind.DatatypeConverter;
 import net.jodah.concurrentunit.Waiter;
 
@@ -259,6 +264,378 @@ public class TransferTest {
 		Assert.assertTrue(sts.getTransferedSeqNum() == 3);
 	}
 
+	@Test
+	public void testPreallocatedUpload() throws TimeoutException, InterruptedException, IOException {
+		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
+			@Override
+			protected UploadHandler createUpload(String transferId, Path uploadDir, GenericDataType request) {
+				return new UploadHandlerImpl(transferId, null, request.getId(), uploadDir, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(uth);
+		scfg.setPreallocateFiles(true);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setMaxFrameSize(70); // 70B
+		startClient(ccfg);
+
+		ListReader lr = new ListReader(3);
+		lr.addItem(new MemoryFile("1.txt", new byte[0], 0)); // empty
+		lr.addItem(new MemoryFile("2.txt", new byte[] { 0x41, 0x42, 0x43, 0x44, 0x45 }, 0)); // 5 bytes
+		lr.addItem(new GeneratedFile("3.txt", 100, 0)); // 100B written in multiple frames
+		BaseDir dir = new BaseDir("test", lr);
+
+		UploadRequestImpl request = new UploadRequestImpl(createReqData("req"), ListReader.getSingleton(dir), waiter,
+				TransferState.FINISHED);
+
+		client.upload(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		Path uploadDir = tempDir.resolve(uth.getLastTransferId()).resolve("test");
+		Assert.assertEquals(0, Files.size(uploadDir.resolve("1.txt")));
+		Assert.assertEquals(5, Files.size(uploadDir.resolve("2.txt")));
+		Assert.assertEquals(100, Files.size(uploadDir.resolve("3.txt")));
+	}
+
+	@Test
+	public void testConcurrentWriteUpload() throws TimeoutException, InterruptedException, IOException {
+		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
+			@Override
+			protected UploadHandler createUpload(String transferId, Path uploadDir, GenericDataType request) {
+				return new UploadHandlerImpl(transferId, null, request.getId(), uploadDir, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(uth);
+		scfg.setFileWriteThreads(4);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setMaxFrameSize(1000); // several small files per frame
+		startClient(ccfg);
+
+		ListReader sublr = new ListReader(1);
+		sublr.addItem(new MemoryFile("a.txt", new byte[] { 0x41 }, 0));
+		ListReader lr = new ListReader(52);
+		for (int i = 0; i < 50; i++) {
+			byte[] data = new byte[i + 1];
+			Arrays.fill(data, (byte) i);
+			lr.addItem(new MemoryFile(i + ".txt", data, i * 1000));
+			if (i == 25) {
+				lr.addItem(new GeneratedFile("large.txt", 2500, 0)); // split between frames
+				lr.addItem(new BaseDir("sub", sublr));
+			}
+		}
+		BaseDir dir = new BaseDir("test", lr);
+
+		UploadRequestImpl request = new UploadRequestImpl(createReqData("req"), ListReader.getSingleton(dir), waiter,
+				TransferState.FINISHED);
+
+		client.upload(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		Path uploadDir = tempDir.resolve(uth.getLastTransferId()).resolve("test");
+		for (int i = 0; i < 50; i++) {
+			Path file = uploadDir.resolve(i + ".txt");
+			byte[] data = new byte[i + 1];
+			Arrays.fill(data, (byte) i);
+			Assert.assertArrayEquals(data, Files.readAllBytes(file));
+			Assert.assertEquals(i * 1000, Files.getLastModifiedTime(file).toMillis());
+		}
+		Assert.assertEquals(2500, Files.size(uploadDir.resolve("large.txt")));
+		Assert.assertArrayEquals(new byte[] { 0x41 }, Files.readAllBytes(uploadDir.resolve("sub").resolve("a.txt")));
+	}
+
+	@Test
+	public void testPackedFilesUpload() throws TimeoutException, InterruptedException, IOException {
+		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
+			@Override
+			protected UploadHandler createUpload(String transferId, Path uploadDir, GenericDataType request) {
+				return new UploadHandlerImpl(transferId, null, request.getId(), uploadDir, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(uth);
+		scfg.setFileWriteThreads(4);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setMaxFrameSize(300); // 11 packed files with checksum per frame
+		ccfg.setMaxPackedFileSize(50);
+		ccfg.setBlockEncoding(BlockEncoding.BINARY);
+		startClient(ccfg);
+
+		ListReader sublr = new ListReader(5);
+		for (int i = 0; i < 5; i++) {
+			sublr.addItem(new GeneratedFile(i + ".txt", 20, 0));
+		}
+		ListReader lr = new ListReader(42);
+		for (int i = 0; i < 20; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 20, i * 1000)); // packed
+		}
+		lr.addItem(new GeneratedFile("large.txt", 500, 0)); // split between frames
+		lr.addItem(new BaseDir("sub", sublr));
+		for (int i = 20; i < 40; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 20, i * 1000));
+		}
+		BaseDir dir = new BaseDir("test", lr);
+
+		UploadRequestImpl request = new UploadRequestImpl(createReqData("req"), ListReader.getSingleton(dir), waiter,
+				TransferState.FINISHED);
+
+		client.upload(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		Path uploadDir = tempDir.resolve(uth.getLastTransferId()).resolve("test");
+		for (int i = 0; i < 40; i++) {
+			Path file = uploadDir.resolve(i + ".txt");
+			Assert.assertEquals(20, Files.size(file));
+			Assert.assertEquals(i * 1000, Files.getLastModifiedTime(file).toMillis());
+		}
+		Assert.assertEquals(500, Files.size(uploadDir.resolve("large.txt")));
+		Assert.assertEquals(20, Files.size(uploadDir.resolve("sub").resolve("4.txt")));
+	}
+
+	@Test
+	public void testBinaryBlocksUpload() throws TimeoutException, InterruptedException, IOException {
+		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
+			@Override
+			protected UploadHandler createUpload(String transferId, Path uploadDir, GenericDataType request) {
+				return new UploadHandlerImpl(transferId, null, request.getId(), uploadDir, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(uth);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setMaxFrameSize(256);
+		ccfg.setBlockEncoding(BlockEncoding.BINARY);
+		startClient(ccfg);
+
+		ListReader sublr = new ListReader(2);
+		sublr.addItem(new GeneratedFile("empty.txt", 0, 0));
+		sublr.addItem(new GeneratedFile("a.txt", 100, 0));
+		ListReader lr = new ListReader(12);
+		for (int i = 0; i < 10; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 300, i * 1000)); // each file is split between frames
+		}
+		lr.addItem(new BaseDir("sub", sublr));
+		lr.addItem(BaseDir.getEmpty("empty"));
+		BaseDir dir = new BaseDir("test", lr);
+
+		UploadRequestImpl request = new UploadRequestImpl(createReqData("req"), ListReader.getSingleton(dir), waiter,
+				TransferState.FINISHED);
+
+		client.upload(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		Path uploadDir = tempDir.resolve(uth.getLastTransferId()).resolve("test");
+		for (int i = 0; i < 10; i++) {
+			Path file = uploadDir.resolve(i + ".txt");
+			Assert.assertEquals(300, Files.size(file));
+			Assert.assertEquals(i * 1000, Files.getLastModifiedTime(file).toMillis());
+		}
+		Assert.assertEquals(0, Files.size(uploadDir.resolve("sub").resolve("empty.txt")));
+		Assert.assertEquals(100, Files.size(uploadDir.resolve("sub").resolve("a.txt")));
+		Assert.assertTrue(Files.isDirectory(uploadDir.resolve("empty")));
+	}
+
+	@Test
+	public void testResumedUpload() throws TimeoutException, InterruptedException, IOException {
+		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
+			@Override
+			protected UploadHandler createUpload(String transferId, Path uploadDir, GenericDataType request) {
+				return new UploadHandlerImpl(transferId, null, request.getId(), uploadDir, server, waiter,
+						com.lightcomp.ft.server.TransferState.FAILED) {
+					@Override
+					public void onTransferProgress(com.lightcomp.ft.server.TransferStatus status) {
+						super.onTransferProgress(status);
+						// interrupt transfer after third frame
+						if (status.getProcessedSeqNum() == 3) {
+							throw new RuntimeException("Test interruption");
+						}
+					}
+				};
+			}
+
+			@Override
+			public UploadHandler onTransferResume(String transferId) {
+				return new UploadHandlerImpl(transferId, null, "req", tempDir.resolve(transferId), server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(uth);
+		scfg.setResumableUploads(true);
+		scfg.setWorkDir(Files.createDirectory(tempDir.resolve("work")));
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setMaxFrameSize(100); // 100B
+		startClient(ccfg);
+
+		byte[] data = new byte[1000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		SourceItemReader items = ListReader.getSingleton(new MemoryFile("1.bin", data, 0));
+
+		UploadRequestImpl request = new UploadRequestImpl(createReqData("req"), items, waiter, TransferState.FAILED);
+		client.upload(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		// restart server, transfer is resumed from checkpoint
+		stopServer();
+		startServer(scfg);
+
+		String transferId = uth.getLastTransferId();
+		request = new UploadRequestImpl(createReqData("req"), items, waiter, TransferState.FINISHED);
+		client.resumeUpload(request, transferId);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		Assert.assertArrayEquals(data, Files.readAllBytes(tempDir.resolve(transferId).resolve("1.bin")));
+
+		// checkpoint of finished transfer is deleted with transfer resources
+		stopServer();
+		Assert.assertFalse(Files.exists(scfg.getWorkDir().resolve(transferId + ".resume")));
+	}
+
+	@Test
+	public void testPipelinedUpload() throws TimeoutException, InterruptedException {
+		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
+			@Override
+			protected UploadHandler createUpload(String transferId, Path uploadDir, GenericDataType request) {
+				return new UploadHandlerImpl(transferId, null, request.getId(), uploadDir, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		MeterRegistry registry = new SimpleMeterRegistry();
+		ServerConfig scfg = prepareServerConfig(uth);
+		scfg.setUploadWindowSize(4);
+		scfg.setMetrics(new MicrometerTransferMetrics(registry, "server"));
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setMaxFrameSize(256);
+		ccfg.setUploadWindowSize(4);
+		ccfg.setMetrics(new MicrometerTransferMetrics(registry, "client"));
+		startClient(ccfg);
+
+		ListReader lr = new ListReader(10);
+		for (int i = 0; i < 10; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 300, 0)); // each file is split between frames
+		}
+		BaseDir dir = new BaseDir("test", lr);
+
+		UploadRequestImpl request = new UploadRequestImpl(createReqData("req"), ListReader.getSingleton(dir), waiter,
+				TransferState.FINISHED);
+
+		client.upload(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		server.stop();
+
+		// test storage status after server stopped
+		com.lightcomp.ft.server.TransferStatus sts = scfg.getStatusStorage().getTransferStatus(uth.getLastTransferId());
+		Assert.assertTrue(sts.getState() == com.lightcomp.ft.server.TransferState.FINISHED);
+		Assert.assertTrue(sts.getTransferedSize() == 3000);
+
+		// test metrics of both sides
+		Assert.assertEquals(3000, registry.get("filetransfer.data").tags("component", "server", "direction", "upload")
+				.counter().count(), 0);
+		Assert.assertEquals(3000, registry.get("filetransfer.data").tags("component", "client", "direction", "upload")
+				.counter().count(), 0);
+		Assert.assertEquals(sts.getTransferedSeqNum(), registry.get("filetransfer.frame")
+				.tags("component", "server", "stage", "process").timer().count());
+		Assert.assertEquals(0, registry.get("filetransfer.transfers.active").tags("component", "server", "direction",
+				"upload").gauge().value(), 0);
+	}
+
+	@Test
+	public void testGreaterClientWindowUpload() throws TimeoutException, InterruptedException {
+		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
+			@Override
+			protected UploadHandler createUpload(String transferId, Path uploadDir, GenericDataType request) {
+				return new UploadHandlerImpl(transferId, null, request.getId(), uploadDir, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(uth);
+		scfg.setUploadWindowSize(2);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setMaxFrameSize(256);
+		ccfg.setUploadWindowSize(5); // limited by server window
+		startClient(ccfg);
+
+		ListReader lr = new ListReader(10);
+		for (int i = 0; i < 10; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 300, 0)); // each file is split between frames
+		}
+		BaseDir dir = new BaseDir("test", lr);
+
+		UploadRequestImpl request = new UploadRequestImpl(createReqData("req"), ListReader.getSingleton(dir), waiter,
+				TransferState.FINISHED);
+
+		client.upload(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		server.stop();
+
+		com.lightcomp.ft.server.TransferStatus sts = scfg.getStatusStorage().getTransferStatus(uth.getLastTransferId());
+		Assert.assertTrue(sts.getState() == com.lightcomp.ft.server.TransferState.FINISHED);
+		Assert.assertTrue(sts.getTransferedSize() == 3000);
+	}
+
+	@Test
+	public void testReadAheadUpload() throws TimeoutException, InterruptedException {
+		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
+			@Override
+			protected UploadHandler createUpload(String transferId, Path uploadDir, GenericDataType request) {
+				return new UploadHandlerImpl(transferId, null, request.getId(), uploadDir, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(uth);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setMaxFrameSize(150000);
+		ccfg.setReadAheadBuffers(2);
+		ccfg.setReadAheadThreads(1);
+		startClient(ccfg);
+
+		ListReader lr = new ListReader(3);
+		for (int i = 0; i < 3; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 200000, 0)); // more buffers per file and frame
+		}
+		BaseDir dir = new BaseDir("test", lr);
+
+		UploadRequestImpl request = new UploadRequestImpl(createReqData("req"), ListReader.getSingleton(dir), waiter,
+				TransferState.FINISHED);
+
+		client.upload(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		server.stop();
+
+		com.lightcomp.ft.server.TransferStatus sts = scfg.getStatusStorage().getTransferStatus(uth.getLastTransferId());
+		Assert.assertTrue(sts.getState() == com.lightcomp.ft.server.TransferState.FINISHED);
+		Assert.assertTrue(sts.getTransferedSize() == 600000);
+	}
+
 	@Test
 	public void testMaxFrameBlocksUpload() throws TimeoutException, InterruptedException {
 		UploadTransferHandler uth = new UploadTransferHandler(tempDir) {
@@ -498,6 +875,191 @@ public class TransferTest {
 		Assert.assertTrue(sts.getTransferedSeqNum() == 1);
 	}
 
+	@Test
+	public void testBinaryBlocksDownload() throws TimeoutException, InterruptedException {
+		ListReader lr = new ListReader(11);
+		for (int i = 0; i < 10; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 300, 0)); // each file is split between frames
+		}
+		lr.addItem(BaseDir.getEmpty("empty"));
+		SourceItemReader payload = ListReader.getSingleton(new BaseDir("test", lr));
+
+		DwnldTransferHandler dth = new DwnldTransferHandler() {
+			@Override
+			protected DownloadHandler createDownload(String transferId, GenericDataType request) {
+				return new DwnldHandlerImpl(transferId, null, request.getId(), payload, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(dth);
+		scfg.setMaxFrameSize(256);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setBlockEncoding(BlockEncoding.BINARY);
+		startClient(ccfg);
+
+		DwnldRequestImpl request = new DwnldRequestImpl(createReqData("req"), tempDir, waiter, TransferState.FINISHED);
+
+		Transfer transfer = client.download(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		TransferStatus cts = transfer.getStatus();
+		Assert.assertTrue(cts.getState() == TransferState.FINISHED);
+		Assert.assertTrue(cts.getTransferedSize() == 3000);
+	}
+
+	@Test
+	public void testPreparedDownload() throws TimeoutException, InterruptedException, IOException {
+		ListReader lr = new ListReader(20);
+		for (int i = 0; i < 10; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 300, 0)); // each file is split between frames
+		}
+		for (int i = 10; i < 20; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 20, 0)); // packed
+		}
+		SourceItemReader payload = ListReader.getSingleton(new BaseDir("test", lr));
+
+		DwnldTransferHandler dth = new DwnldTransferHandler() {
+			@Override
+			protected DownloadHandler createDownload(String transferId, GenericDataType request) {
+				return new DwnldHandlerImpl(transferId, null, request.getId(), payload, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		MeterRegistry registry = new SimpleMeterRegistry();
+		ServerConfig scfg = prepareServerConfig(dth);
+		scfg.setMaxFrameSize(256);
+		scfg.setMaxPackedFileSize(50);
+		scfg.setPrepareFrameData(true);
+		scfg.setMetrics(new MicrometerTransferMetrics(registry, "server"));
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		startClient(ccfg);
+
+		DwnldRequestImpl request = new DwnldRequestImpl(createReqData("req"), tempDir, waiter, TransferState.FINISHED);
+
+		Transfer transfer = client.download(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		TransferStatus cts = transfer.getStatus();
+		Assert.assertTrue(cts.getState() == TransferState.FINISHED);
+		Assert.assertTrue(cts.getTransferedSize() == 3200);
+
+		// checksums were verified by client, data must match generated sequence
+		Path downloadDir = tempDir.resolve("test");
+		for (int i = 0; i < 20; i++) {
+			byte[] data = Files.readAllBytes(downloadDir.resolve(i + ".txt"));
+			Assert.assertEquals(i < 10 ? 300 : 20, data.length);
+			for (int j = 0; j < data.length; j++) {
+				Assert.assertEquals('a' + j % 26, data[j]);
+			}
+		}
+		Assert.assertTrue(registry.get("filetransfer.frame").tags("component", "server", "stage", "prepare").timer()
+				.count() > 0);
+	}
+
+	@Test
+	public void testPipelinedDownload() throws TimeoutException, InterruptedException {
+		ListReader lr = new ListReader(10);
+		for (int i = 0; i < 10; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 300, 0)); // each file is split between frames
+		}
+		SourceItemReader payload = ListReader.getSingleton(new BaseDir("test", lr));
+
+		DwnldTransferHandler dth = new DwnldTransferHandler() {
+			@Override
+			protected DownloadHandler createDownload(String transferId, GenericDataType request) {
+				return new DwnldHandlerImpl(transferId, null, request.getId(), payload, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(dth);
+		scfg.setMaxFrameSize(256);
+		scfg.setDownloadWindowSize(3);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setDownloadWindowSize(3);
+		startClient(ccfg);
+
+		DwnldRequestImpl request = new DwnldRequestImpl(createReqData("req"), tempDir, waiter, TransferState.FINISHED);
+
+		Transfer transfer = client.download(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		TransferStatus cts = transfer.getStatus();
+		Assert.assertTrue(cts.getState() == TransferState.FINISHED);
+		Assert.assertTrue(cts.getTransferedSize() == 3000);
+	}
+
+	@Test
+	public void testPipelinedFolderDownload() throws TimeoutException, InterruptedException {
+		DwnldTransferHandler dth = new DwnldTransferHandler() {
+			@Override
+			protected DownloadHandler createDownload(String transferId, GenericDataType request) {
+				return new DwnldHandlerImpl(transferId, null, request.getId(), TEST_DIR_PAYLOAD, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(dth);
+		scfg.setDownloadWindowSize(3);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		ccfg.setDownloadWindowSize(3);
+		startClient(ccfg);
+
+		DwnldRequestImpl request = new DwnldRequestImpl(createReqData("req"), tempDir, waiter, TransferState.FINISHED);
+
+		Transfer transfer = client.download(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		// frame without data is received ahead
+		TransferStatus cts = transfer.getStatus();
+		Assert.assertTrue(cts.getState() == TransferState.FINISHED);
+		Assert.assertTrue(cts.getTransferedSize() == 0);
+	}
+
+	@Test
+	public void testReadAheadDownload() throws TimeoutException, InterruptedException {
+		ListReader lr = new ListReader(3);
+		for (int i = 0; i < 3; i++) {
+			lr.addItem(new GeneratedFile(i + ".txt", 200000, 0)); // more buffers per file and frame
+		}
+		SourceItemReader payload = ListReader.getSingleton(new BaseDir("test", lr));
+
+		DwnldTransferHandler dth = new DwnldTransferHandler() {
+			@Override
+			protected DownloadHandler createDownload(String transferId, GenericDataType request) {
+				return new DwnldHandlerImpl(transferId, null, request.getId(), payload, server, waiter,
+						com.lightcomp.ft.server.TransferState.FINISHING);
+			}
+		};
+		ServerConfig scfg = prepareServerConfig(dth);
+		scfg.setMaxFrameSize(150000);
+		scfg.setReadAheadBuffers(2);
+		startServer(scfg);
+
+		ClientConfig ccfg = prepareClientConfig();
+		startClient(ccfg);
+
+		DwnldRequestImpl request = new DwnldRequestImpl(createReqData("req"), tempDir, waiter, TransferState.FINISHED);
+
+		Transfer transfer = client.download(request);
+
+		waiter.await(TEST_TIMEOUT, 2);
+
+		TransferStatus cts = transfer.getStatus();
+		Assert.assertTrue(cts.getState() == TransferState.FINISHED);
+		Assert.assertTrue(cts.getTransferedSize() == 600000);
+	}
+
 	@Test
 	public void testMixedContentDownload() throws TimeoutException, InterruptedException {
 		int blockMax = 5;
@@ -0,0 +1,60 @@
+package com.lightcomp.ft;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lightcomp.ft.common.TaskExecutor;
+import com.lightcomp.ft.common.VirtualThreads;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void testNewExecutor() throws Exception {
+        ExecutorService es = VirtualThreads.newExecutor(1, r -> new Thread(r, "platform-test"), true);
+        try {
+            Thread thread = es.submit(() -> Thread.currentThread()).get(10, TimeUnit.SECONDS);
+            if (VirtualThreads.isAvailable()) {
+                Method isVirtual = Thread.class.getMethod("isVirtual");
+                Assert.assertEquals(Boolean.TRUE, isVirtual.invoke(thread));
+            } else {
+                // platform threads of factory are used as fallback
+                Assert.assertEquals("platform-test", thread.getName());
+            }
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    @Test
+    public void testTaskLimit() throws InterruptedException {
+        TaskExecutor executor = new TaskExecutor(1, "test", true, 3);
+        executor.start();
+        try {
+            // virtual tasks are limited by virtual limit, platform tasks by pool size
+            int expected = VirtualThreads.isAvailable() ? 3 : 1;
+            CountDownLatch started = new CountDownLatch(expected);
+            CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < 3; i++) {
+                executor.addTask(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(expected, executor.getActiveCount());
+            Assert.assertEquals(3 - expected, executor.getQueueSize());
+            release.countDown();
+        } finally {
+            executor.stop();
+        }
+    }
+}
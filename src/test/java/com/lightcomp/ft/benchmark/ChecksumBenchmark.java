@@ -0,0 +1,115 @@
+package com.lightcomp.ft.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lightcomp.ft.common.Checksum.Algorithm;
+import com.lightcomp.ft.common.ChecksumByteChannel;
+import com.lightcomp.ft.common.ChecksumGenerator;
+
+/**
+ * Compares checksum update from byte array copy (former ChecksumByteChannel implementation) with
+ * update directly from heap or direct buffer for each checksum algorithm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChecksumBenchmark {
+
+    @Param({ "8192", "65536" })
+    public int chunkSize;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    @Param({ "SHA_512", "SHA_256", "SHA_512_TREE", "CRC32C", "XXH64" })
+    public Algorithm algorithm;
+
+    private ByteBuffer data;
+
+    private byte[] copyBuffer;
+
+    private ChecksumGenerator generator;
+
+    private ChecksumByteChannel channel;
+
+    private long position;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = new byte[chunkSize];
+        new Random(chunkSize).nextBytes(bytes);
+        data = direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+        data.put(bytes).flip();
+        copyBuffer = new byte[256];
+        generator = ChecksumGenerator.create(algorithm);
+        channel = new ChecksumByteChannel(new NullChannel(), generator, 0);
+    }
+
+    /**
+     * Former path, chunk is copied to growing byte array before update.
+     */
+    @Benchmark
+    public long arrayCopyUpdate() {
+        ByteBuffer bb = data.duplicate();
+        int len = bb.remaining();
+        if (copyBuffer.length < len) {
+            copyBuffer = new byte[len];
+        }
+        bb.get(copyBuffer, 0, len);
+        position += len;
+        generator.update(position, copyBuffer, 0, len);
+        return generator.getNumProcessed();
+    }
+
+    @Benchmark
+    public long bufferUpdate() {
+        ByteBuffer bb = data.duplicate();
+        position += bb.remaining();
+        generator.update(position, bb);
+        return generator.getNumProcessed();
+    }
+
+    @Benchmark
+    public long channelWrite() throws IOException {
+        channel.write(data.duplicate());
+        return generator.getNumProcessed();
+    }
+
+    private static class NullChannel implements WritableByteChannel {
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+    }
+}
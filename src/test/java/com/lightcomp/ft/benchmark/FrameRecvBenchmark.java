@@ -0,0 +1,116 @@
+package com.lightcomp.ft.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lightcomp.ft.client.ClientConfig;
+import com.lightcomp.ft.common.PathUtils;
+import com.lightcomp.ft.core.recv.RecvContextImpl;
+import com.lightcomp.ft.core.recv.RecvFrameProcessor;
+import com.lightcomp.ft.core.send.FrameBuilder;
+import com.lightcomp.ft.core.send.SendFrameContext;
+import com.lightcomp.ft.core.send.items.SourceItemReader;
+import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.xsd.v1.Frame;
+
+/**
+ * Measures frame processing by receiver, one operation is one frame streamed from frame builder and
+ * written to files in temporary directory. Each pass over source tree is received to new directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameRecvBenchmark {
+
+    @Param({ "small", "huge" })
+    public String layout;
+
+    @Param({ "1048576", "10485760" })
+    public long maxFrameSize;
+
+    @Param({ "1000", "10000" })
+    public int maxFrameBlocks;
+
+    private SourceItemReader rootItems;
+
+    private ClientConfig config;
+
+    private Path tempDir;
+
+    private int passCount;
+
+    private FrameBuilder frameBuilder;
+
+    private RecvContextImpl recvCtx;
+
+    @Setup
+    public void setup() throws IOException {
+        rootItems = SourceLayouts.create(layout);
+        config = new ClientConfig("http://localhost/");
+        config.setMaxFrameSize(maxFrameSize);
+        config.setMaxFrameBlocks(maxFrameBlocks);
+        tempDir = Files.createTempDirectory("ft-recv-benchmark");
+    }
+
+    /**
+     * Deletes directories of finished passes, current pass continues in next iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void cleanPasses() throws IOException {
+        int lastFinished = frameBuilder != null ? passCount - 1 : passCount;
+        for (int i = 1; i <= lastFinished; i++) {
+            Path passDir = tempDir.resolve(Integer.toString(i));
+            if (Files.exists(passDir)) {
+                PathUtils.deleteWithChildren(passDir);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (recvCtx != null) {
+            recvCtx.close();
+        }
+        PathUtils.deleteWithChildren(tempDir);
+    }
+
+    @Benchmark
+    public int process() throws TransferException, IOException {
+        if (frameBuilder == null) {
+            frameBuilder = new FrameBuilder(size -> {
+            }, config);
+            frameBuilder.init(rootItems);
+            Path rootDir = Files.createDirectory(tempDir.resolve(Integer.toString(++passCount)));
+            recvCtx = new RecvContextImpl(size -> {
+            }, rootDir, config);
+        }
+        SendFrameContext frameCtx = frameBuilder.build();
+        Frame frame = frameCtx.prepareFrame(t -> {
+        });
+        RecvFrameProcessor.create(recvCtx, frame).process();
+        // start new pass after last frame
+        if (frameCtx.isLast()) {
+            frameBuilder = null;
+        }
+        return frameCtx.getSeqNum();
+    }
+}
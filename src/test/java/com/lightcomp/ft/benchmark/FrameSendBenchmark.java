@@ -0,0 +1,101 @@
+package com.lightcomp.ft.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lightcomp.ft.client.ClientConfig;
+import com.lightcomp.ft.core.send.FrameBuilder;
+import com.lightcomp.ft.core.send.SendFrameContext;
+import com.lightcomp.ft.core.send.items.SourceItemReader;
+import com.lightcomp.ft.exception.TransferException;
+import com.lightcomp.ft.xsd.v1.Frame;
+
+/**
+ * Measures frame building and reading of frame data stream, one operation is one frame. Frames are
+ * built in loop over in-memory source tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameSendBenchmark {
+
+    @Param({ "small", "huge" })
+    public String layout;
+
+    @Param({ "1048576", "10485760" })
+    public long maxFrameSize;
+
+    @Param({ "1000", "10000" })
+    public int maxFrameBlocks;
+
+    private final byte[] readBuffer = new byte[65536];
+
+    private SourceItemReader rootItems;
+
+    private ClientConfig config;
+
+    private FrameBuilder frameBuilder;
+
+    @Setup
+    public void setup() {
+        rootItems = SourceLayouts.create(layout);
+        config = new ClientConfig("http://localhost/");
+        config.setMaxFrameSize(maxFrameSize);
+        config.setMaxFrameBlocks(maxFrameBlocks);
+    }
+
+    /**
+     * Builds frame block list, data are not read.
+     */
+    @Benchmark
+    public SendFrameContext build() throws TransferException {
+        return nextFrame();
+    }
+
+    /**
+     * Builds frame and reads its data stream including checksums.
+     */
+    @Benchmark
+    public long buildAndRead() throws TransferException, IOException {
+        Frame frame = nextFrame().prepareFrame(t -> {
+        });
+        long size = 0;
+        try (InputStream is = frame.getData().getInputStream()) {
+            int n;
+            while ((n = is.read(readBuffer)) >= 0) {
+                size += n;
+            }
+        }
+        return size;
+    }
+
+    private SendFrameContext nextFrame() throws TransferException {
+        if (frameBuilder == null) {
+            frameBuilder = new FrameBuilder(size -> {
+            }, config);
+            frameBuilder.init(rootItems);
+        }
+        SendFrameContext frameCtx = frameBuilder.build();
+        // start new transfer after last frame
+        if (frameCtx.isLast()) {
+            frameBuilder = null;
+        }
+        return frameCtx;
+    }
+}
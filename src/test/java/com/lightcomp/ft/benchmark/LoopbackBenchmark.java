@@ -0,0 +1,448 @@
+package com.lightcomp.ft.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cxf.BusFactory;
+import org.apache.cxf.jaxws.EndpointImpl;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+
+import com.lightcomp.ft.FileTransfer;
+import com.lightcomp.ft.GeneratedFile;
+import com.lightcomp.ft.client.Client;
+import com.lightcomp.ft.client.ClientConfig;
+import com.lightcomp.ft.client.DownloadRequest;
+import com.lightcomp.ft.client.Transfer;
+import com.lightcomp.ft.client.TransferRequest;
+import com.lightcomp.ft.client.TransferStatus;
+import com.lightcomp.ft.client.UploadRequest;
+import com.lightcomp.ft.common.Checksum.Algorithm;
+import com.lightcomp.ft.common.PathUtils;
+import com.lightcomp.ft.core.send.items.ListReader;
+import com.lightcomp.ft.core.send.items.SourceItemReader;
+import com.lightcomp.ft.server.DownloadHandler;
+import com.lightcomp.ft.server.ErrorDesc;
+import com.lightcomp.ft.server.Server;
+import com.lightcomp.ft.server.ServerConfig;
+import com.lightcomp.ft.server.TransferDataHandler;
+import com.lightcomp.ft.server.TransferHandler;
+import com.lightcomp.ft.server.UploadHandler;
+import com.lightcomp.ft.simple.StatusStorageImpl;
+import com.lightcomp.ft.xsd.v1.GenericDataType;
+
+/**
+ * End-to-end benchmark which runs server and client in one JVM and transfers generated files over
+ * local CXF endpoint. Options are passed as key=value arguments:
+ * <ul>
+ * <li>mode - upload or download, default upload</li>
+ * <li>transfers - number of concurrent transfers, default 4</li>
+ * <li>files - files per transfer, default 4</li>
+ * <li>fileSize - file size in bytes, default 64MB</li>
+ * <li>maxFrameSize - frame size in bytes, default 10MB</li>
+ * <li>threads - thread pool size of server and client, default 10</li>
+ * <li>checksum - checksum algorithm, default SHA_512</li>
+ * <li>format - csv or json, default csv</li>
+ * <li>output - result file, results are appended, default standard output</li>
+ * <li>logLevel - root log level, default WARN (test configuration logs everything at DEBUG)</li>
+ * </ul>
+ * Frame latency is measured as time between consecutive frames confirmed to client.
+ */
+public class LoopbackBenchmark {
+
+    private static final String ADDRESS = "http://localhost:7990/ft-benchmark";
+
+    private final Map<String, String> options;
+
+    private final Path tempDir;
+
+    private final List<Long> frameLatencies = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    private final AtomicInteger frameCount = new AtomicInteger();
+
+    private CountDownLatch finishLatch;
+
+    public LoopbackBenchmark(Map<String, String> options, Path tempDir) {
+        this.options = options;
+        this.tempDir = tempDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int sep = arg.indexOf('=');
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Option must be key=value: " + arg);
+            }
+            options.put(arg.substring(0, sep), arg.substring(sep + 1));
+        }
+        LogManager.getRootLogger().setLevel(Level.toLevel(options.getOrDefault("logLevel", "WARN")));
+
+        Path tempDir = Files.createTempDirectory("ft-loopback-benchmark");
+        try {
+            new LoopbackBenchmark(options, tempDir).run();
+        } finally {
+            PathUtils.deleteWithChildren(tempDir);
+        }
+        // CXF and transfer threads are not daemons
+        System.exit(0);
+    }
+
+    public void run() throws IOException, InterruptedException {
+        boolean upload = !"download".equals(getOption("mode", "upload"));
+        int transfers = Integer.parseInt(getOption("transfers", "4"));
+        int files = Integer.parseInt(getOption("files", "4"));
+        long fileSize = Long.parseLong(getOption("fileSize", Long.toString(64 * 1024 * 1024)));
+        long maxFrameSize = Long.parseLong(getOption("maxFrameSize", Long.toString(10 * 1024 * 1024)));
+        int threads = Integer.parseInt(getOption("threads", "10"));
+        Algorithm checksumAlg = Algorithm.valueOf(getOption("checksum", Algorithm.SHA_512.name()));
+
+        ServerConfig scfg = new ServerConfig(new BenchmarkHandler(files, fileSize), new StatusStorageImpl());
+        scfg.setThreadPoolSize(threads);
+        scfg.setMaxFrameSize(maxFrameSize);
+        scfg.setChecksumAlg(checksumAlg);
+        scfg.setWorkDir(tempDir);
+
+        ClientConfig ccfg = new ClientConfig(ADDRESS);
+        ccfg.setThreadPoolSize(threads);
+        ccfg.setMaxFrameSize(maxFrameSize);
+        ccfg.setChecksumAlg(checksumAlg);
+        ccfg.setWorkDir(tempDir);
+
+        Server server = FileTransfer.createServer(scfg);
+        EndpointImpl ep = server.getEndpointFactory().createCxf(BusFactory.getThreadDefaultBus());
+        ep.publish(ADDRESS);
+        server.start();
+        Client client = FileTransfer.createClient(ccfg);
+        client.start();
+
+        finishLatch = new CountDownLatch(transfers);
+        long gcCount = getGcCount();
+        long gcTime = getGcTime();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < transfers; i++) {
+                if (upload) {
+                    client.upload(new BenchmarkUpload("upload-" + i, files, fileSize));
+                } else {
+                    Path downloadDir = Files.createDirectory(tempDir.resolve("download-" + i));
+                    client.download(new BenchmarkDownload("download-" + i, downloadDir));
+                }
+            }
+            finishLatch.await();
+        } finally {
+            client.stop();
+            ep.stop();
+            server.stop();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", upload ? "upload" : "download");
+        result.put("transfers", transfers);
+        result.put("files", files);
+        result.put("fileSize", fileSize);
+        result.put("maxFrameSize", maxFrameSize);
+        result.put("threads", threads);
+        result.put("checksum", checksumAlg.name());
+        result.put("failed", failedCount.get());
+        double seconds = elapsedNanos / 1e9;
+        long totalSize = (long) transfers * files * fileSize;
+        result.put("seconds", format(seconds));
+        result.put("mbPerSec", format(totalSize / seconds / (1024 * 1024)));
+        result.put("framesPerSec", format(frameCount.get() / seconds));
+        result.put("frameP50Ms", format(getPercentile(0.5) / 1e6));
+        result.put("frameP99Ms", format(getPercentile(0.99) / 1e6));
+        result.put("gcCount", getGcCount() - gcCount);
+        result.put("gcMs", getGcTime() - gcTime);
+        writeResult(result);
+    }
+
+    private String getOption(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private void writeResult(Map<String, Object> result) throws IOException {
+        boolean json = "json".equals(getOption("format", "csv"));
+        String outputName = options.get("output");
+        Path output = outputName != null ? Paths.get(outputName) : null;
+        StringBuilder sb = new StringBuilder();
+        if (json) {
+            sb.append('{');
+            result.forEach((k, v) -> {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append('"').append(k).append("\":");
+                if (v instanceof String) {
+                    sb.append('"').append(v).append('"');
+                } else {
+                    sb.append(v);
+                }
+            });
+            sb.append("}\n");
+        } else {
+            // header is written only once to result file
+            if (output == null || !Files.exists(output)) {
+                sb.append(String.join(",", result.keySet())).append('\n');
+            }
+            List<String> values = new ArrayList<>();
+            result.values().forEach(v -> values.add(String.valueOf(v)));
+            sb.append(String.join(",", values)).append('\n');
+        }
+        if (output == null) {
+            PrintStream out = System.out;
+            out.print(sb);
+        } else {
+            Files.writeString(output, sb, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private long getPercentile(double p) {
+        List<Long> sorted;
+        synchronized (frameLatencies) {
+            sorted = new ArrayList<>(frameLatencies);
+        }
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+
+    private static String format(double value) {
+        return String.format("%.2f", value);
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long getGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    private static SourceItemReader createItems(int files, long fileSize) {
+        ListReader lr = new ListReader(files);
+        for (int i = 0; i < files; i++) {
+            lr.addItem(new GeneratedFile(i + ".bin", fileSize, 0));
+        }
+        return lr;
+    }
+
+    /**
+     * Client request which records frame latencies.
+     */
+    private abstract class BenchmarkRequest implements TransferRequest {
+
+        private final GenericDataType data;
+
+        private int lastFrameSeqNum;
+
+        private long lastFrameTime = System.nanoTime();
+
+        BenchmarkRequest(String id) {
+            data = new GenericDataType();
+            data.setId(id);
+        }
+
+        @Override
+        public GenericDataType getData() {
+            return data;
+        }
+
+        @Override
+        public String getLogId() {
+            return data.getId();
+        }
+
+        @Override
+        public void onTransferInitialized(Transfer transfer) {
+        }
+
+        @Override
+        public void onTransferProgress(TransferStatus status) {
+            int seqNum = status.getLastFrameSeqNum();
+            if (seqNum > lastFrameSeqNum) {
+                long now = System.nanoTime();
+                int frames = seqNum - lastFrameSeqNum;
+                long latency = (now - lastFrameTime) / frames;
+                for (int i = 0; i < frames; i++) {
+                    frameLatencies.add(latency);
+                }
+                frameCount.addAndGet(frames);
+                lastFrameSeqNum = seqNum;
+                lastFrameTime = now;
+            }
+        }
+
+        @Override
+        public void onTransferSuccess(GenericDataType response) {
+            finishLatch.countDown();
+        }
+
+        @Override
+        public void onTransferCanceled() {
+            failedCount.incrementAndGet();
+            finishLatch.countDown();
+        }
+
+        @Override
+        public void onTransferFailed() {
+            failedCount.incrementAndGet();
+            finishLatch.countDown();
+        }
+    }
+
+    private class BenchmarkUpload extends BenchmarkRequest implements UploadRequest {
+
+        private final SourceItemReader items;
+
+        BenchmarkUpload(String id, int files, long fileSize) {
+            super(id);
+            this.items = createItems(files, fileSize);
+        }
+
+        @Override
+        public SourceItemReader getRootItemsReader() {
+            return items;
+        }
+    }
+
+    private class BenchmarkDownload extends BenchmarkRequest implements DownloadRequest {
+
+        private final Path downloadDir;
+
+        BenchmarkDownload(String id, Path downloadDir) {
+            super(id);
+            this.downloadDir = downloadDir;
+        }
+
+        @Override
+        public Path getDownloadDir() {
+            return downloadDir;
+        }
+    }
+
+    /**
+     * Server handler which stores uploads to temporary directory and serves generated files.
+     */
+    private class BenchmarkHandler implements TransferHandler {
+
+        private final int files;
+
+        private final long fileSize;
+
+        BenchmarkHandler(int files, long fileSize) {
+            this.files = files;
+            this.fileSize = fileSize;
+        }
+
+        @Override
+        public TransferDataHandler onTransferBegin(String transferId, GenericDataType request) {
+            if (request.getId().startsWith("download")) {
+                return new ServerDownload(request.getId(), createItems(files, fileSize));
+            }
+            try {
+                return new ServerUpload(request.getId(), Files.createDirectory(tempDir.resolve(transferId)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static abstract class ServerTransfer implements TransferDataHandler {
+
+        private final String requestId;
+
+        ServerTransfer(String requestId) {
+            this.requestId = requestId;
+        }
+
+        @Override
+        public String getRequestId() {
+            return requestId;
+        }
+
+        @Override
+        public GenericDataType finishTransfer() {
+            return null;
+        }
+
+        @Override
+        public void onTransferProgress(com.lightcomp.ft.server.TransferStatus status) {
+        }
+
+        @Override
+        public void onTransferCanceled() {
+        }
+
+        @Override
+        public void onTransferFailed(ErrorDesc errorDesc) {
+        }
+    }
+
+    private static class ServerUpload extends ServerTransfer implements UploadHandler {
+
+        private final Path uploadDir;
+
+        ServerUpload(String requestId, Path uploadDir) {
+            super(requestId);
+            this.uploadDir = uploadDir;
+        }
+
+        @Override
+        public Mode getMode() {
+            return Mode.UPLOAD;
+        }
+
+        @Override
+        public Path getUploadDir() {
+            return uploadDir;
+        }
+    }
+
+    private static class ServerDownload extends ServerTransfer implements DownloadHandler {
+
+        private final SourceItemReader items;
+
+        ServerDownload(String requestId, SourceItemReader items) {
+            super(requestId);
+            this.items = items;
+        }
+
+        @Override
+        public Mode getMode() {
+            return Mode.DOWNLOAD;
+        }
+
+        @Override
+        public SourceItemReader getRootItemsReader() {
+            return items;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.lightcomp.ft.benchmark;
+
+import com.lightcomp.ft.core.send.items.BaseDir;
+import com.lightcomp.ft.core.send.items.ListReader;
+import com.lightcomp.ft.core.send.items.MemoryFile;
+import com.lightcomp.ft.core.send.items.SourceItemReader;
+
+/**
+ * In-memory source trees used by benchmarks. Files of one layout share single data array.
+ */
+final class SourceLayouts {
+
+    private SourceLayouts() {
+    }
+
+    /**
+     * @param layout
+     *            "small" for 100 directories with 100 files of 1KB, "huge" for 4 files of 16MB
+     */
+    public static SourceItemReader create(String layout) {
+        switch (layout) {
+        case "small":
+            return createTree(100, 100, 1024);
+        case "huge":
+            return createTree(1, 4, 16 * 1024 * 1024);
+        default:
+            throw new IllegalArgumentException("Unknown layout: " + layout);
+        }
+    }
+
+    private static SourceItemReader createTree(int dirCount, int fileCount, int fileSize) {
+        byte[] data = new byte[fileSize];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ListReader root = new ListReader(dirCount);
+        for (int d = 0; d < dirCount; d++) {
+            ListReader files = new ListReader(fileCount);
+            for (int f = 0; f < fileCount; f++) {
+                files.addItem(new MemoryFile(f + ".bin", data, 0));
+            }
+            root.addItem(new BaseDir("dir" + d, files));
+        }
+        return root;
+    }
+}